@@ -0,0 +1,74 @@
+package com.varna.code.challenge.benchmarks;
+
+import com.varna.code.challenge.ProductApplication;
+import com.varna.code.challenge.utils.MockRequest;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the application (without the web server unless asked for) against an in memory H2 database
+ * seeded by the data generator with the given amount of products
+ */
+final class BenchmarkDatabase
+{
+    static final int CATEGORIES = 200;
+
+    private BenchmarkDatabase()
+    {
+    }
+
+    static ConfigurableApplicationContext start(int rows)
+    {
+        return start(rows, "none");
+    }
+
+    /**
+     * @param webApplicationType none, servlet or reactive
+     * @param extraArgs          more properties, they must not repeat the ones set here
+     */
+    static ConfigurableApplicationContext start(int rows, String webApplicationType, String... extraArgs)
+    {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.main.web-application-type=" + webApplicationType,
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.datasource.driverClassName=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--logging.level.root=WARN",
+                "--logging.file.name=",
+                "--products.generator.products=" + rows,
+                "--products.generator.categories=" + CATEGORIES,
+                "--products.generator.category-skew=1.1",
+                "--products.counters.reconcile-interval=3600000"));
+        args.addAll(Arrays.asList(extraArgs));
+
+        // Passed as arguments, they have to override application.properties
+        return new SpringApplicationBuilder(BenchmarkApplication.class).run(args.toArray(new String[0]));
+    }
+
+    /**
+     * The application as configured by {@link ProductApplication}, without the test configurations
+     * which are on the classpath of the benchmarks
+     */
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @AutoConfigurationPackage(basePackageClasses = ProductApplication.class)
+    @EnableScheduling
+    @ComponentScan(basePackageClasses = ProductApplication.class,
+            excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+                    classes = {ProductApplication.class, MockRequest.class}))
+    static class BenchmarkApplication
+    {
+    }
+}
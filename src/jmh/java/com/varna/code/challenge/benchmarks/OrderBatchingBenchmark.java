@@ -0,0 +1,99 @@
+package com.varna.code.challenge.benchmarks;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.services.OrderBatcher;
+import com.varna.code.challenge.services.ProductService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single product orders by many concurrent clients, each order committed alone or together with its batch
+ * The commits per order of every iteration are printed, SampleTime gives the latency percentiles
+ * mvn -P benchmarks verify -Djmh.args="OrderBatchingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class OrderBatchingBenchmark
+{
+    private static final int ROWS = 100000;
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    private final LongAdder orders = new LongAdder();
+
+    private ConfigurableApplicationContext context;
+
+    private ProductService productService;
+
+    private DistributionSummary batchSizes;
+
+    private long batchesBefore;
+
+    @Setup
+    public void setup()
+    {
+        context = BenchmarkDatabase.start(ROWS, "none",
+                "--products.order-batching.enabled=" + batching,
+                "--products.order-batching.window=2ms");
+        productService = context.getBean(ProductService.class);
+        batchSizes = context.getBean(MeterRegistry.class).find(OrderBatcher.BATCH_SIZE_SUMMARY).summary();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration()
+    {
+        orders.reset();
+        batchesBefore = batchSizes == null ? 0 : batchSizes.count();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCommits()
+    {
+        // Without batching every order is its own commit
+        long commits = batching ? batchSizes.count() - batchesBefore : orders.sum();
+        System.out.printf("%n%d orders, %d commits%n", orders.sum(), commits);
+    }
+
+    @Benchmark
+    public ProductView orderProduct()
+    {
+        orders.increment();
+        try {
+            return productService.orderProduct(1, ThreadLocalRandom.current().nextInt(ROWS) + 1);
+        } catch (ProductException outOfStock) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.varna.code.challenge.benchmarks;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.binding.SortOrder;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.ProductByPage;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.services.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of the service operations behind the endpoints, against a seeded H2 database
+ * Pages are picked from the first pages, deep offsets are a separate concern of the cursor pagination
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ProductServiceBenchmark
+{
+    private static final int PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE = 1000;
+
+    private static final Map<String, SortOrder> SORT_BY_QUANTITY = Map.of("quantity", SortOrder.DESC);
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private final AtomicInteger addedProducts = new AtomicInteger();
+
+    private ConfigurableApplicationContext context;
+
+    private ProductService productService;
+
+    @Setup
+    public void setup()
+    {
+        context = BenchmarkDatabase.start(rows);
+        productService = context.getBean(ProductService.class);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public ProductView addNewProduct() throws ProductException
+    {
+        return productService.addProduct(new ProductBinding(
+                "Category1", "Bench" + addedProducts.incrementAndGet(), "added by the benchmark"));
+    }
+
+    @Benchmark
+    public ProductView addExistingProduct() throws ProductException
+    {
+        return productService.addProduct(new ProductBinding("Category1", "Product" + randomId(), null));
+    }
+
+    @Benchmark
+    public ProductView orderProduct()
+    {
+        try {
+            return productService.orderProduct(1, randomId());
+        } catch (ProductException outOfStock) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public ProductView updateProduct() throws ProductException
+    {
+        return productService.updateProduct(randomId(), new EditProductBinding(null, null, "updated by the benchmark"));
+    }
+
+    @Benchmark
+    public ProductByPage getProducts()
+    {
+        return productService.getProducts(randomPage(), PAGE_SIZE, null, null);
+    }
+
+    @Benchmark
+    public ProductByPage getProductsSorted()
+    {
+        return productService.getProducts(randomPage(), PAGE_SIZE, "name", "asc");
+    }
+
+    @Benchmark
+    public List<ProductView> getAllByPageSorted() throws ProductException
+    {
+        PageableAndSortable request = new PageableAndSortable();
+        request.setPageNumber(randomPage());
+        request.setItemsPerPage(PAGE_SIZE);
+        request.setSortedProperties(SORT_BY_QUANTITY);
+        return productService.getAllByPage(request);
+    }
+
+    @Benchmark
+    public CategoriesSnapshot getCategories()
+    {
+        return productService.getCategories();
+    }
+
+    private int randomId()
+    {
+        return ThreadLocalRandom.current().nextInt(rows) + 1;
+    }
+
+    private int randomPage()
+    {
+        return ThreadLocalRandom.current().nextInt(Math.min(rows / PAGE_SIZE, MAX_PAGE));
+    }
+}
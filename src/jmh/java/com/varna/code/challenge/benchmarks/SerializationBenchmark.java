@@ -0,0 +1,80 @@
+package com.varna.code.challenge.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.response.SuccessResponse;
+import com.varna.code.challenge.models.view.ProductByPage;
+import com.varna.code.challenge.models.view.ProductView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the responses with product pages, with the object mapper configured as in the application
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark
+{
+    @Param({"20", "100", "1000"})
+    public int pageSize;
+
+    private ObjectMapper objectMapper;
+
+    private SuccessResponse productsPage;
+
+    private SuccessResponse productsList;
+
+    @Setup
+    public void setup()
+    {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<ProductView> products = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            Product product = new Product();
+            product.setId(i + 1);
+            product.setName("Product" + (i + 1));
+            product.setCategory("Category" + (i % 10));
+            product.setDescription("portable silent wireless compact for the office");
+            product.setQuantity(i * 7 % 1000);
+            product.setDateCreated(LocalDate.of(2020, 9, 1));
+            product.setLastModifiedDate(LocalDate.of(2020, 9, 2));
+            products.add(new ProductView(product));
+        }
+
+        productsPage = new SuccessResponse(new ProductByPage(1_000_000, products));
+        productsList = new SuccessResponse(products);
+    }
+
+    @Benchmark
+    public byte[] writeProductsPage() throws JsonProcessingException
+    {
+        return objectMapper.writeValueAsBytes(productsPage);
+    }
+
+    @Benchmark
+    public byte[] writeProductsList() throws JsonProcessingException
+    {
+        return objectMapper.writeValueAsBytes(productsList);
+    }
+}
@@ -0,0 +1,145 @@
+package com.varna.code.challenge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same endpoints over HTTP on the servlet stack (Tomcat, JPA) and on the reactive stack (Netty, R2DBC)
+ * Every benchmark thread is a client waiting for its response, there are more clients than Tomcat threads (200)
+ * All stacks have 10 database connections, the servlet stacks serve the pages from the page cache
+ * The reactive stack needs the reactive build
+ * mvn -P benchmarks,reactive verify -Djmh.args="StackBenchmark -t 1000"
+ *
+ * The servlet stack on virtual threads needs the virtual-threads build on JDK 21, e.g. with 5000 clients
+ * mvn -P benchmarks,virtual-threads verify -Djmh.args="StackBenchmark -p stack=servlet,virtual-threads -t 5000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(512)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class StackBenchmark
+{
+    private static final int ROWS = 100000;
+
+    private static final String VIRTUAL_THREADS_INITIALIZER = "com.varna.code.virtualthreads.VirtualThreadsInitializer";
+
+    private static final String REACTIVE_CONTROLLER = "com.varna.code.challenge.controllers.ReactiveProductController";
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE = 1000;
+
+    @Param({"servlet", "reactive"})
+    public String stack;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private String baseUrl;
+
+    @Setup
+    public void setup()
+    {
+        if ("reactive".equals(stack)) {
+            if (!ClassUtils.isPresent(REACTIVE_CONTROLLER, null))
+                throw new IllegalStateException("The reactive stack is not built, run with -P reactive");
+
+            context = BenchmarkDatabase.start(ROWS, "reactive",
+                    "--server.port=0",
+                    "--spring.profiles.active=reactive",
+                    "--spring.r2dbc.url=r2dbc:h2:mem:///benchmark",
+                    "--spring.r2dbc.username=sa",
+                    "--spring.r2dbc.password=");
+        } else if ("virtual-threads".equals(stack)) {
+            if (!ClassUtils.isPresent(VIRTUAL_THREADS_INITIALIZER, null))
+                throw new IllegalStateException("The virtual threads are not built, run with -P virtual-threads");
+
+            context = BenchmarkDatabase.start(ROWS, "servlet",
+                    "--server.port=0",
+                    "--spring.profiles.active=virtual-threads");
+        } else {
+            context = BenchmarkDatabase.start(ROWS, "servlet", "--server.port=0");
+        }
+
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public int getProduct() throws IOException, InterruptedException
+    {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/product/" + randomId())).GET());
+    }
+
+    @Benchmark
+    public int getProducts() throws IOException, InterruptedException
+    {
+        return send(HttpRequest.newBuilder(URI.create(
+                baseUrl + "/products?page=" + randomPage() + "&pageSize=" + PAGE_SIZE)).GET());
+    }
+
+    @Benchmark
+    public int orderProduct() throws IOException, InterruptedException
+    {
+        // Out of stock answers are part of the load, they are counted like the successful orders
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/product/" + randomId() + "/order/1"))
+                .POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    @Benchmark
+    public int getCategories() throws IOException, InterruptedException
+    {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/categories")).GET());
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException
+    {
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private int randomId()
+    {
+        return ThreadLocalRandom.current().nextInt(ROWS) + 1;
+    }
+
+    private int randomPage()
+    {
+        return ThreadLocalRandom.current().nextInt(Math.min(ROWS / PAGE_SIZE, MAX_PAGE));
+    }
+}
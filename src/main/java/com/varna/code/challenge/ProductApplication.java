@@ -1,16 +1,25 @@
 package com.varna.code.challenge;
 
 
+import com.varna.code.challenge.config.DataLoaderConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Profiles;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @SpringBootApplication
+@EnableScheduling
 public class ProductApplication
 {
     public static void main(String[] args)
     {
-        SpringApplication.run(ProductApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(ProductApplication.class, args);
+
+        // The scheduler threads would keep the generator running after it is done
+        if (context.getEnvironment().acceptsProfiles(Profiles.of(DataLoaderConfig.GENERATE_PROFILE)))
+            System.exit(SpringApplication.exit(context));
     }
 
 }
@@ -0,0 +1,114 @@
+package com.varna.code.challenge.config;
+
+import com.varna.code.challenge.exceptions.ServiceBusyException;
+import com.varna.code.challenge.services.OrderBatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets only as many calls into the product service as there are database connections, the others wait in line
+ * With a thread per request the threads limit the calls, with virtual threads (virtual-threads profile)
+ * thousands of requests would wait inside the connection pool and fail after its timeout all at once.
+ * The calls served from memory (counters and tags) are not limited.
+ * Neither are the single orders while the order batching is on (products.order-batching.enabled) - they only wait
+ * for the commit of their batch, which uses one connection whatever its size. Holding a permit while waiting
+ * would limit the batches to the number of permits.
+ * A call which is not admitted in products.admission.timeout fails with {@link ServiceBusyException}
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "products.admission.enabled", havingValue = "true")
+public class AdmissionAspect implements MeterBinder
+{
+    public static final String WAIT_TIMER = "products.admission.wait";
+
+    public static final String REJECTED_COUNTER = "products.admission.rejected";
+
+    private final Semaphore permits;
+
+    private final int maxPermits;
+
+    private final long timeoutNanos;
+
+    private final ObjectProvider<OrderBatcher> orderBatcher;
+
+    private volatile Timer waitTimer;
+
+    private volatile Counter rejectedCounter;
+
+    /**
+     * @param permits      the calls allowed at once, by default the size of the connection pool
+     * @param timeout      how long a call waits to be admitted
+     * @param orderBatcher the single orders are not limited while it is running
+     */
+    @Autowired
+    public AdmissionAspect(@Value("${products.admission.permits:${spring.datasource.hikari.maximum-pool-size:10}}")
+                                   int permits,
+                           @Value("${products.admission.timeout:2s}") Duration timeout,
+                           ObjectProvider<OrderBatcher> orderBatcher)
+    {
+        // Fair, the calls are admitted in the order they came
+        this.permits = new Semaphore(permits, true);
+        this.maxPermits = permits;
+        this.timeoutNanos = timeout.toNanos();
+        this.orderBatcher = orderBatcher;
+    }
+
+    @Around("target(com.varna.code.challenge.services.ProductService) && " +
+            "!execution(* getProductCount()) && !execution(* getCategories()) && !execution(* get*Tag())")
+    public Object admit(ProceedingJoinPoint call) throws Throwable
+    {
+        if ("orderProduct".equals(call.getSignature().getName()) && isBatching())
+            return call.proceed();
+
+        long start = System.nanoTime();
+        if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+            if (rejectedCounter != null)
+                rejectedCounter.increment();
+
+            throw new ServiceBusyException("The service is busy, try again later");
+        }
+
+        try {
+            if (waitTimer != null)
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            return call.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isBatching()
+    {
+        OrderBatcher batcher = orderBatcher.getIfAvailable();
+        return batcher != null && batcher.isRunning();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("products.admission.in-use", permits, p -> maxPermits - p.availablePermits()).register(registry);
+        Gauge.builder("products.admission.waiting", permits, Semaphore::getQueueLength).register(registry);
+        waitTimer = Timer.builder(WAIT_TIMER).register(registry);
+        rejectedCounter = Counter.builder(REJECTED_COUNTER).register(registry);
+    }
+}
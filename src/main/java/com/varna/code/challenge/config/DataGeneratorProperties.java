@@ -0,0 +1,162 @@
+package com.varna.code.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the synthetic product data (products.generator.* properties)
+ * The defaults reproduce the old 100 products in 4 categories
+ */
+@ConfigurationProperties(prefix = "products.generator")
+public class DataGeneratorProperties
+{
+    /**
+     * Generate the products when the application is ready and the table is empty
+     */
+    private boolean onStartup = true;
+
+    private long products = 100;
+
+    private int categories = 4;
+
+    /**
+     * Exponent of the zipf distribution of products over categories, 0 is uniform,
+     * around 1 most products fall in the first few categories
+     */
+    private double categorySkew = 0;
+
+    private int descriptionMinLength = 20;
+
+    private int descriptionMaxLength = 60;
+
+    /**
+     * Quantities are uniform between 0 and this (exclusive), except the out of stock ones
+     */
+    private int maxQuantity = 1000;
+
+    /**
+     * Share of the products with quantity 0, between 0 and 1
+     */
+    private double outOfStockRatio = 0;
+
+    /**
+     * The same seed, products and batch size always generate the same rows
+     */
+    private long seed = 42;
+
+    /**
+     * Threads generating and inserting batches, 0 means one per processor
+     */
+    private int threads = 0;
+
+    private int batchSize = 5000;
+
+    public boolean isOnStartup()
+    {
+        return onStartup;
+    }
+
+    public void setOnStartup(boolean onStartup)
+    {
+        this.onStartup = onStartup;
+    }
+
+    public long getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(long products)
+    {
+        this.products = products;
+    }
+
+    public int getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(int categories)
+    {
+        this.categories = categories;
+    }
+
+    public double getCategorySkew()
+    {
+        return categorySkew;
+    }
+
+    public void setCategorySkew(double categorySkew)
+    {
+        this.categorySkew = categorySkew;
+    }
+
+    public int getDescriptionMinLength()
+    {
+        return descriptionMinLength;
+    }
+
+    public void setDescriptionMinLength(int descriptionMinLength)
+    {
+        this.descriptionMinLength = descriptionMinLength;
+    }
+
+    public int getDescriptionMaxLength()
+    {
+        return descriptionMaxLength;
+    }
+
+    public void setDescriptionMaxLength(int descriptionMaxLength)
+    {
+        this.descriptionMaxLength = descriptionMaxLength;
+    }
+
+    public int getMaxQuantity()
+    {
+        return maxQuantity;
+    }
+
+    public void setMaxQuantity(int maxQuantity)
+    {
+        this.maxQuantity = maxQuantity;
+    }
+
+    public double getOutOfStockRatio()
+    {
+        return outOfStockRatio;
+    }
+
+    public void setOutOfStockRatio(double outOfStockRatio)
+    {
+        this.outOfStockRatio = outOfStockRatio;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+}
@@ -1,48 +1,68 @@
 package com.varna.code.challenge.config;
 
 
-import com.varna.code.challenge.models.entities.Product;
 import com.varna.code.challenge.repositories.ProductRepository;
+import com.varna.code.challenge.services.ProductDataGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-
-import java.time.LocalDate;
-import java.util.Random;
+import org.springframework.context.annotation.Profile;
 
 
 /**
- * Fills 100 random products for testing
+ * Fills the database with synthetic products (see {@link DataGeneratorProperties})
+ * When started with the generate profile the application only generates the products and exits,
+ * without starting the web server, e.g.
+ * java -jar challenge.jar --spring.profiles.active=generate --products.generator.products=10000000
  */
 @Configuration
+@EnableConfigurationProperties(DataGeneratorProperties.class)
 public class DataLoaderConfig implements ApplicationListener<ApplicationReadyEvent>
 {
-    private static final String[] CATEGORIES = {"Laptop", "Computer", "Headset", "Monitor"};
+    public static final String GENERATE_PROFILE = "generate";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataLoaderConfig.class);
+
     private final ProductRepository productRepository;
 
-    public DataLoaderConfig(ProductRepository productRepository)
+    private final ProductDataGenerator productDataGenerator;
+
+    private final DataGeneratorProperties generatorProperties;
+
+    public DataLoaderConfig(ProductRepository productRepository,
+                            ProductDataGenerator productDataGenerator,
+                            DataGeneratorProperties generatorProperties)
     {
         this.productRepository = productRepository;
+        this.productDataGenerator = productDataGenerator;
+        this.generatorProperties = generatorProperties;
     }
 
     @Override
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent)
     {
         // Populate the database with dummy data
-        if (productRepository.count() == 0) {
-            Random rnd = new Random();
-            for (int i = 0; i < 100; i++) {
-                Product p = new Product();
-                String randomCategory = CATEGORIES[rnd.nextInt(CATEGORIES.length)];
-                p.setQuantity(rnd.nextInt(1000));
-                p.setCategory(randomCategory);
-                p.setName("Product" + (i + 1));
-                p.setDateCreated(i % 2 == 0 ? LocalDate.now().minusDays(i) : LocalDate.now().plusDays(i));
-                p.setLastModifiedDate(i % 2 == 0 ? LocalDate.now().plusDays(i % 3) : LocalDate.now().plusDays(i % 5));
-                p.setDescription("Some description for " + p.getName() + " With category " + p.getCategory());
-                productRepository.save(p);
-            }
-        }
+        if (generatorProperties.isOnStartup())
+            generateIfEmpty();
+    }
 
+    @Bean
+    @Profile(GENERATE_PROFILE)
+    public CommandLineRunner generateProducts()
+    {
+        return args -> generateIfEmpty();
+    }
+
+    private void generateIfEmpty()
+    {
+        if (productRepository.count() == 0)
+            productDataGenerator.generate(generatorProperties);
+        else
+            LOGGER.warn("There are products already, no products are generated");
     }
 }
@@ -0,0 +1,78 @@
+package com.varna.code.challenge.config;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call of the product service and the product repository (product.service and product.repository timers,
+ * tagged with the method and the outcome) and counts the product exceptions by reason (product.errors)
+ * The endpoints are timed by spring (http.server.requests), the percentile histograms are enabled in the properties
+ */
+@Aspect
+@Component
+public class MetricsAspect
+{
+    public static final String SERVICE_TIMER = "product.service";
+
+    public static final String REPOSITORY_TIMER = "product.repository";
+
+    public static final String ERRORS_COUNTER = "product.errors";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    /**
+     * The registry is optional, without it (in sliced tests) the calls are not measured
+     */
+    public MetricsAspect(ObjectProvider<MeterRegistry> meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("target(com.varna.code.challenge.services.ProductService)")
+    public Object timeService(ProceedingJoinPoint call) throws Throwable
+    {
+        return time(SERVICE_TIMER, call);
+    }
+
+    @Around("target(com.varna.code.challenge.repositories.ProductRepository)")
+    public Object timeRepository(ProceedingJoinPoint call) throws Throwable
+    {
+        return time(REPOSITORY_TIMER, call);
+    }
+
+    private Object time(String timerName, ProceedingJoinPoint call) throws Throwable
+    {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null)
+            return call.proceed();
+
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return call.proceed();
+        } catch (ProductException e) {
+            outcome = e.getReason().name().toLowerCase();
+            Counter.builder(ERRORS_COUNTER)
+                    .tag("reason", outcome)
+                    .tag("method", call.getSignature().getName())
+                    .register(registry)
+                    .increment();
+            throw e;
+        } catch (Throwable e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(timerName)
+                    .tag("method", call.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+    }
+}
@@ -1,32 +1,87 @@
 package com.varna.code.challenge.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.exceptions.ServiceBusyException;
+import com.varna.code.challenge.models.binding.DataFormat;
 import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
 import com.varna.code.challenge.models.binding.PageableAndSortable;
 import com.varna.code.challenge.models.binding.ProductBinding;
 import com.varna.code.challenge.models.response.AbstractResponse;
 import com.varna.code.challenge.models.response.FailedResponse;
+import com.varna.code.challenge.models.response.ResponseStatus;
 import com.varna.code.challenge.models.response.SuccessResponse;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.OrderLineView;
 import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.services.ProductExportService;
+import com.varna.code.challenge.services.ProductImportService;
+import com.varna.code.challenge.services.ProductSearchService;
 import com.varna.code.challenge.services.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The servlet stack, the reactive build (src/reactive) serves the products with ReactiveProductController instead
+ * under the reactive profile
+ */
 @RestController
+@Profile("!reactive")
 public class ProductController
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(ProductController.class);
 
+    private static final String CATEGORIES_VERSION_HEADER = "X-Categories-Version";
+
+    private static final String CATEGORIES_RECONCILED_AT_HEADER = "X-Categories-Reconciled-At";
+
     private final ProductService productService;
 
+    private final ProductImportService productImportService;
+
+    private final ProductExportService productExportService;
+
+    private final ProductSearchService productSearchService;
+
+    private final ObjectMapper objectMapper;
+
+    private final String categoriesCacheControl;
+
     @Autowired
-    public ProductController(ProductService productService)
+    public ProductController(ProductService productService,
+                             ProductImportService productImportService,
+                             ProductExportService productExportService,
+                             ProductSearchService productSearchService,
+                             ObjectMapper objectMapper,
+                             @Value("${products.categories.max-age:5s}") Duration categoriesMaxAge,
+                             @Value("${products.categories.stale-while-revalidate:30s}")
+                                     Duration categoriesStaleWhileRevalidate)
     {
         this.productService = productService;
+        this.productImportService = productImportService;
+        this.productExportService = productExportService;
+        this.productSearchService = productSearchService;
+        this.objectMapper = objectMapper;
+        this.categoriesCacheControl = CacheControl.maxAge(categoriesMaxAge)
+                .staleWhileRevalidate(categoriesStaleWhileRevalidate)
+                .getHeaderValue();
     }
 
     /**
@@ -45,6 +100,8 @@ public class ProductController
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error while adding product message: {} stack trace: {}",
                     e.getMessage(),
@@ -55,6 +112,27 @@ public class ProductController
         }
     }
 
+    /**
+     * Get a product by id
+     *
+     * @param productId the id of the product
+     * @return the product or appropriate error
+     */
+    @GetMapping("/product/{id}")
+    public ResponseEntity<AbstractResponse> getProduct(@PathVariable(name = "id") int productId)
+    {
+        try {
+            return ResponseEntity.ok(new SuccessResponse(productService.getProduct(productId)));
+        } catch (ProductException e) {
+            return ResponseEntity.badRequest().body(new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected server error when reading product message: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(new FailedResponse("Unexpected error"));
+        }
+    }
+
     /**
      * Delete a product by id
      *
@@ -69,6 +147,8 @@ public class ProductController
             return ResponseEntity.ok(new SuccessResponse("Successfully deleted the product"));
         } catch (ProductException e) {
             return ResponseEntity.badRequest().body(new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error while deleting product message: {} stack trace: {}",
                     e.getMessage(),
@@ -94,6 +174,8 @@ public class ProductController
             return ResponseEntity.ok(new SuccessResponse(productService.updateProduct(productId, editProductModel)));
         } catch (ProductException e) {
             return ResponseEntity.badRequest().body(new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error while updating product message: {} stack trace: {}",
                     e.getMessage(),
@@ -104,13 +186,27 @@ public class ProductController
 
 
     /**
-     * @return all categories with product count per category
+     * The version of the categories is returned in X-Categories-Version header (changes with every write)
+     * and the last time they were reconciled with the database in X-Categories-Reconciled-At
+     * Responds with 304 if the ETag in If-None-Match is still current,
+     * the clients may use the categories for a while and revalidate them in the background (Cache-Control)
+     *
+     * @param request the request, used for the conditional headers
+     * @return all categories with product count and summed quantity per category
      */
     @GetMapping("/categories")
-    public ResponseEntity<AbstractResponse> getAllCategories()
+    public ResponseEntity<AbstractResponse> getAllCategories(ServletWebRequest request)
     {
         try {
-            return ResponseEntity.ok(new SuccessResponse(productService.getCategories()));
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, categoriesCacheControl);
+            if (request.checkNotModified(productService.getCountersTag()))
+                return null;
+
+            CategoriesSnapshot categories = productService.getCategories();
+            return ResponseEntity.ok()
+                    .header(CATEGORIES_VERSION_HEADER, String.valueOf(categories.getVersion()))
+                    .header(CATEGORIES_RECONCILED_AT_HEADER, categories.getReconciledAt().toString())
+                    .body(new SuccessResponse(categories.getCategories()));
         } catch (Exception e) {
             LOGGER.error("Unexpected server error while listing categories message: {} stack trace: {}",
                     e.getMessage(),
@@ -123,26 +219,47 @@ public class ProductController
      * I later realized i was supposed to create a rest api with the exact end points and responses
      * so this is the implementation of paging and sorting which is not used in my front end
      * but can be accessed by writing the query in the browser url bar
+     * When cursor is passed (empty for the first page) the page is read by cursor instead of by page number,
+     * the response then contains the cursor for the next page
      *
-     * @param page      the page to show
+     * @param page      the page to show, required if there is no cursor
      * @param pageSize  the page size
      * @param orderBy   the property to order
      * @param direction the direction to order
+     * @param cursor    the cursor returned with the previous page
+     * @param request   the request, responds with 304 if the ETag in If-None-Match is still current
      * @return response with products paged and sorted by single field
      */
     @GetMapping("/products")
-    public ResponseEntity<AbstractResponse> getAllProducts(@RequestParam int page,
+    public ResponseEntity<AbstractResponse> getAllProducts(@RequestParam(required = false) Integer page,
                                                            @RequestParam int pageSize,
                                                            @RequestParam(required = false) String orderBy,
-                                                           @RequestParam(required = false) String direction)
+                                                           @RequestParam(required = false) String direction,
+                                                           @RequestParam(required = false) String cursor,
+                                                           ServletWebRequest request)
     {
         try {
+            // Checked before reading anything, a page of unchanged products is the same page
+            if (request.checkNotModified(productService.getProductsTag()))
+                return null;
+
+            if (cursor != null) {
+                return ResponseEntity.ok(
+                        new SuccessResponse(
+                                productService.getProductsAfter(cursor, pageSize, orderBy, direction)));
+            } else if (page == null) {
+                return ResponseEntity.badRequest().body(
+                        new FailedResponse("You must provide either page or cursor"));
+            }
+
             return ResponseEntity.ok(
                     new SuccessResponse(
                             productService.getProducts(page, pageSize, orderBy, direction)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(
                     new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error when getting product message: {} stack trace: {}",
                     e.getMessage(),
@@ -154,12 +271,16 @@ public class ProductController
     }
 
     /**
+     * @param request the request, responds with 304 if the ETag in If-None-Match is still current
      * @return count of all products in the table
      */
     @GetMapping("/products/count")
-    public ResponseEntity<AbstractResponse> getProductsCount()
+    public ResponseEntity<AbstractResponse> getProductsCount(ServletWebRequest request)
     {
         try {
+            if (request.checkNotModified(productService.getCountersTag()))
+                return null;
+
             return ResponseEntity.ok(
                     new SuccessResponse(
                             productService.getProductCount()));
@@ -174,22 +295,41 @@ public class ProductController
     }
 
     /**
-     * Get all products by page
+     * Get all products by page, or by cursor if cursor is passed (empty for the first page)
      *
-     * @param offset the page number
-     * @param limit  the numbers per page
+     * @param offset  the page number, required if there is no cursor
+     * @param limit   the numbers per page
+     * @param cursor  the cursor returned with the previous page
+     * @param request the request, responds with 304 if the ETag in If-None-Match is still current
      * @return the products for desired page or appropriate error message
      */
     @GetMapping("/products/all")
-    public ResponseEntity<AbstractResponse> getAllByPage(@RequestParam int offset, @RequestParam int limit)
+    public ResponseEntity<AbstractResponse> getAllByPage(@RequestParam(required = false) Integer offset,
+                                                         @RequestParam int limit,
+                                                         @RequestParam(required = false) String cursor,
+                                                         ServletWebRequest request)
     {
         try {
+            if (request.checkNotModified(productService.getProductsTag()))
+                return null;
+
+            if (cursor != null) {
+                return ResponseEntity.ok(
+                        new SuccessResponse(
+                                productService.getAllAfter(cursor, limit)));
+            } else if (offset == null) {
+                return ResponseEntity.badRequest().body(
+                        new FailedResponse("You must provide either offset or cursor"));
+            }
+
             return ResponseEntity.ok(
                     new SuccessResponse(
                             productService.getAllByPage(offset, limit)));
         } catch (ProductException e) {
             return ResponseEntity.badRequest().body(
                     new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error when getting product message: {} stack trace: {}",
                     e.getMessage(),
@@ -205,7 +345,10 @@ public class ProductController
      * I use post request for this, because i do not know the number of query parameters
      * and i consume an object with the necessary sort fields, and page size/items
      *
-     * @param pageableAndSortable the model with sort data and page number / size
+     * If the model contains cursor the page is read by cursor and the response contains the next cursor
+     * If the model contains filter only the matching products are listed (not supported with cursor)
+     *
+     * @param pageableAndSortable the model with sort data, page number / size and optional filter
      * @return response with appropriate status (success or failure) and
      * if success, response body with paged and sorted products
      */
@@ -213,12 +356,20 @@ public class ProductController
     public ResponseEntity<AbstractResponse> getAllByPageWithSort(@RequestBody PageableAndSortable pageableAndSortable)
     {
         try {
+            if (pageableAndSortable.getCursor() != null) {
+                return ResponseEntity.ok(
+                        new SuccessResponse(
+                                productService.getAllAfter(pageableAndSortable)));
+            }
+
             return ResponseEntity.ok(
                     new SuccessResponse(
                             productService.getAllByPage(pageableAndSortable)));
         } catch (ProductException e) {
             return ResponseEntity.badRequest().body(
                     new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error when getting product message: {} stack trace: {}",
                     e.getMessage(),
@@ -229,6 +380,67 @@ public class ProductController
         }
     }
 
+    /**
+     * Full text search over the names and descriptions of the products, the most relevant first
+     *
+     * @param q        the words to search
+     * @param category optional category filter
+     * @param page     the page
+     * @param pageSize the page size
+     * @param request  the request, responds with 304 if the ETag in If-None-Match is still current
+     * @return the matching products for the page or appropriate error message
+     */
+    @GetMapping("/products/search")
+    public ResponseEntity<AbstractResponse> searchProducts(@RequestParam String q,
+                                                           @RequestParam(required = false) String category,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = "20") int pageSize,
+                                                           ServletWebRequest request)
+    {
+        try {
+            if (request.checkNotModified(productService.getProductsTag()))
+                return null;
+
+            return ResponseEntity.ok(
+                    new SuccessResponse(
+                            productSearchService.searchProducts(q, category, page, pageSize)));
+        } catch (ProductException e) {
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse(e.getMessage()));
+        } catch (Exception e) {
+            LOGGER.error("Unexpected server error when searching products message: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse("Unexpected error occurred"));
+        }
+    }
+
+    /**
+     * Suggestions while the name of a product is typed, served from memory
+     *
+     * @param prefix     the start of the name, case insensitive
+     * @param limit      how many products to suggest
+     * @param byQuantity the products with the most quantity first, otherwise ordered by name
+     * @return the products whose name starts with the prefix or appropriate error message
+     */
+    @GetMapping("/products/suggest")
+    public ResponseEntity<AbstractResponse> suggestProducts(@RequestParam String prefix,
+                                                            @RequestParam(defaultValue = "10") int limit,
+                                                            @RequestParam(defaultValue = "false") boolean byQuantity)
+    {
+        try {
+            return ResponseEntity.ok(
+                    new SuccessResponse(
+                            productSearchService.suggestProducts(prefix, limit, byQuantity)));
+        } catch (ProductException e) {
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse(e.getMessage()));
+        } catch (Exception e) {
+            LOGGER.error("Unexpected server error when suggesting products message: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse("Unexpected error occurred"));
+        }
+    }
+
     /**
      * Order a product.
      *
@@ -246,6 +458,8 @@ public class ProductController
         } catch (ProductException e) {
             return ResponseEntity.badRequest().body(
                     new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             LOGGER.error("Unexpected server error when ordering product with id: {}, amount: {}," +
                             " message: {} stack trace: {}",
@@ -258,4 +472,115 @@ public class ProductController
                     new FailedResponse("Unexpected error occurred"));
         }
     }
+
+    /**
+     * Order many products at once (cart checkout), all or nothing
+     *
+     * @param lines the product ids and amounts to order
+     * @return response with the outcome of every line, failed if any of the lines failed
+     */
+    @PostMapping("/products/orders")
+    public ResponseEntity<AbstractResponse> orderManyProducts(@RequestBody List<OrderLineBinding> lines)
+    {
+        try {
+            List<OrderLineView> outcome = productService.orderProducts(lines);
+            if (outcome.stream().anyMatch(line -> line.getStatus() == ResponseStatus.FAILED))
+                return ResponseEntity.badRequest().body(new FailedResponse(outcome));
+
+            return ResponseEntity.ok(new SuccessResponse(outcome));
+        } catch (ProductException e) {
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse(e.getMessage()));
+        } catch (ServiceBusyException e) {
+            return busy(e);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected server error when ordering products message: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse("Unexpected error occurred"));
+        }
+    }
+
+    /**
+     * Bulk import of products (supplier catalogs) with the same semantics as adding a single product
+     * The body is read as a stream, one product per line - ndjson objects with name, category and description,
+     * or csv with header line containing name, category and optionally description (other columns such as the
+     * exported id and quantity are ignored, quoted values can span lines)
+     *
+     * @param contentType application/x-ndjson or text/csv
+     * @param body        the products
+     * @return report with the imported and failed rows
+     */
+    @PostMapping(value = "/products/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<AbstractResponse> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                           InputStream body)
+    {
+        try {
+            return ResponseEntity.ok(
+                    new SuccessResponse(
+                            productImportService.importProducts(body, DataFormat.fromContentType(contentType))));
+        } catch (ProductException e) {
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse(e.getMessage()));
+        } catch (Exception e) {
+            LOGGER.error("Unexpected server error when importing products message: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(
+                    new FailedResponse("Unexpected error occurred"));
+        }
+    }
+
+    /**
+     * Export of all products, or the products in one category, ordered by id
+     * The products are written while they are read from the database, so any amount of products can be exported
+     *
+     * @param format   ndjson or csv
+     * @param category optional category filter
+     * @param gzip     compress the response (Content-Encoding: gzip)
+     * @return the products as a stream, or error if the format is not supported
+     */
+    @GetMapping("/products/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(required = false) String category,
+                                                                @RequestParam(defaultValue = "false") boolean gzip)
+    {
+        DataFormat dataFormat;
+        try {
+            dataFormat = DataFormat.fromName(format);
+        } catch (IllegalArgumentException e) {
+            // Streaming responses are written as they are, the error is serialized here
+            FailedResponse error = new FailedResponse(e.getMessage());
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(output -> objectMapper.writeValue(output, error));
+        }
+
+        StreamingResponseBody body = output -> {
+            if (!gzip) {
+                productExportService.exportProducts(category, dataFormat, output);
+                return;
+            }
+
+            try (GZIPOutputStream compressed = new GZIPOutputStream(output, 64 * 1024)) {
+                productExportService.exportProducts(category, dataFormat, compressed);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(dataFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=products." + dataFormat.name().toLowerCase());
+        if (gzip)
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        return response.body(body);
+    }
+
+    /**
+     * The call was not admitted to the service in time (see AdmissionAspect), the client should retry later
+     */
+    private ResponseEntity<AbstractResponse> busy(ServiceBusyException e)
+    {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new FailedResponse(e.getMessage()));
+    }
 }
@@ -7,8 +7,32 @@ package com.varna.code.challenge.exceptions;
  */
 public class ProductException extends Exception
 {
+    /**
+     * What went wrong, used to count the failures by kind
+     */
+    public enum Reason
+    {
+        INVALID_INPUT,
+        NOT_FOUND,
+        OUT_OF_STOCK,
+        CONFLICT
+    }
+
+    private final Reason reason;
+
     public ProductException(String message)
+    {
+        this(message, Reason.INVALID_INPUT);
+    }
+
+    public ProductException(String message, Reason reason)
     {
         super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason()
+    {
+        return reason;
     }
 }
@@ -0,0 +1,13 @@
+package com.varna.code.challenge.exceptions;
+
+/**
+ * Thrown when a call to the service waited too long to be admitted (see AdmissionAspect)
+ * The controller answers with 503, the client may retry later
+ */
+public class ServiceBusyException extends RuntimeException
+{
+    public ServiceBusyException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,55 @@
+package com.varna.code.challenge.models.binding;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Formats for bulk import and export of products, one product per line
+ */
+public enum DataFormat
+{
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String mediaType;
+
+    DataFormat(String mediaType)
+    {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType()
+    {
+        return mediaType;
+    }
+
+    /**
+     * @param contentType the content type of a request, can contain parameters like charset
+     * @return the format for the content type
+     * @throws IllegalArgumentException if there is no format for the content type
+     */
+    public static DataFormat fromContentType(String contentType) throws IllegalArgumentException
+    {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        for (DataFormat format : values()) {
+            if (MediaType.parseMediaType(format.mediaType).equalsTypeAndSubtype(mediaType))
+                return format;
+        }
+
+        throw new IllegalArgumentException("Unsupported format " + contentType);
+    }
+
+    /**
+     * @param name the name of the format, case insensitive (ndjson or csv)
+     * @return the format with the name
+     * @throws IllegalArgumentException if there is no such format
+     */
+    public static DataFormat fromName(String name) throws IllegalArgumentException
+    {
+        for (DataFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name))
+                return format;
+        }
+
+        throw new IllegalArgumentException("Unsupported format " + name);
+    }
+}
@@ -0,0 +1,41 @@
+package com.varna.code.challenge.models.binding;
+
+/**
+ * Single line of a multi product order (cart checkout)
+ */
+public class OrderLineBinding
+{
+    private int productId;
+
+    private int amount;
+
+    public OrderLineBinding()
+    {
+    }
+
+    public OrderLineBinding(int productId, int amount)
+    {
+        this.productId = productId;
+        this.amount = amount;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public int getAmount()
+    {
+        return amount;
+    }
+
+    public void setAmount(int amount)
+    {
+        this.amount = amount;
+    }
+}
@@ -13,6 +13,17 @@ public class PageableAndSortable
      */
     private Map<String, SortOrder> sortedProperties;
 
+    /**
+     * Cursor returned with the previous page, when present the page is read by cursor
+     * and pageNumber is ignored (empty string reads the first page)
+     */
+    private String cursor;
+
+    /**
+     * Optional criteria of the products in the page
+     */
+    private ProductFilter filter;
+
     public PageableAndSortable()
     {
     }
@@ -46,4 +57,24 @@ public class PageableAndSortable
     {
         this.sortedProperties = sortedProperties;
     }
+
+    public String getCursor()
+    {
+        return cursor;
+    }
+
+    public void setCursor(String cursor)
+    {
+        this.cursor = cursor;
+    }
+
+    public ProductFilter getFilter()
+    {
+        return filter;
+    }
+
+    public void setFilter(ProductFilter filter)
+    {
+        this.filter = filter;
+    }
 }
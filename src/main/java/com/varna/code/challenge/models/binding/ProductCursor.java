@@ -0,0 +1,226 @@
+package com.varna.code.challenge.models.binding;
+
+import com.varna.code.challenge.models.entities.Product;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Opaque cursor used for keyset (seek) pagination
+ * Holds the sort the page was read with and the sort key values of the last product on that page,
+ * so the next page can be read with WHERE (sort keys) > (last values) instead of an OFFSET scan.
+ * The product id is always the last sort key, so every cursor points to exactly one row.
+ * It takes the direction of the key before it, so a sort in one direction stays a single row value comparison
+ */
+public class ProductCursor
+{
+    private static final String ID_PROPERTY = "id";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final List<Sort.Order> orders;
+
+    private final List<Object> values;
+
+    private ProductCursor(List<Sort.Order> orders, List<Object> values)
+    {
+        this.orders = orders;
+        this.values = values;
+    }
+
+    /**
+     * Normalizes the requested sort for seeking - validates every property
+     * and appends the id as tie breaker in the direction of the last key, so the order is total
+     *
+     * @param requestedOrders the sort requested by the client (can be empty)
+     * @return the sort with the id as the last key
+     * @throws PropertyReferenceException if there is no such property in products
+     */
+    public static List<Sort.Order> withTieBreaker(List<Sort.Order> requestedOrders) throws PropertyReferenceException
+    {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : requestedOrders) {
+            PropertyPath.from(order.getProperty(), Product.class);
+            orders.add(order);
+            // Everything after the id is unreachable, the id is unique
+            if (ID_PROPERTY.equals(order.getProperty()))
+                return orders;
+        }
+
+        Sort.Direction direction = orders.isEmpty()
+                ? Sort.Direction.ASC
+                : orders.get(orders.size() - 1).getDirection();
+        orders.add(new Sort.Order(direction, ID_PROPERTY));
+        return orders;
+    }
+
+    /**
+     * Creates a cursor pointing to the given product
+     *
+     * @param last   the last product of the current page
+     * @param orders the normalized sort (see {@link #withTieBreaker(List)})
+     * @return cursor for the page after the product
+     */
+    public static ProductCursor after(Product last, List<Sort.Order> orders)
+    {
+        BeanWrapperImpl product = new BeanWrapperImpl(last);
+        List<Object> values = orders.stream()
+                .map(order -> product.getPropertyValue(order.getProperty()))
+                .collect(Collectors.toList());
+
+        return new ProductCursor(orders, values);
+    }
+
+    /**
+     * Creates a cursor from the sort key values of the last product of the current page
+     *
+     * @param orders the normalized sort (see {@link #withTieBreaker(List)})
+     * @param values the values of the product for every order
+     * @return cursor for the page after the product
+     */
+    public static ProductCursor after(List<Sort.Order> orders, List<Object> values)
+    {
+        return new ProductCursor(orders, values);
+    }
+
+    /**
+     * Parses a cursor previously returned by {@link #encode()}
+     *
+     * @param token the cursor from the client
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is not a valid cursor, or a value does not have
+     * the type of its property
+     */
+    public static ProductCursor decode(String token) throws IllegalArgumentException
+    {
+        List<Sort.Order> orders = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+
+        try {
+            String decoded = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+            // Every key is <direction><property>:<type><base64 value>, keys are separated by comma
+            for (String key : decoded.split(",")) {
+                int separator = key.indexOf(':');
+                Sort.Direction direction = key.charAt(0) == '-' ? Sort.Direction.DESC : Sort.Direction.ASC;
+                String property = key.substring(1, separator);
+                Object value = decodeValue(key.charAt(separator + 1), key.substring(separator + 2));
+                checkType(property, value);
+                orders.add(new Sort.Order(direction, property));
+                values.add(value);
+            }
+        } catch (RuntimeException malformed) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        if (orders.isEmpty() || !ID_PROPERTY.equals(orders.get(orders.size() - 1).getProperty()))
+            throw new IllegalArgumentException("Invalid cursor");
+
+        return new ProductCursor(orders, values);
+    }
+
+    /**
+     * @return url safe representation of the cursor to hand to the client
+     */
+    public String encode()
+    {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < orders.size(); i++) {
+            if (i > 0)
+                token.append(',');
+
+            Sort.Order order = orders.get(i);
+            token.append(order.isAscending() ? '+' : '-')
+                    .append(order.getProperty())
+                    .append(':')
+                    .append(encodeValue(values.get(i)));
+        }
+
+        return ENCODER.encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param requestedOrders the normalized sort of the current request
+     * @return true if this cursor was created for the same sort
+     */
+    public boolean matches(List<Sort.Order> requestedOrders)
+    {
+        if (requestedOrders.size() != orders.size())
+            return false;
+
+        for (int i = 0; i < orders.size(); i++) {
+            if (!orders.get(i).getProperty().equals(requestedOrders.get(i).getProperty()) ||
+                    orders.get(i).getDirection() != requestedOrders.get(i).getDirection())
+                return false;
+        }
+
+        return true;
+    }
+
+    public List<Sort.Order> getOrders()
+    {
+        return Collections.unmodifiableList(orders);
+    }
+
+    /**
+     * @return the sort key values of the last row, in the order of {@link #getOrders()}
+     */
+    public List<Object> getValues()
+    {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * The cursor comes from the client, every value must fit its property before it is compared with products
+     */
+    private static void checkType(String property, @Nullable Object value)
+    {
+        Class<?> type = PropertyPath.from(property, Product.class).getType();
+        boolean matches = value == null
+                ? !type.isPrimitive()
+                : ClassUtils.resolvePrimitiveIfNecessary(type).isInstance(value);
+        if (!matches)
+            throw new IllegalArgumentException("Cursor value of " + property + " does not have its type");
+    }
+
+    private static String encodeValue(@Nullable Object value)
+    {
+        if (value == null)
+            return "n";
+        else if (value instanceof Integer)
+            return "i" + value;
+        else if (value instanceof LocalDate)
+            return "d" + value;
+        else
+            return "s" + ENCODER.encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nullable
+    private static Object decodeValue(char type, String value)
+    {
+        switch (type) {
+            case 'n':
+                return null;
+            case 'i':
+                return Integer.valueOf(value);
+            case 'd':
+                return LocalDate.parse(value);
+            case 's':
+                return new String(DECODER.decode(value), StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Unknown cursor value type " + type);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.varna.code.challenge.models.binding;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Criteria of the products to list, every criterion is optional and all given criteria must match
+ */
+public class ProductFilter
+{
+    /**
+     * Only products in one of these categories
+     */
+    private List<String> categories;
+
+    private Integer minQuantity;
+
+    private Integer maxQuantity;
+
+    /**
+     * Inclusive bounds of the date created
+     */
+    private LocalDate createdFrom;
+
+    private LocalDate createdTo;
+
+    /**
+     * Inclusive bounds of the last modified date
+     */
+    private LocalDate modifiedFrom;
+
+    private LocalDate modifiedTo;
+
+    /**
+     * Case insensitive part of the name
+     */
+    private String nameContains;
+
+    public ProductFilter()
+    {
+    }
+
+    /**
+     * @return true if there is no criterion, all products match
+     */
+    public boolean isEmpty()
+    {
+        return (categories == null || categories.isEmpty()) &&
+                minQuantity == null &&
+                maxQuantity == null &&
+                createdFrom == null &&
+                createdTo == null &&
+                modifiedFrom == null &&
+                modifiedTo == null &&
+                (nameContains == null || nameContains.isEmpty());
+    }
+
+    public List<String> getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(List<String> categories)
+    {
+        this.categories = categories;
+    }
+
+    public Integer getMinQuantity()
+    {
+        return minQuantity;
+    }
+
+    public void setMinQuantity(Integer minQuantity)
+    {
+        this.minQuantity = minQuantity;
+    }
+
+    public Integer getMaxQuantity()
+    {
+        return maxQuantity;
+    }
+
+    public void setMaxQuantity(Integer maxQuantity)
+    {
+        this.maxQuantity = maxQuantity;
+    }
+
+    public LocalDate getCreatedFrom()
+    {
+        return createdFrom;
+    }
+
+    public void setCreatedFrom(LocalDate createdFrom)
+    {
+        this.createdFrom = createdFrom;
+    }
+
+    public LocalDate getCreatedTo()
+    {
+        return createdTo;
+    }
+
+    public void setCreatedTo(LocalDate createdTo)
+    {
+        this.createdTo = createdTo;
+    }
+
+    public LocalDate getModifiedFrom()
+    {
+        return modifiedFrom;
+    }
+
+    public void setModifiedFrom(LocalDate modifiedFrom)
+    {
+        this.modifiedFrom = modifiedFrom;
+    }
+
+    public LocalDate getModifiedTo()
+    {
+        return modifiedTo;
+    }
+
+    public void setModifiedTo(LocalDate modifiedTo)
+    {
+        this.modifiedTo = modifiedTo;
+    }
+
+    public String getNameContains()
+    {
+        return nameContains;
+    }
+
+    public void setNameContains(String nameContains)
+    {
+        this.nameContains = nameContains;
+    }
+}
@@ -1,11 +1,17 @@
 package com.varna.code.challenge.models.entities;
 
 import com.varna.code.challenge.models.binding.ProductBinding;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import java.time.LocalDate;
 
+/**
+ * Updates through the persistence context write only the changed columns (DynamicUpdate),
+ * the edits go through ProductRepositoryCustom#updateNotNull without loading the entity at all
+ */
 @Entity
+@DynamicUpdate
 @Table(name = "products")
 public class Product
 {
@@ -0,0 +1,81 @@
+package com.varna.code.challenge.models.events;
+
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
+import org.springframework.lang.Nullable;
+
+/**
+ * Published by the write paths after a product was created, changed or deleted
+ * Listeners which keep derived state (counters, caches, indexes) use it to update themselves
+ * instead of reading the table again. When published inside a transaction
+ * transactional listeners receive it only after commit
+ */
+public class ProductEvent
+{
+    public enum Type
+    {
+        CREATED,
+        UPDATED,
+        DELETED,
+    }
+
+    private final Type type;
+
+    private final ProductView before;
+
+    private final ProductView after;
+
+    private ProductEvent(Type type, @Nullable ProductView before, @Nullable ProductView after)
+    {
+        this.type = type;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static ProductEvent created(Product product)
+    {
+        return new ProductEvent(Type.CREATED, null, new ProductView(product));
+    }
+
+    /**
+     * @param before snapshot of the product taken before the change
+     * @param after  the changed product
+     */
+    public static ProductEvent updated(ProductView before, Product after)
+    {
+        return new ProductEvent(Type.UPDATED, before, new ProductView(after));
+    }
+
+    public static ProductEvent deleted(Product product)
+    {
+        return deleted(new ProductView(product));
+    }
+
+    public static ProductEvent deleted(ProductView product)
+    {
+        return new ProductEvent(Type.DELETED, product, null);
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return the product before the change, null for created products
+     */
+    @Nullable
+    public ProductView getBefore()
+    {
+        return before;
+    }
+
+    /**
+     * @return the product after the change, null for deleted products
+     */
+    @Nullable
+    public ProductView getAfter()
+    {
+        return after;
+    }
+}
@@ -0,0 +1,20 @@
+package com.varna.code.challenge.models.events;
+
+/**
+ * Published after many products were written at once bypassing the per product events
+ * (bulk import, data generation). Listeners should rebuild their state from the table
+ */
+public class ProductsBulkChangedEvent
+{
+    private final long changedProducts;
+
+    public ProductsBulkChangedEvent(long changedProducts)
+    {
+        this.changedProducts = changedProducts;
+    }
+
+    public long getChangedProducts()
+    {
+        return changedProducts;
+    }
+}
@@ -0,0 +1,39 @@
+package com.varna.code.challenge.models.view;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The categories aggregate as it was at some version
+ * Version changes with every write, reconciledAt is the last time the aggregate was compared with the table
+ */
+public class CategoriesSnapshot
+{
+    private final long version;
+
+    private final Instant reconciledAt;
+
+    private final List<ProductsByCategory> categories;
+
+    public CategoriesSnapshot(long version, Instant reconciledAt, List<ProductsByCategory> categories)
+    {
+        this.version = version;
+        this.reconciledAt = reconciledAt;
+        this.categories = categories;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public Instant getReconciledAt()
+    {
+        return reconciledAt;
+    }
+
+    public List<ProductsByCategory> getCategories()
+    {
+        return categories;
+    }
+}
@@ -0,0 +1,41 @@
+package com.varna.code.challenge.models.view;
+
+/**
+ * Summary of a synthetic data generation run
+ */
+public class GenerationReport
+{
+    private final long products;
+
+    private final long elapsedMillis;
+
+    private final long productsPerSecond;
+
+    public GenerationReport(long products, long elapsedMillis)
+    {
+        this.products = products;
+        this.elapsedMillis = elapsedMillis;
+        this.productsPerSecond = elapsedMillis == 0 ? products : products * 1000 / elapsedMillis;
+    }
+
+    public long getProducts()
+    {
+        return products;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    public long getProductsPerSecond()
+    {
+        return productsPerSecond;
+    }
+
+    @Override
+    public String toString()
+    {
+        return products + " products in " + elapsedMillis + " ms (" + productsPerSecond + " products/s)";
+    }
+}
@@ -0,0 +1,41 @@
+package com.varna.code.challenge.models.view;
+
+/**
+ * A row of a bulk import which was not imported
+ */
+public class ImportError
+{
+    private long row;
+
+    private String message;
+
+    public ImportError()
+    {
+    }
+
+    public ImportError(long row, String message)
+    {
+        this.row = row;
+        this.message = message;
+    }
+
+    public long getRow()
+    {
+        return row;
+    }
+
+    public void setRow(long row)
+    {
+        this.row = row;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+}
@@ -0,0 +1,101 @@
+package com.varna.code.challenge.models.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a bulk import
+ */
+public class ImportReport
+{
+    private long rowsRead;
+
+    private long inserted;
+
+    private long updated;
+
+    private long failed;
+
+    /**
+     * The first errors, at most the configured maximum, failed contains the count of all of them
+     */
+    private List<ImportError> errors = new ArrayList<>();
+
+    private long elapsedMillis;
+
+    private long rowsPerSecond;
+
+    public ImportReport()
+    {
+    }
+
+    public long getRowsRead()
+    {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead)
+    {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getInserted()
+    {
+        return inserted;
+    }
+
+    public void setInserted(long inserted)
+    {
+        this.inserted = inserted;
+    }
+
+    public long getUpdated()
+    {
+        return updated;
+    }
+
+    public void setUpdated(long updated)
+    {
+        this.updated = updated;
+    }
+
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed(long failed)
+    {
+        this.failed = failed;
+    }
+
+    public List<ImportError> getErrors()
+    {
+        return errors;
+    }
+
+    public void setErrors(List<ImportError> errors)
+    {
+        this.errors = errors;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis)
+    {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond()
+    {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond)
+    {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+}
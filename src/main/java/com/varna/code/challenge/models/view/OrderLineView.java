@@ -0,0 +1,88 @@
+package com.varna.code.challenge.models.view;
+
+import com.varna.code.challenge.models.response.ResponseStatus;
+
+/**
+ * Outcome of a single line of a multi product order
+ */
+public class OrderLineView
+{
+    private int productId;
+
+    private int amount;
+
+    private ResponseStatus status;
+
+    /**
+     * Why the line failed, null for successful lines
+     */
+    private String message;
+
+    /**
+     * The quantity left after the order, null if the order was not applied
+     */
+    private Integer quantityLeft;
+
+    public OrderLineView()
+    {
+    }
+
+    public OrderLineView(int productId, int amount, ResponseStatus status, String message, Integer quantityLeft)
+    {
+        this.productId = productId;
+        this.amount = amount;
+        this.status = status;
+        this.message = message;
+        this.quantityLeft = quantityLeft;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public int getAmount()
+    {
+        return amount;
+    }
+
+    public void setAmount(int amount)
+    {
+        this.amount = amount;
+    }
+
+    public ResponseStatus getStatus()
+    {
+        return status;
+    }
+
+    public void setStatus(ResponseStatus status)
+    {
+        this.status = status;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+
+    public Integer getQuantityLeft()
+    {
+        return quantityLeft;
+    }
+
+    public void setQuantityLeft(Integer quantityLeft)
+    {
+        this.quantityLeft = quantityLeft;
+    }
+}
@@ -8,6 +8,11 @@ public class ProductByPage
 
     private List<ProductView> products;
 
+    /**
+     * Cursor for the next page when the page was read by cursor, null otherwise or if this is the last page
+     */
+    private String nextCursor;
+
     public ProductByPage()
     {
     }
@@ -18,6 +23,13 @@ public class ProductByPage
         this.products = products;
     }
 
+    public ProductByPage(long totalRecords, List<ProductView> products, String nextCursor)
+    {
+        this.totalRecords = totalRecords;
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
     public long getTotalRecords()
     {
         return totalRecords;
@@ -37,4 +49,14 @@ public class ProductByPage
     {
         this.products = products;
     }
+
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor)
+    {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -0,0 +1,67 @@
+package com.varna.code.challenge.models.view;
+
+/**
+ * A product suggested while typing its name, without the description to keep the suggestions small
+ */
+public class ProductSuggestion
+{
+    private int id;
+
+    private String name;
+
+    private String category;
+
+    private int quantity;
+
+    public ProductSuggestion()
+    {
+    }
+
+    public ProductSuggestion(ProductView product)
+    {
+        this.id = product.getId();
+        this.name = product.getName();
+        this.category = product.getCategory();
+        this.quantity = product.getQuantity();
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public void setId(int id)
+    {
+        this.id = id;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public String getCategory()
+    {
+        return category;
+    }
+
+    public void setCategory(String category)
+    {
+        this.category = category;
+    }
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity)
+    {
+        this.quantity = quantity;
+    }
+}
@@ -25,6 +25,26 @@ public class ProductView
     {
     }
 
+    /**
+     * Constructor used by the queries selecting straight into the view (see ProductRepositoryCustom#findAllViews)
+     */
+    public ProductView(int id,
+                       String name,
+                       String category,
+                       String description,
+                       int quantity,
+                       LocalDate dateCreated,
+                       LocalDate dateModified)
+    {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.description = description;
+        this.quantity = quantity;
+        this.dateCreated = dateCreated;
+        this.dateModified = dateModified;
+    }
+
     public ProductView(Product product)
     {
         this.id = product.getId();
@@ -6,6 +6,11 @@ public class ProductsByCategory
 
     private long productsAvailable;
 
+    /**
+     * Summed quantity of all products in the category
+     */
+    private long quantityAvailable;
+
     public ProductsByCategory()
     {
     }
@@ -16,6 +21,13 @@ public class ProductsByCategory
         this.productsAvailable = productsAvailable;
     }
 
+    public ProductsByCategory(String category, long productsAvailable, long quantityAvailable)
+    {
+        this.category = category;
+        this.productsAvailable = productsAvailable;
+        this.quantityAvailable = quantityAvailable;
+    }
+
     public String getCategory()
     {
         return category;
@@ -35,4 +47,14 @@ public class ProductsByCategory
     {
         this.productsAvailable = productsAvailable;
     }
+
+    public long getQuantityAvailable()
+    {
+        return quantityAvailable;
+    }
+
+    public void setQuantityAvailable(long quantityAvailable)
+    {
+        this.quantityAvailable = quantityAvailable;
+    }
 }
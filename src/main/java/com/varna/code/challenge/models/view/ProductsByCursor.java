@@ -0,0 +1,46 @@
+package com.varna.code.challenge.models.view;
+
+import java.util.List;
+
+/**
+ * Page of products read by cursor (keyset pagination)
+ */
+public class ProductsByCursor
+{
+    private List<ProductView> products;
+
+    /**
+     * Cursor to pass for the next page, null if this is the last page
+     */
+    private String nextCursor;
+
+    public ProductsByCursor()
+    {
+    }
+
+    public ProductsByCursor(List<ProductView> products, String nextCursor)
+    {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ProductView> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<ProductView> products)
+    {
+        this.products = products;
+    }
+
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor)
+    {
+        this.nextCursor = nextCursor;
+    }
+}
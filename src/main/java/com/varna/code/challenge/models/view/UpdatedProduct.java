@@ -0,0 +1,29 @@
+package com.varna.code.challenge.models.view;
+
+import com.varna.code.challenge.models.entities.Product;
+
+/**
+ * A product as it was before and after an update, read with the update itself
+ */
+public class UpdatedProduct
+{
+    private final ProductView before;
+
+    private final Product after;
+
+    public UpdatedProduct(ProductView before, Product after)
+    {
+        this.before = before;
+        this.after = after;
+    }
+
+    public ProductView getBefore()
+    {
+        return before;
+    }
+
+    public Product getAfter()
+    {
+        return after;
+    }
+}
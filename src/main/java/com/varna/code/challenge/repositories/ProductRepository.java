@@ -7,13 +7,13 @@ import org.springframework.data.repository.PagingAndSortingRepository;
 
 import java.util.List;
 
-public interface ProductRepository extends PagingAndSortingRepository<Product, Integer>
+public interface ProductRepository extends PagingAndSortingRepository<Product, Integer>, ProductRepositoryCustom
 {
     Product findByName(String name);
 
 
     @Query("select new com.varna.code.challenge.models.view.ProductsByCategory(" +
-            "p.category, count(p)) " +
+            "p.category, count(p), sum(p.quantity)) " +
             "from Product p " +
             "group by p.category")
     List<ProductsByCategory> getProductsByCategory();
@@ -0,0 +1,191 @@
+package com.varna.code.challenge.repositories;
+
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.binding.ProductCursor;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.UpdatedProduct;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+/**
+ * Queries which can not be expressed as derived or annotated spring data queries
+ */
+public interface ProductRepositoryCustom
+{
+    /**
+     * Keyset (seek) pagination - reads the products which come after the cursor in the given order
+     * The cost does not depend on how deep the page is, unlike OFFSET
+     *
+     * @param orders the sort, the last order must be by id so the order is total
+     * @param after  the position to seek after, null for the first page
+     * @param limit  maximum number of products to return
+     * @return the products after the cursor
+     */
+    List<Product> findAllAfter(List<Sort.Order> orders, @Nullable ProductCursor after, int limit);
+
+    /**
+     * Atomically decreases the quantity of the product if there is enough in stock
+     * This is a single conditional UPDATE which returns the changed row,
+     * so concurrent orders can not oversell or overwrite each other
+     *
+     * @param productId the id of the product
+     * @param amount    the amount to subtract
+     * @return the product after the update, or empty if nothing was updated
+     * (there is no such product or its quantity is less than amount)
+     */
+    Optional<Product> decreaseQuantity(int productId, int amount);
+
+    /**
+     * Reads a page of products straight into views, without loading entities into the persistence context
+     * The rows are fetched in one round trip (the fetch size is the page size) in a read only transaction
+     *
+     * @param pageable the page and the sort, the sort properties are product properties
+     * @return the products of the page, no count query is run
+     * @throws PropertyReferenceException if there is no such property to sort by
+     */
+    List<ProductView> findAllViews(Pageable pageable) throws PropertyReferenceException;
+
+    /**
+     * Same as {@link #findAllViews(Pageable)} for the products matching the filter
+     *
+     * @param filter   the criteria of the products, all products if null
+     * @param pageable the page and sort
+     * @return the products for the page
+     * @throws PropertyReferenceException if there is no such property to sort by
+     */
+    List<ProductView> findAllViews(@Nullable Specification<Product> filter, Pageable pageable)
+            throws PropertyReferenceException;
+
+    /**
+     * Sets only the not null fields of the changes and the last modified date, in one UPDATE which returns
+     * the changed row together with the replaced values where the database supports it
+     *
+     * @param productId the id of the product
+     * @param changes   the new name, category and description, null fields are left as they are
+     * @return the product before and after the update, or empty if there is no such product
+     * @throws org.springframework.dao.DuplicateKeyException if the new name is taken by another product
+     */
+    Optional<UpdatedProduct> updateNotNull(int productId, EditProductBinding changes);
+
+    /**
+     * Reads the committed row straight into a view, bypassing the persistence context
+     * Listeners of the product events use it, the entity of their own transaction can be older than the row
+     *
+     * @param productId the id of the product
+     * @return the product as it is in the table, or empty if there is no such product
+     */
+    Optional<ProductView> findViewById(int productId);
+
+    /**
+     * Deletes the product and returns the deleted row in one statement where the database supports it
+     *
+     * @param productId the id of the product
+     * @return the deleted product, or empty if there is no such product
+     */
+    Optional<Product> deleteByIdReturning(int productId);
+
+    /**
+     * Reads and locks (SELECT ... FOR UPDATE) the products with the given ids until the end of the transaction
+     * Rows are locked in id order, so two transactions locking overlapping products can not deadlock
+     *
+     * @param productIds the ids of the products
+     * @return the existing products ordered by id
+     */
+    List<Product> findAllByIdForUpdate(Collection<Integer> productIds);
+
+    /**
+     * Decreases the quantities of many products with a single jdbc batch (one round trip)
+     * Each statement is conditional like in {@link #decreaseQuantity(int, int)}
+     *
+     * @param amountByProductId the amount to subtract for every product id, iterated in id order
+     * @return the updated row count for each product in the order of the map
+     */
+    int[] decreaseQuantities(SortedMap<Integer, Integer> amountByProductId);
+
+    /**
+     * Applies many orders with a single jdbc batch, each statement is conditional like in
+     * {@link #decreaseQuantity(int, int)}. The statements run in the given order, so the orders of the same
+     * product see the earlier ones - the ones which do not fit in the remaining quantity are not applied
+     *
+     * @param orders the orders, sorted by product id so the rows are locked in id order
+     * @return the updated row count for each order, 0 for the orders which were not applied
+     */
+    int[] applyOrders(List<OrderLineBinding> orders);
+
+    /**
+     * Increases the quantities of many products with a single jdbc batch and reads the changed rows back,
+     * two round trips in one transaction however many products there are
+     *
+     * @param amountByProductId the amount to add for every product id, iterated in id order
+     * @return the products after the update ordered by id, the products which do not exist are missing
+     */
+    List<Product> increaseQuantities(SortedMap<Integer, Integer> amountByProductId);
+
+    /**
+     * Bulk version of adding products - the products whose name already exists get their quantity
+     * added to the existing product, the others are inserted. Uses jdbc batches
+     * and bypasses the persistence context, all in one transaction
+     *
+     * @param products products with distinct names, quantity is the amount to add
+     * @return how many of the products were inserted, the rest were added to existing products
+     */
+    int mergeByName(Collection<Product> products);
+
+    /**
+     * Inserts the product, or if there is a product with the same name adds the quantity to it,
+     * in a single statement relying on the unique index on the name, so concurrent adds can not create duplicates
+     *
+     * @param product the product to insert, it is updated with the stored row (id, quantity, dates)
+     * @return true if the product was inserted, false if it was added to an existing one
+     */
+    boolean upsertByName(Product product);
+
+    /**
+     * Inserts the products with a single jdbc batch, bypassing the persistence context
+     * The ids of the passed products are not set
+     *
+     * @param products new products
+     * @return how many products were inserted
+     */
+    int insertAll(Collection<Product> products);
+
+    /**
+     * Reads the products ordered by id through a forward only cursor, fetching fetchSize rows at a time,
+     * so only one fetch is held in memory no matter how many products there are.
+     * The products are not managed by the persistence context
+     *
+     * @param category  only products in this category, or all products if null
+     * @param fetchSize how many rows the driver reads per round trip
+     * @param action    called for every product while the cursor is open
+     */
+    void forEachProduct(@Nullable String category, int fetchSize, Consumer<Product> action);
+
+    /**
+     * @return true if the database can run {@link #search(String, String, Pageable)}
+     */
+    boolean hasFullTextSearch();
+
+    /**
+     * Full text search over name and description through the search_vector column and its GIN index
+     * The products matching the whole query are ordered by relevance, matches in the name rank higher
+     *
+     * @param query    the text to search, web search syntax ("quoted phrase", or, -excluded)
+     * @param category only products in this category, or all products if null
+     * @param pageable the page, the sort is ignored
+     * @return the products for the page ordered by relevance
+     * @throws UnsupportedOperationException if the database has no full text search
+     */
+    List<ProductView> search(String query, @Nullable String category, Pageable pageable)
+            throws UnsupportedOperationException;
+}
@@ -0,0 +1,648 @@
+package com.varna.code.challenge.repositories;
+
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.binding.ProductCursor;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.UpdatedProduct;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Implementation of {@link ProductRepositoryCustom}, picked up by spring data by the Impl suffix
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom
+{
+    /**
+     * Columns which can contain nulls (see db/changelogs/init.xml)
+     * nulls are always sorted last for them, so the seek predicate is the same on every database
+     */
+    private static final Set<String> NULLABLE_PROPERTIES = Set.of("name", "description", "lastModifiedDate");
+
+    private static final String SELECT_VIEWS = "select new com.varna.code.challenge.models.view.ProductView(" +
+            "p.id, p.name, p.category, p.description, p.quantity, p.dateCreated, p.lastModifiedDate) " +
+            "from Product p";
+
+    private static final String DECREASE_QUANTITY =
+            "update products set quantity = quantity - :amount where id = :id and quantity >= :amount";
+
+    private static final String SELECT_BY_ID = "select * from products where id = :id";
+
+    /**
+     * The row is locked by the subquery, so the replaced values are the ones the update overwrites
+     */
+    private static final String UPDATE_RETURNING_OLD =
+            "update products p set %s from (select id, name, category, description, last_modified_date " +
+                    "from products where id = :id for update) old where p.id = old.id " +
+                    "returning p.*, old.name old_name, old.category old_category, " +
+                    "old.description old_description, old.last_modified_date old_last_modified_date";
+
+    private static final String DELETE_BY_ID = "delete from products where id = :id";
+
+    private static final String SELECT_BY_IDS = "select * from products where id in (:ids) order by id";
+
+    private static final String SELECT_BY_IDS_FOR_UPDATE =
+            "select * from products where id in (:ids) order by id for update";
+
+    private static final String SELECT_IDS_BY_NAMES = "select id, name from products where name in (:names)";
+
+    private static final String INCREASE_QUANTITY =
+            "update products set quantity = quantity + :quantity, last_modified_date = :lastModifiedDate where id = :id";
+
+    private static final String INSERT_PRODUCT =
+            "insert into products (name, category, description, quantity, created_date, last_modified_date) " +
+                    "values (:name, :category, :description, :quantity, :dateCreated, :lastModifiedDate)";
+
+    private static final String UPSERT_BY_NAME =
+            "insert into products (name, category, description, quantity, created_date, last_modified_date) " +
+                    "values (:name, :category, :description, :quantity, :dateCreated, :lastModifiedDate) " +
+                    "on conflict (name) do update set quantity = products.quantity + excluded.quantity, " +
+                    "last_modified_date = excluded.last_modified_date";
+
+    private static final String MERGE_BY_NAME =
+            "merge into products p using (select cast(:name as varchar) name, cast(:category as varchar) category, " +
+                    "cast(:description as varchar) description, cast(:quantity as int) quantity, " +
+                    "cast(:dateCreated as date) created_date, cast(:lastModifiedDate as date) last_modified_date) s " +
+                    "on p.name = s.name " +
+                    "when matched then update set quantity = p.quantity + s.quantity, " +
+                    "last_modified_date = s.last_modified_date " +
+                    "when not matched then insert (name, category, description, quantity, created_date, last_modified_date) " +
+                    "values (s.name, s.category, s.description, s.quantity, s.created_date, s.last_modified_date)";
+
+    private static final String SELECT_ID_BY_NAME = "select id from products where name = :name";
+
+    private static final String SELECT_BY_NAME = "select * from products where name = :name";
+
+    private static final String SELECT_ALL = "select * from products order by id";
+
+    private static final String SELECT_BY_CATEGORY = "select * from products where category = ? order by id";
+
+    /**
+     * search_vector is a generated column with GIN index (db/changelogs/products-search.xml), only on postgres
+     */
+    private static final String SEARCH =
+            "select p.id, p.name, p.category, p.description, p.quantity, p.created_date, p.last_modified_date " +
+                    "from products p, websearch_to_tsquery('english', :query) q where p.search_vector @@ q";
+
+    private static final String SEARCH_IN_CATEGORY = " and p.category = :category";
+
+    private static final String SEARCH_ORDER =
+            " order by ts_rank_cd(p.search_vector, q) desc, p.id limit :limit offset :offset";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private Boolean postgres;
+
+    public ProductRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Product> findAllAfter(List<Sort.Order> orders, @Nullable ProductCursor after, int limit)
+    {
+        StringBuilder jpql = new StringBuilder("select p from Product p");
+        if (after != null)
+            jpql.append(" where ").append(seekPredicate(orders, after.getValues()));
+
+        jpql.append(" order by ").append(orders.stream()
+                .map(order -> "p." + order.getProperty() + (order.isAscending() ? " asc" : " desc") +
+                        nullsOrder(order))
+                .collect(Collectors.joining(", ")));
+
+        TypedQuery<Product> query = entityManager.createQuery(jpql.toString(), Product.class);
+        if (after != null) {
+            for (int i = 0; i < orders.size(); i++) {
+                if (after.getValues().get(i) != null)
+                    query.setParameter("v" + i, after.getValues().get(i));
+            }
+        }
+
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductView> findAllViews(Pageable pageable) throws PropertyReferenceException
+    {
+        StringBuilder jpql = new StringBuilder(SELECT_VIEWS);
+        if (pageable.getSort().isSorted()) {
+            jpql.append(" order by ").append(pageable.getSort().stream()
+                    .map(order -> {
+                        // Validates the property before it becomes part of the query
+                        PropertyPath.from(order.getProperty(), Product.class);
+                        return "p." + order.getProperty() + (order.isAscending() ? " asc" : " desc");
+                    })
+                    .collect(Collectors.joining(", ")));
+        }
+
+        TypedQuery<ProductView> query = entityManager.createQuery(jpql.toString(), ProductView.class);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+            query.setHint(QueryHints.FETCH_SIZE, pageable.getPageSize());
+        }
+
+        return query.getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductView> findAllViews(@Nullable Specification<Product> filter, Pageable pageable)
+            throws PropertyReferenceException
+    {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductView> criteria = builder.createQuery(ProductView.class);
+        Root<Product> product = criteria.from(Product.class);
+        criteria.select(builder.construct(ProductView.class,
+                product.get("id"),
+                product.get("name"),
+                product.get("category"),
+                product.get("description"),
+                product.get("quantity"),
+                product.get("dateCreated"),
+                product.get("lastModifiedDate")));
+
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(product, criteria, builder);
+            if (predicate != null)
+                criteria.where(predicate);
+        }
+        // Validates the sort properties like the JPQL variant
+        criteria.orderBy(QueryUtils.toOrders(pageable.getSort(), product, builder));
+
+        TypedQuery<ProductView> query = entityManager.createQuery(criteria);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+            query.setHint(QueryHints.FETCH_SIZE, pageable.getPageSize());
+        }
+
+        return query.getResultList();
+    }
+
+    @Override
+    @Transactional
+    public Optional<Product> decreaseQuantity(int productId, int amount)
+    {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("id", productId)
+                .addValue("amount", amount);
+
+        // Pending changes of the persistence context must reach the database before plain jdbc statements
+        entityManager.flush();
+
+        if (isPostgres()) {
+            return jdbcTemplate.query(DECREASE_QUANTITY + " returning *", parameters, ProductRepositoryImpl::mapProduct)
+                    .stream().findFirst();
+        }
+
+        // Other databases (H2 in tests) have no RETURNING, read the row in the same transaction
+        if (jdbcTemplate.update(DECREASE_QUANTITY, parameters) == 0)
+            return Optional.empty();
+
+        return jdbcTemplate.query(SELECT_BY_ID, parameters, ProductRepositoryImpl::mapProduct).stream().findFirst();
+    }
+
+    @Override
+    @Transactional
+    public Optional<UpdatedProduct> updateNotNull(int productId, EditProductBinding changes)
+    {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("id", productId)
+                .addValue("lastModifiedDate", LocalDate.now());
+        // Only the given columns are written, the values are always bound
+        List<String> assignments = new ArrayList<>();
+        setIfNotNull(assignments, parameters, "name", changes.getName());
+        setIfNotNull(assignments, parameters, "category", changes.getCategory());
+        setIfNotNull(assignments, parameters, "description", changes.getDescription());
+        assignments.add("last_modified_date = :lastModifiedDate");
+
+        entityManager.flush();
+
+        if (isPostgres()) {
+            return jdbcTemplate.query(String.format(UPDATE_RETURNING_OLD, String.join(", ", assignments)), parameters,
+                    (row, rowNumber) -> {
+                        Product after = mapProduct(row, rowNumber);
+                        ProductView before = new ProductView(after);
+                        before.setName(row.getString("old_name"));
+                        before.setCategory(row.getString("old_category"));
+                        before.setDescription(row.getString("old_description"));
+                        before.setDateModified(row.getObject("old_last_modified_date", LocalDate.class));
+                        return new UpdatedProduct(before, after);
+                    }).stream().findFirst();
+        }
+
+        // Other databases (H2 in tests) have no RETURNING, the replaced values are read from the locked row first
+        Optional<Product> before = jdbcTemplate.query(SELECT_BY_ID + " for update", parameters,
+                ProductRepositoryImpl::mapProduct).stream().findFirst();
+        if (before.isEmpty())
+            return Optional.empty();
+
+        jdbcTemplate.update("update products set " + String.join(", ", assignments) + " where id = :id", parameters);
+
+        return jdbcTemplate.query(SELECT_BY_ID, parameters, ProductRepositoryImpl::mapProduct).stream()
+                .findFirst()
+                .map(after -> new UpdatedProduct(new ProductView(before.get()), after));
+    }
+
+    @Override
+    public Optional<ProductView> findViewById(int productId)
+    {
+        return jdbcTemplate.query(SELECT_BY_ID, new MapSqlParameterSource("id", productId),
+                (row, rowNumber) -> new ProductView(mapProduct(row, rowNumber)))
+                .stream().findFirst();
+    }
+
+    @Override
+    @Transactional
+    public Optional<Product> deleteByIdReturning(int productId)
+    {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("id", productId);
+        entityManager.flush();
+
+        if (isPostgres()) {
+            return jdbcTemplate.query(DELETE_BY_ID + " returning *", parameters, ProductRepositoryImpl::mapProduct)
+                    .stream().findFirst();
+        }
+
+        Optional<Product> product = jdbcTemplate.query(SELECT_BY_ID + " for update", parameters,
+                ProductRepositoryImpl::mapProduct).stream().findFirst();
+        if (product.isPresent())
+            jdbcTemplate.update(DELETE_BY_ID, parameters);
+
+        return product;
+    }
+
+    @Override
+    @Transactional
+    public List<Product> findAllByIdForUpdate(Collection<Integer> productIds)
+    {
+        if (productIds.isEmpty())
+            return new ArrayList<>();
+
+        entityManager.flush();
+        return jdbcTemplate.query(SELECT_BY_IDS_FOR_UPDATE,
+                new MapSqlParameterSource("ids", productIds),
+                ProductRepositoryImpl::mapProduct);
+    }
+
+    @Override
+    @Transactional
+    public int[] decreaseQuantities(SortedMap<Integer, Integer> amountByProductId)
+    {
+        MapSqlParameterSource[] batch = amountByProductId.entrySet().stream()
+                .map(line -> new MapSqlParameterSource()
+                        .addValue("id", line.getKey())
+                        .addValue("amount", line.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+
+        entityManager.flush();
+        return jdbcTemplate.batchUpdate(DECREASE_QUANTITY, batch);
+    }
+
+    @Override
+    @Transactional
+    public int[] applyOrders(List<OrderLineBinding> orders)
+    {
+        MapSqlParameterSource[] batch = orders.stream()
+                .map(order -> new MapSqlParameterSource()
+                        .addValue("id", order.getProductId())
+                        .addValue("amount", order.getAmount()))
+                .toArray(MapSqlParameterSource[]::new);
+
+        entityManager.flush();
+        return jdbcTemplate.batchUpdate(DECREASE_QUANTITY, batch);
+    }
+
+    @Override
+    @Transactional
+    public List<Product> increaseQuantities(SortedMap<Integer, Integer> amountByProductId)
+    {
+        if (amountByProductId.isEmpty())
+            return new ArrayList<>();
+
+        LocalDate today = LocalDate.now();
+        MapSqlParameterSource[] batch = amountByProductId.entrySet().stream()
+                .map(line -> new MapSqlParameterSource()
+                        .addValue("id", line.getKey())
+                        .addValue("quantity", line.getValue())
+                        .addValue("lastModifiedDate", today))
+                .toArray(MapSqlParameterSource[]::new);
+
+        entityManager.flush();
+        jdbcTemplate.batchUpdate(INCREASE_QUANTITY, batch);
+        return jdbcTemplate.query(SELECT_BY_IDS,
+                new MapSqlParameterSource("ids", amountByProductId.keySet()),
+                ProductRepositoryImpl::mapProduct);
+    }
+
+    @Override
+    @Transactional
+    public int mergeByName(Collection<Product> products)
+    {
+        if (products.isEmpty())
+            return 0;
+
+        entityManager.flush();
+
+        Map<String, Integer> existingIds = new HashMap<>();
+        jdbcTemplate.query(SELECT_IDS_BY_NAMES,
+                new MapSqlParameterSource("names",
+                        products.stream().map(Product::getName).collect(Collectors.toList())),
+                (RowCallbackHandler) row -> existingIds.put(row.getString("name"), row.getInt("id")));
+
+        LocalDate today = LocalDate.now();
+        List<MapSqlParameterSource> updates = new ArrayList<>();
+        List<MapSqlParameterSource> inserts = new ArrayList<>();
+        for (Product product : products) {
+            Integer existingId = existingIds.get(product.getName());
+            if (existingId != null) {
+                updates.add(new MapSqlParameterSource()
+                        .addValue("id", existingId)
+                        .addValue("quantity", product.getQuantity())
+                        .addValue("lastModifiedDate", today));
+            } else {
+                inserts.add(insertParameters(product));
+            }
+        }
+
+        if (!updates.isEmpty())
+            jdbcTemplate.batchUpdate(INCREASE_QUANTITY, updates.toArray(new MapSqlParameterSource[0]));
+        // A concurrent add can insert one of the names after the select, the upsert adds to it instead of failing
+        if (!inserts.isEmpty())
+            jdbcTemplate.batchUpdate(isPostgres() ? UPSERT_BY_NAME : MERGE_BY_NAME,
+                    inserts.toArray(new MapSqlParameterSource[0]));
+
+        return inserts.size();
+    }
+
+    @Override
+    @Transactional
+    public boolean upsertByName(Product product)
+    {
+        MapSqlParameterSource parameters = insertParameters(product);
+        entityManager.flush();
+
+        if (isPostgres()) {
+            // xmax is 0 only for rows inserted by this statement, updated rows carry the id of the updating transaction
+            Boolean inserted = jdbcTemplate.queryForObject(UPSERT_BY_NAME + " returning *, (xmax = 0) as inserted",
+                    parameters,
+                    (row, rowNumber) -> copyInto(product, row).getBoolean("inserted"));
+            return Boolean.TRUE.equals(inserted);
+        }
+
+        // Other databases (H2 in tests) have no RETURNING, check and read the row in the same transaction
+        boolean exists = !jdbcTemplate.queryForList(SELECT_ID_BY_NAME, parameters, Integer.class).isEmpty();
+        jdbcTemplate.update(MERGE_BY_NAME, parameters);
+        jdbcTemplate.queryForObject(SELECT_BY_NAME, parameters, (row, rowNumber) -> copyInto(product, row));
+        return !exists;
+    }
+
+    @Override
+    @Transactional
+    public int insertAll(Collection<Product> products)
+    {
+        if (products.isEmpty())
+            return 0;
+
+        entityManager.flush();
+        // With reWriteBatchedInserts the driver reports no per row counts, every row is inserted or the batch fails
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, products.stream()
+                .map(ProductRepositoryImpl::insertParameters)
+                .toArray(MapSqlParameterSource[]::new));
+
+        return products.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachProduct(@Nullable String category, int fetchSize, Consumer<Product> action)
+    {
+        // The postgres driver only uses a cursor for the fetch size inside a transaction (autocommit off)
+        jdbcTemplate.getJdbcOperations().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(category == null ? SELECT_ALL : SELECT_BY_CATEGORY,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            if (category != null)
+                statement.setString(1, category);
+
+            return statement;
+        }, (RowCallbackHandler) row -> action.accept(mapProduct(row, row.getRow())));
+    }
+
+    @Override
+    public boolean hasFullTextSearch()
+    {
+        return isPostgres();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductView> search(String query, @Nullable String category, Pageable pageable)
+    {
+        if (!isPostgres())
+            throw new UnsupportedOperationException("Full text search is not supported by the database");
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("query", query)
+                .addValue("category", category)
+                .addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
+
+        return jdbcTemplate.query(SEARCH + (category == null ? "" : SEARCH_IN_CATEGORY) + SEARCH_ORDER,
+                parameters,
+                (row, rowNumber) -> new ProductView(mapProduct(row, rowNumber)));
+    }
+
+    /**
+     * Nulls are last when ascending and first when descending, the order of a default btree index
+     * (and of postgres without the clause), so the index serves both directions
+     */
+    private String nullsOrder(Sort.Order order)
+    {
+        if (!isNullable(order))
+            return "";
+
+        return order.isAscending() ? " nulls last" : " nulls first";
+    }
+
+    /**
+     * Builds the WHERE clause selecting the rows after the given sort key values
+     * When all keys have the same direction and can not be null the row value comparison
+     * (a, id) > (:a, :id) is used, which the database can turn into a single index range scan.
+     * Otherwise the comparison is expanded to (a > :a) or (a = :a and id > :id) ...
+     * with an extra bound on the first key, so the index on it can still be used to start the scan
+     */
+    private String seekPredicate(List<Sort.Order> orders, List<Object> values)
+    {
+        boolean sameDirection = orders.stream().map(Sort.Order::getDirection).distinct().count() == 1;
+        boolean nullsPossible = orders.stream().anyMatch(this::isNullable);
+
+        if (sameDirection && !nullsPossible) {
+            String columns = orders.stream()
+                    .map(order -> "p." + order.getProperty())
+                    .collect(Collectors.joining(", "));
+            String parameters = IntStream.range(0, orders.size())
+                    .mapToObj(i -> ":v" + i)
+                    .collect(Collectors.joining(", "));
+
+            return "(" + columns + ") " + (orders.get(0).isAscending() ? ">" : "<") + " (" + parameters + ")";
+        }
+
+        List<String> alternatives = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            String greater = greaterThan(orders.get(i), values.get(i), i);
+            if (greater == null)
+                continue;
+
+            StringBuilder alternative = new StringBuilder("(");
+            for (int j = 0; j < i; j++)
+                alternative.append(equalTo(orders.get(j), values.get(j), j)).append(" and ");
+
+            alternatives.add(alternative.append(greater).append(")").toString());
+        }
+
+        String predicate = "(" + String.join(" or ", alternatives) + ")";
+
+        Sort.Order first = orders.get(0);
+        if (!isNullable(first) && values.get(0) != null)
+            predicate = "p." + first.getProperty() + (first.isAscending() ? " >= " : " <= ") + ":v0 and " + predicate;
+
+        return predicate;
+    }
+
+    /**
+     * @return condition selecting the rows which come after the value for this key,
+     * or null if no row can come after it (the value is null and nulls are last)
+     */
+    @Nullable
+    private String greaterThan(Sort.Order order, @Nullable Object value, int index)
+    {
+        String column = "p." + order.getProperty();
+        // Nulls are last when ascending and first when descending (see nullsOrder)
+        if (value == null)
+            return order.isAscending() ? null : column + " is not null";
+
+        String comparison = column + (order.isAscending() ? " > " : " < ") + ":v" + index;
+
+        return isNullable(order) && order.isAscending() ? "(" + comparison + " or " + column + " is null)" : comparison;
+    }
+
+    private String equalTo(Sort.Order order, @Nullable Object value, int index)
+    {
+        return value == null
+                ? "p." + order.getProperty() + " is null"
+                : "p." + order.getProperty() + " = :v" + index;
+    }
+
+    /**
+     * Vendor specific statements are only used where the standard ones need another round trip
+     */
+    private boolean isPostgres()
+    {
+        if (postgres == null) {
+            Dialect dialect = entityManager.getEntityManagerFactory()
+                    .unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices()
+                    .getDialect();
+            postgres = dialect instanceof PostgreSQL81Dialect;
+        }
+
+        return postgres;
+    }
+
+    /**
+     * Maps a row of the products table, the returned product is not managed by the persistence context
+     */
+    private static Product mapProduct(ResultSet row, int rowNumber) throws SQLException
+    {
+        Product product = new Product();
+        copyInto(product, row);
+        return product;
+    }
+
+    /**
+     * Sets all fields of the product from the row
+     *
+     * @return the row, for reading extra columns
+     */
+    private static ResultSet copyInto(Product product, ResultSet row) throws SQLException
+    {
+        product.setId(row.getInt("id"));
+        product.setName(row.getString("name"));
+        product.setCategory(row.getString("category"));
+        product.setDescription(row.getString("description"));
+        product.setQuantity(row.getInt("quantity"));
+        product.setDateCreated(row.getObject("created_date", LocalDate.class));
+        product.setLastModifiedDate(row.getObject("last_modified_date", LocalDate.class));
+        return row;
+    }
+
+    private static void setIfNotNull(List<String> assignments, MapSqlParameterSource parameters,
+                                     String column, @Nullable String value)
+    {
+        if (value == null)
+            return;
+
+        assignments.add(column + " = :" + column);
+        parameters.addValue(column, value);
+    }
+
+    private static MapSqlParameterSource insertParameters(Product product)
+    {
+        return new MapSqlParameterSource()
+                .addValue("name", product.getName())
+                .addValue("category", product.getCategory())
+                .addValue("description", product.getDescription())
+                .addValue("quantity", product.getQuantity())
+                .addValue("dateCreated", product.getDateCreated())
+                .addValue("lastModifiedDate", product.getLastModifiedDate());
+    }
+
+    private boolean isNullable(Sort.Order order)
+    {
+        return NULLABLE_PROPERTIES.contains(order.getProperty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.varna.code.challenge.repositories;
+
+import com.varna.code.challenge.models.entities.Product;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Predicates over the products, combined with {@link Specification#and(Specification)}
+ * A missing bound or value matches every product, so the specifications can be combined
+ * without checking which criteria were given
+ */
+public final class ProductSpecifications
+{
+    private static final char LIKE_ESCAPE = '\\';
+
+    private ProductSpecifications()
+    {
+    }
+
+    @Nullable
+    public static Specification<Product> inCategories(@Nullable Collection<String> categories)
+    {
+        if (categories == null || categories.isEmpty())
+            return null;
+
+        return (product, query, builder) -> product.get("category").in(categories);
+    }
+
+    @Nullable
+    public static Specification<Product> quantityBetween(@Nullable Integer min, @Nullable Integer max)
+    {
+        return between("quantity", min, max);
+    }
+
+    @Nullable
+    public static Specification<Product> createdBetween(@Nullable LocalDate from, @Nullable LocalDate to)
+    {
+        return between("dateCreated", from, to);
+    }
+
+    @Nullable
+    public static Specification<Product> modifiedBetween(@Nullable LocalDate from, @Nullable LocalDate to)
+    {
+        return between("lastModifiedDate", from, to);
+    }
+
+    /**
+     * @param part case insensitive part of the name, % and _ are matched literally
+     */
+    @Nullable
+    public static Specification<Product> nameContains(@Nullable String part)
+    {
+        if (part == null || part.isEmpty())
+            return null;
+
+        String pattern = "%" + part.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+
+        return (product, query, builder) ->
+                builder.like(builder.lower(product.get("name")), pattern, LIKE_ESCAPE);
+    }
+
+    /**
+     * Inclusive range, either bound can be missing
+     */
+    @Nullable
+    private static <T extends Comparable<? super T>> Specification<Product> between(String property,
+                                                                                   @Nullable T from,
+                                                                                   @Nullable T to)
+    {
+        if (from == null && to == null)
+            return null;
+
+        return (product, query, builder) -> {
+            if (from == null)
+                return builder.lessThanOrEqualTo(product.get(property), to);
+            else if (to == null)
+                return builder.greaterThanOrEqualTo(product.get(property), from);
+            else
+                return builder.between(product.get(property), from, to);
+        };
+    }
+}
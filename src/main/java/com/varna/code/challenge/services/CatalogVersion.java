@@ -0,0 +1,49 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the products in the catalog, increased after every committed write
+ * Anything computed from the products (cached pages, ETags) is still current while the version is the same
+ */
+@Component
+public class CatalogVersion
+{
+    /**
+     * The version starts from zero on every start, the start time makes the tags of different runs differ
+     */
+    private final String instance = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long get()
+    {
+        return version.get();
+    }
+
+    /**
+     * @param version a version returned by {@link #get()}
+     * @return value identifying the version, usable as strong ETag
+     */
+    public String tag(long version)
+    {
+        return instance + "-" + version;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductEvent(ProductEvent event)
+    {
+        version.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,480 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Decides the orders of hot products in memory (products.inventory.enabled)
+ * A product ordered at least products.inventory.hot-orders times in a products.inventory.window becomes hot.
+ * The ledger then takes its stock from the row in chunks of products.inventory.chunk with the conditional
+ * decrease of the single order, and sells the taken stock with compare and set, without touching the table.
+ * The row only ever gives what it has, so the stock can not be oversold, even with other instances or writers.
+ * When the product cools down (less than half of hot-orders in a window) or the application stops,
+ * the unsold stock of all such products is given back to their rows in one batch.
+ * Stock which could not be given back is kept and given back with the next batch.
+ * An order of many products is decided by the table, after locking its rows it gives back the stock held
+ * for its products.
+ * While a product is hot its row and cached quantity do not count the stock held by the ledger,
+ * and if the process dies that stock is missing from the row until it is corrected.
+ * The stock held (products.inventory.held) and not given back yet (products.inventory.unreleased) is published
+ * as metrics, and the stock still not given back when the application stops is logged per product,
+ * so after a crash or a lost release the rows are corrected with those amounts or with a stock count
+ */
+@Component
+public class InventoryLedger implements SmartLifecycle, MeterBinder
+{
+    public static final String ORDERS_COUNTER = "products.inventory.orders";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InventoryLedger.class);
+
+    /**
+     * Refills and releases of the same product are serialized, the orders are not
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Value of the available stock once the product is not hot anymore
+     */
+    private static final int CLOSED = -1;
+
+    public enum Outcome
+    {
+        ORDERED,
+        /**
+         * The row did not have the missing stock, or the product does not exist anymore
+         */
+        NOT_ORDERED,
+        /**
+         * The product is not hot, the order has to be decided by the table
+         */
+        NOT_HOT,
+    }
+
+    private final ProductRepository productRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+
+    private final int hotOrders;
+
+    private final Duration window;
+
+    private final int chunk;
+
+    private final int maxHotProducts;
+
+    private final Map<Integer, HotProduct> hotProducts = new ConcurrentHashMap<>();
+
+    /**
+     * Stock of products which are not hot anymore, the table did not take it back yet
+     */
+    private final Map<Integer, Integer> unreleased = new ConcurrentHashMap<>();
+
+    private volatile Map<Integer, LongAdder> coldOrders = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final LongAdder memoryOrders = new LongAdder();
+
+    private final LongAdder tableOrders = new LongAdder();
+
+    private final LongAdder refills = new LongAdder();
+
+    private volatile boolean running;
+
+    private volatile ScheduledExecutorService evaluator;
+
+    @Autowired
+    public InventoryLedger(ProductRepository productRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${products.inventory.enabled:false}") boolean enabled,
+                           @Value("${products.inventory.hot-orders:100}") int hotOrders,
+                           @Value("${products.inventory.window:1s}") Duration window,
+                           @Value("${products.inventory.chunk:100}") int chunk,
+                           @Value("${products.inventory.max-hot-products:100}") int maxHotProducts)
+    {
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.hotOrders = hotOrders;
+        this.window = window;
+        this.chunk = chunk;
+        this.maxHotProducts = maxHotProducts;
+
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Orders the amount of a hot product from the stock held in memory, taking more from the row if needed
+     *
+     * @param productId the id of the product
+     * @param amount    the amount, positive
+     * @return if the product was ordered, or NOT_HOT if the caller has to order it from the table
+     * and count it with {@link #tableOrdered(int)}
+     */
+    public Outcome order(int productId, int amount)
+    {
+        if (!running)
+            return Outcome.NOT_HOT;
+
+        HotProduct product = hotProducts.get(productId);
+        if (product == null) {
+            tableOrders.increment();
+            return Outcome.NOT_HOT;
+        }
+
+        product.orders.increment();
+        if (product.take(amount)) {
+            memoryOrders.increment();
+            return Outcome.ORDERED;
+        }
+
+        Outcome outcome = refillAndTake(productId, product, amount);
+        if (outcome == Outcome.ORDERED)
+            memoryOrders.increment();
+        else if (outcome == Outcome.NOT_HOT)
+            tableOrders.increment();
+
+        return outcome;
+    }
+
+    /**
+     * Counts an order the table made, only the products which were really ordered can become hot
+     *
+     * @param productId the id of the ordered product
+     */
+    public void tableOrdered(int productId)
+    {
+        if (running)
+            coldOrders.computeIfAbsent(productId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param productId the id of the product
+     * @return the stock of the product held in memory, 0 if it is not hot
+     */
+    public int getAvailable(int productId)
+    {
+        HotProduct product = hotProducts.get(productId);
+        return product == null ? 0 : Math.max(product.available.get(), 0);
+    }
+
+    /**
+     * Ends the window - the products ordered enough become hot, the hot products ordered too little
+     * give their stock back to the table
+     */
+    public void evaluate()
+    {
+        Map<Integer, LongAdder> ordered = coldOrders;
+        coldOrders = new ConcurrentHashMap<>();
+
+        List<Integer> cooled = hotProducts.entrySet().stream()
+                .filter(entry -> entry.getValue().orders.sumThenReset() < hotOrders / 2)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        release(cooled);
+
+        ordered.entrySet().stream()
+                .filter(entry -> entry.getValue().sum() >= hotOrders)
+                .sorted(Comparator.comparingLong((Map.Entry<Integer, LongAdder> entry) -> entry.getValue().sum())
+                        .reversed())
+                .limit(Math.max(maxHotProducts - hotProducts.size(), 0))
+                .forEach(entry -> hotProducts.putIfAbsent(entry.getKey(), new HotProduct()));
+    }
+
+    /**
+     * Gives the stock held for the products back to their rows in one batch, they are not hot anymore
+     * The stock which could not be given back before goes with the same batch.
+     * Inside a transaction the stock is given back when it commits, and kept for the next batch if it rolls back
+     *
+     * @param productIds the ids of the products
+     */
+    public void release(List<Integer> productIds)
+    {
+        SortedMap<Integer, Integer> released = new TreeMap<>();
+        takeUnreleased(unreleased.keySet(), released);
+        close(productIds, released);
+        giveBack(released);
+    }
+
+    /**
+     * Gives the stock held for the products of an order back to their rows, they are not hot anymore
+     * The caller already locked the rows, only they are written, so the order takes no locks out of its id order.
+     * The stock of other products is left to the next release
+     *
+     * @param productIds the ids of the products, their rows are locked by the current transaction
+     * @return the amounts given back to the rows by product id
+     */
+    public SortedMap<Integer, Integer> releaseLocked(Collection<Integer> productIds)
+    {
+        SortedMap<Integer, Integer> released = new TreeMap<>();
+        takeUnreleased(productIds, released);
+        close(productIds, released);
+        return giveBack(released) ? released : new TreeMap<>();
+    }
+
+    private void takeUnreleased(Collection<Integer> productIds, SortedMap<Integer, Integer> released)
+    {
+        // Removing an id is atomic with merging into it, the stock lands either in this batch or in the next one
+        for (int productId : productIds) {
+            Integer amount = unreleased.remove(productId);
+            if (amount != null)
+                released.merge(productId, amount, Integer::sum);
+        }
+    }
+
+    private void close(Collection<Integer> productIds, SortedMap<Integer, Integer> released)
+    {
+        for (int productId : productIds) {
+            ReentrantLock lock = lockOf(productId);
+            lock.lock();
+            try {
+                HotProduct product = hotProducts.remove(productId);
+                int available = product == null ? 0 : product.available.getAndSet(CLOSED);
+                if (available > 0)
+                    released.merge(productId, available, Integer::sum);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return false if the stock could not be given back and is kept for the next release
+     */
+    private boolean giveBack(SortedMap<Integer, Integer> released)
+    {
+        if (released.isEmpty())
+            return true;
+
+        List<Product> products;
+        try {
+            products = productRepository.increaseQuantities(released);
+        } catch (RuntimeException e) {
+            // The batch is one transaction, none of the stock was given back
+            LOGGER.error("Could not give back the held stock {} (product id=amount) to the table, " +
+                    "retrying with the next release", released, e);
+            keepUnreleased(released);
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    if (status != STATUS_COMMITTED)
+                        keepUnreleased(released);
+                }
+            });
+        }
+
+        for (Product product : products) {
+            ProductView before = new ProductView(product);
+            before.setQuantity(product.getQuantity() - released.get(product.getId()));
+            eventPublisher.publishEvent(ProductEvent.updated(before, product));
+        }
+
+        return true;
+    }
+
+    private void keepUnreleased(SortedMap<Integer, Integer> released)
+    {
+        released.forEach((productId, amount) -> unreleased.merge(productId, amount, Integer::sum));
+    }
+
+    /**
+     * A deleted product can not be ordered anymore, the stock held for it is dropped
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductEvent(ProductEvent event)
+    {
+        if (event.getType() != ProductEvent.Type.DELETED)
+            return;
+
+        int productId = event.getBefore().getId();
+        unreleased.remove(productId);
+        coldOrders.remove(productId);
+        ReentrantLock lock = lockOf(productId);
+        lock.lock();
+        try {
+            HotProduct product = hotProducts.remove(productId);
+            if (product != null)
+                product.available.set(CLOSED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Outcome refillAndTake(int productId, HotProduct product, int amount)
+    {
+        ReentrantLock lock = lockOf(productId);
+        lock.lock();
+        try {
+            // Closing takes the lock, the product stays open until the end of the refill
+            while (!product.take(amount)) {
+                int available = product.available.get();
+                if (available == CLOSED)
+                    return Outcome.NOT_HOT;
+
+                int missing = amount - available;
+                int taken = Math.max(missing, chunk);
+                Optional<Product> row = productRepository.decreaseQuantity(productId, taken);
+                if (row.isEmpty() && taken > missing) {
+                    // Not a whole chunk left, it can still be enough for this order
+                    taken = missing;
+                    row = productRepository.decreaseQuantity(productId, taken);
+                }
+
+                if (row.isEmpty())
+                    return Outcome.NOT_ORDERED;
+
+                refills.increment();
+                ProductView before = new ProductView(row.get());
+                before.setQuantity(row.get().getQuantity() + taken);
+                eventPublisher.publishEvent(ProductEvent.updated(before, row.get()));
+
+                product.available.addAndGet(taken);
+            }
+
+            return Outcome.ORDERED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockOf(int productId)
+    {
+        return locks[Math.floorMod(Integer.hashCode(productId), LOCK_STRIPES)];
+    }
+
+    @Override
+    public void start()
+    {
+        if (!enabled)
+            return;
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::evaluateQuietly,
+                window.toMillis(), window.toMillis(), TimeUnit.MILLISECONDS);
+        evaluator = executor;
+        running = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        if (!running)
+            return;
+
+        // The orders go to the table from now on
+        running = false;
+        ScheduledExecutorService executor = evaluator;
+        evaluator = null;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        release(new ArrayList<>(hotProducts.keySet()));
+        if (!unreleased.isEmpty())
+            LOGGER.error("Lost the held stock {} (product id=amount), add it to the rows", unreleased);
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    private void evaluateQuietly()
+    {
+        try {
+            evaluate();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not evaluate the hot products", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("products.inventory.hot-products", hotProducts, Map::size).register(registry);
+        Gauge.builder("products.inventory.held", hotProducts,
+                products -> products.values().stream().mapToInt(p -> Math.max(p.available.get(), 0)).sum())
+                .register(registry);
+        Gauge.builder("products.inventory.unreleased", unreleased,
+                amounts -> amounts.values().stream().mapToInt(Integer::intValue).sum())
+                .register(registry);
+        registry.more().counter(ORDERS_COUNTER, Tags.of("path", "memory"), memoryOrders, LongAdder::doubleValue);
+        registry.more().counter(ORDERS_COUNTER, Tags.of("path", "table"), tableOrders, LongAdder::doubleValue);
+        registry.more().counter("products.inventory.refills", Tags.empty(), refills, LongAdder::doubleValue);
+    }
+
+    /**
+     * The stock of a hot product taken from its row and not sold yet
+     */
+    private static class HotProduct
+    {
+        private final AtomicInteger available = new AtomicInteger();
+
+        private final LongAdder orders = new LongAdder();
+
+        /**
+         * @return true if there was enough stock and the amount was taken
+         */
+        private boolean take(int amount)
+        {
+            while (true) {
+                int current = available.get();
+                if (current < amount)
+                    return false;
+                if (available.compareAndSet(current, current - amount))
+                    return true;
+            }
+        }
+    }
+}
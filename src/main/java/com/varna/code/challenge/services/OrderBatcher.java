@@ -0,0 +1,314 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit of single product orders (products.order-batching.enabled)
+ * The orders arriving together are collected for products.order-batching.window after the first one,
+ * or until there are products.order-batching.max-batch of them, and applied in one transaction
+ * with one jdbc batch of the conditional decreases - one commit for the whole batch instead of one per order.
+ * Every caller waits for the commit of its batch and gets its own result
+ */
+@Component
+public class OrderBatcher implements SmartLifecycle, MeterBinder
+{
+    public static final String BATCH_SIZE_SUMMARY = "products.order-batching.batch-size";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderBatcher.class);
+
+    private static final Comparator<PendingOrder> BY_PRODUCT_ID = Comparator.comparingInt(order -> order.productId);
+
+    private final ProductRepository productRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+
+    private final boolean enabled;
+
+    private final long windowNanos;
+
+    private final int maxBatch;
+
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+
+    private volatile Thread applier;
+
+    private volatile TransactionTemplate transactionTemplate;
+
+    private volatile DistributionSummary batchSizes;
+
+    private volatile Timer commitTimer;
+
+    /**
+     * The transaction manager is needed only with the batching on, there is none in sliced tests
+     */
+    @Autowired
+    public OrderBatcher(ProductRepository productRepository,
+                        ApplicationEventPublisher eventPublisher,
+                        ObjectProvider<PlatformTransactionManager> transactionManager,
+                        @Value("${products.order-batching.enabled:false}") boolean enabled,
+                        @Value("${products.order-batching.window:2ms}") Duration window,
+                        @Value("${products.order-batching.max-batch:256}") int maxBatch)
+    {
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionManager = transactionManager;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Orders the amount of the product with the next batch and waits until the batch is committed
+     *
+     * @param productId the id of the product
+     * @param amount    the amount, positive
+     * @return the product right after this order, or empty if nothing was ordered
+     * (there is no such product or its quantity is less than amount)
+     */
+    public Optional<ProductView> order(int productId, int amount)
+    {
+        PendingOrder order = new PendingOrder(productId, amount);
+        queue.add(order);
+
+        // Stopped after the caller checked, the applier may be gone already
+        if (!running)
+            applyQueued();
+
+        try {
+            return order.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw e;
+        }
+    }
+
+    private void run()
+    {
+        List<PendingOrder> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                // The window starts with the first order, none waits longer than the window for its batch
+                batch.add(first);
+                long deadline = first.queuedAt + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                // A failing event listener must not leave the callers waiting or end the applier
+                LOGGER.error("Could not complete a batch of {} orders", batch.size(), e);
+                batch.forEach(order -> order.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+
+        applyQueued();
+    }
+
+    private void applyQueued()
+    {
+        List<PendingOrder> batch = new ArrayList<>();
+        while (queue.drainTo(batch, maxBatch) > 0) {
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Applies the orders in one transaction and completes them, the events are published after the commit
+     */
+    private void apply(List<PendingOrder> batch)
+    {
+        // Sorted by product id the rows are locked in the same order by every batch,
+        // the sort is stable so the orders of a product stay in the order they came
+        List<PendingOrder> orders = batch.stream().sorted(BY_PRODUCT_ID).collect(Collectors.toList());
+
+        long start = System.nanoTime();
+        AppliedBatch applied;
+        try {
+            List<OrderLineBinding> lines = orders.stream()
+                    .map(order -> new OrderLineBinding(order.productId, order.amount))
+                    .collect(Collectors.toList());
+            List<Integer> productIds = orders.stream()
+                    .map(order -> order.productId)
+                    .distinct()
+                    .collect(Collectors.toList());
+
+            applied = transactionTemplate.execute(status -> {
+                int[] updatedRows = productRepository.applyOrders(lines);
+                Map<Integer, Product> products = new HashMap<>();
+                productRepository.findAllById(productIds).forEach(product -> products.put(product.getId(), product));
+                return new AppliedBatch(updatedRows, products);
+            });
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not apply a batch of {} orders: {}", orders.size(), e.getMessage());
+            orders.forEach(order -> order.result.completeExceptionally(e));
+            return;
+        }
+
+        if (commitTimer != null) {
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(orders.size());
+        }
+
+        // Walking back from the committed quantity, each order gets the quantity right after it
+        Map<Integer, Integer> orderedAfter = new HashMap<>();
+        for (int i = orders.size() - 1; i >= 0; i--) {
+            PendingOrder order = orders.get(i);
+            Product product = applied.products.get(order.productId);
+            if (applied.updatedRows[i] == 0 || product == null) {
+                order.result.complete(Optional.empty());
+                continue;
+            }
+
+            int later = orderedAfter.getOrDefault(order.productId, 0);
+            ProductView after = new ProductView(product);
+            after.setQuantity(product.getQuantity() + later);
+            order.result.complete(Optional.of(after));
+            orderedAfter.put(order.productId, later + order.amount);
+        }
+
+        orderedAfter.forEach((productId, ordered) -> {
+            Product product = applied.products.get(productId);
+            ProductView before = new ProductView(product);
+            before.setQuantity(product.getQuantity() + ordered);
+            eventPublisher.publishEvent(ProductEvent.updated(before, product));
+        });
+    }
+
+    @Override
+    public void start()
+    {
+        if (!enabled)
+            return;
+
+        transactionTemplate = new TransactionTemplate(transactionManager.getIfAvailable(() -> {
+            throw new IllegalStateException("The order batching needs a transaction manager");
+        }));
+        running = true;
+        Thread thread = new Thread(this::run, "order-batcher");
+        thread.setDaemon(true);
+        thread.start();
+        applier = thread;
+    }
+
+    @Override
+    public void stop()
+    {
+        if (!running)
+            return;
+
+        // The applier applies the queued orders and ends, the later ones are applied by their callers
+        running = false;
+        try {
+            applier.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        applier = null;
+        applyQueued();
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        batchSizes = DistributionSummary.builder(BATCH_SIZE_SUMMARY)
+                .description("Orders per commit, the count is the number of commits")
+                .register(registry);
+        commitTimer = Timer.builder("products.order-batching.commit").register(registry);
+    }
+
+    /**
+     * An order waiting for its batch
+     */
+    private static class PendingOrder
+    {
+        private final int productId;
+
+        private final int amount;
+
+        private final long queuedAt = System.nanoTime();
+
+        private final CompletableFuture<Optional<ProductView>> result = new CompletableFuture<>();
+
+        private PendingOrder(int productId, int amount)
+        {
+            this.productId = productId;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * The committed result of a batch
+     */
+    private static class AppliedBatch
+    {
+        private final int[] updatedRows;
+
+        private final Map<Integer, Product> products;
+
+        private AppliedBatch(int[] updatedRows, Map<Integer, Product> products)
+        {
+            this.updatedRows = updatedRows;
+            this.products = products;
+        }
+    }
+}
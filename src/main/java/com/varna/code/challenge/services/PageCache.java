@@ -0,0 +1,201 @@
+package com.varna.code.challenge.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of the offset pages of products, keyed by page number, page size and sort
+ * Every page remembers the catalog version it was read in, pages read in an older version
+ * are read again when requested, so a write does not need to find the pages it changes.
+ * The most requested pages can be refreshed in the background after writes, so they stay warm.
+ * The cache is bounded by the products in its pages (products.page-cache.max-products), a page with more
+ * products than that is read but not kept
+ */
+@Component
+public class PageCache implements MeterBinder
+{
+    private final ProductRepository productRepository;
+
+    private final Cache<String, CachedPage> pages;
+
+    /**
+     * The reads in flight by page key, concurrent requests of the same stale page wait for one read
+     * without locking any part of the cache while the table is read
+     */
+    private final Map<String, CompletableFuture<CachedPage>> reads = new ConcurrentHashMap<>();
+
+    private final CatalogVersion catalogVersion;
+
+    private final int warmPages;
+
+    @Autowired
+    public PageCache(ProductRepository productRepository,
+                     CatalogVersion catalogVersion,
+                     @Value("${products.page-cache.max-products:100000}") long maxProducts,
+                     @Value("${products.page-cache.warm-pages:0}") int warmPages)
+    {
+        this.productRepository = productRepository;
+        this.catalogVersion = catalogVersion;
+        this.pages = Caffeine.newBuilder()
+                .maximumWeight(maxProducts)
+                // The page object counts as one product, so empty pages weigh something too
+                .weigher((String key, CachedPage page) -> page.products.size() + 1)
+                // Evicts on the writing thread, so a page over the bound is gone when the read returns
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        this.warmPages = warmPages;
+    }
+
+    /**
+     * @param page the page number, page size and sort
+     * @return the products of the page, the list and the products are shared and must not be changed
+     * @throws PropertyReferenceException if there is no such property to sort by
+     */
+    public List<ProductView> getPage(PageRequest page) throws PropertyReferenceException
+    {
+        String key = key(page);
+        // Read before the page, so a page read concurrently with a write is already stale after the commit
+        long current = catalogVersion.get();
+
+        CachedPage cached = pages.getIfPresent(key);
+        if (cached == null || cached.version != current)
+            cached = readOnce(key, page, current, cached);
+
+        cached.requests.increment();
+        return cached.products;
+    }
+
+    /**
+     * Reads again the most requested pages which are stale
+     */
+    @Scheduled(initialDelayString = "${products.page-cache.refresh-interval:1000}",
+            fixedDelayString = "${products.page-cache.refresh-interval:1000}")
+    public void refreshPopularPages()
+    {
+        if (warmPages <= 0)
+            return;
+
+        long current = catalogVersion.get();
+        List<String> popular = pages.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, CachedPage> entry) -> entry.getValue().requests.sum()).reversed())
+                .limit(warmPages)
+                .filter(entry -> entry.getValue().version != current)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        for (String key : popular) {
+            CachedPage old = pages.getIfPresent(key);
+            if (old != null && old.version != current)
+                readOnce(key, old.page, current, old);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        CaffeineCacheMetrics.monitor(registry, pages, "products.pages");
+        Gauge.builder("products.catalog.version", catalogVersion, CatalogVersion::get).register(registry);
+    }
+
+    /**
+     * Reads the page unless a read of the same page in the current version or a later one is in flight,
+     * then its page is shared
+     */
+    private CachedPage readOnce(String key, PageRequest page, long current, @Nullable CachedPage previous)
+    {
+        while (true) {
+            CompletableFuture<CachedPage> read = new CompletableFuture<>();
+            CompletableFuture<CachedPage> running = reads.putIfAbsent(key, read);
+            if (running == null) {
+                try {
+                    CachedPage cached = read(page, current, previous);
+                    // A read of an older version finishing later does not replace the newer page
+                    pages.asMap().merge(key, cached, (old, fresh) -> old.version > fresh.version ? old : fresh);
+                    read.complete(cached);
+                    return cached;
+                } catch (RuntimeException e) {
+                    read.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    reads.remove(key, read);
+                }
+            }
+
+            CachedPage shared;
+            try {
+                shared = running.join();
+            } catch (CompletionException e) {
+                // The same page fails the same way, like the wrong sort property
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+
+            // The versions only grow, a read which started before the current version has to be repeated
+            if (shared.version >= current)
+                return shared;
+        }
+    }
+
+    private CachedPage read(PageRequest page, long readGeneration, @Nullable CachedPage previous)
+    {
+        CachedPage read = new CachedPage(page, readGeneration,
+                Collections.unmodifiableList(productRepository.findAllViews(page)));
+        // Keep the popularity of the page over the versions
+        if (previous != null)
+            read.requests.add(previous.requests.sum());
+
+        return read;
+    }
+
+    private static String key(PageRequest page)
+    {
+        return page.getPageNumber() + "|" + page.getPageSize() + "|" + page.getSort().stream()
+                .map(order -> (order.isAscending() ? "+" : "-") + order.getProperty())
+                .collect(Collectors.joining(","));
+    }
+
+    private static class CachedPage
+    {
+        private final PageRequest page;
+
+        private final long version;
+
+        private final List<ProductView> products;
+
+        private final LongAdder requests = new LongAdder();
+
+        private CachedPage(PageRequest page, long version, List<ProductView> products)
+        {
+            this.page = page;
+            this.version = version;
+            this.products = products;
+        }
+    }
+}
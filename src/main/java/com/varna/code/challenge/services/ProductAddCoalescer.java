@@ -0,0 +1,306 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Write behind for adding existing products (products.coalescing.enabled)
+ * Instead of an UPDATE per add, the adds of the same name are summed in memory
+ * and written as one quantity = quantity + n per product, all products in one jdbc batch.
+ * A sum is written after products.coalescing.flush-interval at the latest,
+ * or right away when it reaches products.coalescing.max-pending adds.
+ * The pending adds are written when the application stops, they are lost only if the process dies.
+ * The quantity returned for an add is an estimate - the cached quantity plus the pending adds
+ */
+@Component
+public class ProductAddCoalescer implements SmartLifecycle, MeterBinder
+{
+    public static final String ADDS_COUNTER = "products.coalescing.adds";
+
+    public static final String WRITES_COUNTER = "products.coalescing.writes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductAddCoalescer.class);
+
+    private final ProductRepository productRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+
+    private final Duration flushInterval;
+
+    private final int maxPending;
+
+    private final Map<String, PendingAdd> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * Not synchronized, a virtual thread waiting on a monitor during the jdbc calls would pin its carrier
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final LongAdder adds = new LongAdder();
+
+    private final LongAdder writes = new LongAdder();
+
+    private volatile boolean running;
+
+    private volatile ScheduledExecutorService flusher;
+
+    private volatile Timer flushTimer;
+
+    @Autowired
+    public ProductAddCoalescer(ProductRepository productRepository,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${products.coalescing.enabled:false}") boolean enabled,
+                               @Value("${products.coalescing.flush-interval:5ms}") Duration flushInterval,
+                               @Value("${products.coalescing.max-pending:100}") int maxPending)
+    {
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Adds one to the quantity of an existing product, the add is written by the next flush
+     *
+     * @param product the product, as cached
+     * @return the product with the estimated quantity,
+     * or empty if the add was not taken (coalescing is disabled or stopped) and has to be written by the caller
+     */
+    public Optional<ProductView> add(ProductView product)
+    {
+        if (!running)
+            return Optional.empty();
+
+        PendingAdd sum = pending.merge(product.getName(), new PendingAdd(product, 1), PendingAdd::plus);
+        adds.increment();
+
+        // Stopped after the check, the final flush may have missed this add
+        if (!running)
+            flush();
+        else if (sum.amount == maxPending)
+            requestFlush();
+
+        ProductView estimate = new ProductView(product.getId(), product.getName(), product.getCategory(),
+                product.getDescription(), product.getQuantity() + sum.amount,
+                product.getDateCreated(), LocalDate.now());
+        return Optional.of(estimate);
+    }
+
+    /**
+     * Writes the pending adds and publishes the product events for them
+     * Adds which could not be written stay pending for the next flush
+     */
+    public void flush()
+    {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            if (!pending.isEmpty())
+                flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending()
+    {
+        // Removing a name is atomic with merging into it, an add lands either in this batch or in the next one
+        SortedMap<Integer, PendingAdd> batch = new TreeMap<>();
+        for (String name : pending.keySet()) {
+            PendingAdd sum = pending.remove(name);
+            if (sum != null)
+                batch.merge(sum.product.getId(), sum, PendingAdd::plus);
+        }
+
+        long start = System.nanoTime();
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            // The batch holds only the adds which were not written yet
+            LOGGER.error("Could not write the pending adds of {} products, retrying with the next flush: {}",
+                    batch.size(), e.getMessage());
+            batch.values().forEach(sum -> pending.merge(sum.product.getName(), sum, PendingAdd::plus));
+            return;
+        }
+
+        if (flushTimer != null)
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void write(SortedMap<Integer, PendingAdd> batch)
+    {
+        SortedMap<Integer, Integer> amountByProductId = new TreeMap<>();
+        batch.forEach((productId, sum) -> amountByProductId.put(productId, sum.amount));
+
+        List<Product> updated = productRepository.increaseQuantities(amountByProductId);
+        writes.add(updated.size());
+
+        for (Product product : updated) {
+            PendingAdd sum = batch.remove(product.getId());
+            ProductView before = new ProductView(product);
+            before.setQuantity(product.getQuantity() - sum.amount);
+            eventPublisher.publishEvent(ProductEvent.updated(before, product));
+        }
+
+        // Deleted since they were cached, added again the way a single add would do it
+        for (Iterator<PendingAdd> missing = batch.values().iterator(); missing.hasNext(); ) {
+            PendingAdd sum = missing.next();
+            Product product = new Product();
+            product.setName(sum.product.getName());
+            product.setCategory(sum.product.getCategory());
+            product.setDescription(sum.product.getDescription());
+            product.setQuantity(sum.amount);
+            boolean inserted = productRepository.upsertByName(product);
+            missing.remove();
+            writes.increment();
+
+            if (inserted) {
+                eventPublisher.publishEvent(ProductEvent.created(product));
+            } else {
+                ProductView before = new ProductView(product);
+                before.setQuantity(product.getQuantity() - sum.amount);
+                eventPublisher.publishEvent(ProductEvent.updated(before, product));
+            }
+        }
+    }
+
+    private void requestFlush()
+    {
+        ScheduledExecutorService executor = flusher;
+        if (executor != null && flushRequested.compareAndSet(false, true))
+            executor.execute(this::flushQuietly);
+    }
+
+    private void flushQuietly()
+    {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not flush the pending product adds", e);
+        }
+    }
+
+    @Override
+    public void start()
+    {
+        if (!enabled)
+            return;
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "product-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly,
+                flushInterval.toNanos(), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        flusher = executor;
+        running = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        if (!running)
+            return;
+
+        // New adds are written by their callers from now on
+        running = false;
+        ScheduledExecutorService executor = flusher;
+        flusher = null;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(flushInterval.toMillis() + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flushQuietly();
+        if (!pending.isEmpty()) {
+            LOGGER.error("Lost the pending adds of {} products: {}", pending.size(),
+                    pending.values().stream()
+                            .map(sum -> sum.product.getName() + "+" + sum.amount)
+                            .collect(Collectors.joining(", ")));
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * @return adds per written row since the start, 1 means nothing was coalesced
+     */
+    public double getCoalescingRatio()
+    {
+        long written = writes.sum();
+        return written == 0 ? 0 : (double) adds.sum() / written;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("products.coalescing.pending", pending, Map::size).register(registry);
+        Gauge.builder("products.coalescing.ratio", this, ProductAddCoalescer::getCoalescingRatio).register(registry);
+        registry.more().counter(ADDS_COUNTER, List.of(), adds, LongAdder::doubleValue);
+        registry.more().counter(WRITES_COUNTER, List.of(), writes, LongAdder::doubleValue);
+        flushTimer = Timer.builder("products.coalescing.flush").register(registry);
+    }
+
+    /**
+     * The adds of one product waiting for the flush
+     */
+    private static class PendingAdd
+    {
+        private final ProductView product;
+
+        private final int amount;
+
+        private PendingAdd(ProductView product, int amount)
+        {
+            this.product = product;
+            this.amount = amount;
+        }
+
+        private PendingAdd plus(PendingAdd other)
+        {
+            return new PendingAdd(product, amount + other.amount);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.varna.code.challenge.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of products by id and of product ids by name
+ * Caffeine evicts by size (W-TinyLFU, keeps the frequently used products) and by age.
+ * The cached products are snapshots, they are invalidated by the product events after the write is committed
+ * and read again by the next lookup. They are not replaced with the product of the event - the listeners
+ * of concurrent writes run in no particular order, so that product could be older than the cached one.
+ * The age limit bounds how stale they can get from writes of other instances.
+ * The returned products are shared, they must not be changed.
+ * Hit, miss and eviction counts are published as cache metrics (products.by-id, products.by-name)
+ */
+@Component
+public class ProductCache implements MeterBinder
+{
+    private final ProductRepository productRepository;
+
+    private final Cache<Integer, ProductView> byId;
+
+    private final Cache<String, Integer> idByName;
+
+    @Autowired
+    public ProductCache(ProductRepository productRepository,
+                        @Value("${products.cache.max-size:10000}") long maxSize,
+                        @Value("${products.cache.time-to-live:5m}") Duration timeToLive)
+    {
+        this.productRepository = productRepository;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        this.idByName = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param productId the id of the product
+     * @return the product, read from the table only if it is not cached, missing products are not cached
+     */
+    public Optional<ProductView> findById(int productId)
+    {
+        return Optional.ofNullable(byId.get(productId,
+                id -> productRepository.findById(id).map(ProductView::new).orElse(null)));
+    }
+
+    /**
+     * @param name the name of the product
+     * @return the product with the name, read from the table only if it is not cached
+     */
+    public Optional<ProductView> findByName(String name)
+    {
+        Integer productId = idByName.getIfPresent(name);
+        if (productId != null) {
+            Optional<ProductView> product = findById(productId);
+            // The product could have been renamed by another instance
+            if (product.isPresent() && name.equals(product.get().getName()))
+                return product;
+
+            idByName.invalidate(name);
+        }
+
+        return Optional.ofNullable(productRepository.findByName(name))
+                .map(ProductView::new)
+                .map(product -> {
+                    put(product);
+                    return product;
+                });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductEvent(ProductEvent event)
+    {
+        ProductView before = event.getBefore();
+        ProductView after = event.getAfter();
+
+        if (before != null && before.getName() != null &&
+                (after == null || !before.getName().equals(after.getName())))
+            idByName.invalidate(before.getName());
+
+        byId.invalidate(after != null ? after.getId() : before.getId());
+
+        // A stale name is harmless, the name of the product is checked when it is looked up by name
+        if (after != null && after.getName() != null)
+            idByName.put(after.getName(), after.getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        invalidateAll();
+    }
+
+    public void invalidateAll()
+    {
+        byId.invalidateAll();
+        idByName.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        CaffeineCacheMetrics.monitor(registry, byId, "products.by-id");
+        CaffeineCacheMetrics.monitor(registry, idByName, "products.by-name");
+    }
+
+    private void put(ProductView product)
+    {
+        byId.put(product.getId(), product);
+        if (product.getName() != null)
+            idByName.put(product.getName(), product.getId());
+    }
+}
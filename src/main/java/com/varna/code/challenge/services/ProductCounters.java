@@ -0,0 +1,264 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.ProductsByCategory;
+import com.varna.code.challenge.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the total product count and the product count and summed quantity per category in memory,
+ * so reading them does not run COUNT(*) or GROUP BY over the products table.
+ * The counters are changed by the product events after the write is committed,
+ * and periodically reconciled against the table to fix drift
+ * (writes from other instances or races between a reconciliation and a commit)
+ */
+@Component
+public class ProductCounters
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductCounters.class);
+
+    /**
+     * How many times the table is read before the events that came during the reads are replayed onto it
+     */
+    private static final int RECONCILE_ATTEMPTS = 3;
+
+    private final ProductRepository productRepository;
+
+    /**
+     * Increased on every change of the counters, lets the clients know if the categories changed
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Counts counts = new Counts(Instant.EPOCH);
+
+    /**
+     * The changes of the events applied while the table is read, null outside of a reconciliation
+     */
+    private volatile Counts duringReconcile;
+
+    /**
+     * Events apply their changes under the read lock, the reconciliation starts and ends under the write lock,
+     * so no event can be applied to counters which are being replaced
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public ProductCounters(ProductRepository productRepository)
+    {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * @return the amount of all products
+     */
+    public long getTotal()
+    {
+        return counts.total.sum();
+    }
+
+    /**
+     * @param category the category
+     * @return the amount of products in the category
+     */
+    public long getCount(String category)
+    {
+        CategoryCounts categoryCounts = counts.byCategory.get(category);
+        return categoryCounts == null ? 0 : categoryCounts.products.sum();
+    }
+
+    /**
+     * @return the version of the counters, changes with every write and reconciliation
+     */
+    public long getVersion()
+    {
+        return version.get();
+    }
+
+    /**
+     * @return the categories with at least one product, with their product count and summed quantity
+     */
+    public CategoriesSnapshot getCategories()
+    {
+        // Read the version first, so the categories are at least as new as the version says
+        long currentVersion = version.get();
+        Counts current = counts;
+
+        List<ProductsByCategory> categories = current.byCategory.entrySet().stream()
+                .filter(category -> category.getValue().products.sum() > 0)
+                .map(category -> new ProductsByCategory(
+                        category.getKey(),
+                        category.getValue().products.sum(),
+                        category.getValue().quantity.sum()))
+                .collect(Collectors.toList());
+
+        return new CategoriesSnapshot(currentVersion, current.reconciledAt, categories);
+    }
+
+    /**
+     * Replaces the counters with the actual counts from the table
+     * The events committed while the table is read may or may not be seen by the read. If there were any,
+     * the table is read again, and after the last attempt the changes of those events are replayed onto it -
+     * an event committed in the middle of the read can then be counted twice until the next reconciliation
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${products.counters.reconcile-interval:300000}",
+            fixedDelayString = "${products.counters.reconcile-interval:300000}")
+    public void reconcile()
+    {
+        for (int attempt = 1; ; attempt++) {
+            long versionBefore;
+            swapLock.writeLock().lock();
+            try {
+                versionBefore = version.get();
+                duringReconcile = new Counts(Instant.EPOCH);
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            Counts actual = new Counts(Instant.now());
+            try {
+                for (ProductsByCategory category : productRepository.getProductsByCategory()) {
+                    CategoryCounts categoryCounts = actual.category(category.getCategory());
+                    categoryCounts.products.add(category.getProductsAvailable());
+                    categoryCounts.quantity.add(category.getQuantityAvailable());
+                }
+                actual.total.add(productRepository.count());
+            } catch (RuntimeException e) {
+                duringReconcile = null;
+                throw e;
+            }
+
+            Counts previous;
+            swapLock.writeLock().lock();
+            try {
+                if (version.get() != versionBefore) {
+                    if (attempt < RECONCILE_ATTEMPTS)
+                        continue;
+
+                    actual.add(duringReconcile);
+                }
+
+                previous = counts;
+                counts = actual;
+                duringReconcile = null;
+                version.incrementAndGet();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            if (previous.total.sum() != actual.total.sum())
+                LOGGER.info("Product counters drifted, counted {} but there are {} products",
+                        previous.total.sum(),
+                        actual.total.sum());
+            return;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductEvent(ProductEvent event)
+    {
+        swapLock.readLock().lock();
+        try {
+            // Updates are applied as removing the old product and adding the new one,
+            // this moves count and quantity between categories when the category changes
+            counts.apply(event.getBefore(), -1);
+            counts.apply(event.getAfter(), 1);
+
+            Counts buffer = duringReconcile;
+            if (buffer != null) {
+                buffer.apply(event.getBefore(), -1);
+                buffer.apply(event.getAfter(), 1);
+            }
+
+            version.incrementAndGet();
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        reconcile();
+    }
+
+    private static class Counts
+    {
+        private final LongAdder total = new LongAdder();
+
+        private final Map<String, CategoryCounts> byCategory = new ConcurrentHashMap<>();
+
+        private final Instant reconciledAt;
+
+        private Counts(Instant reconciledAt)
+        {
+            this.reconciledAt = reconciledAt;
+        }
+
+        private CategoryCounts category(String category)
+        {
+            return byCategory.computeIfAbsent(category, c -> new CategoryCounts());
+        }
+
+        /**
+         * Adds the changes collected in the other counters
+         */
+        private void add(Counts changes)
+        {
+            total.add(changes.total.sum());
+            changes.byCategory.forEach((name, changed) -> {
+                CategoryCounts categoryCounts = category(name);
+                categoryCounts.products.add(changed.products.sum());
+                categoryCounts.quantity.add(changed.quantity.sum());
+            });
+        }
+
+        /**
+         * Adds (sign = 1) or removes (sign = -1) the product from the counters
+         */
+        private void apply(@Nullable ProductView product, int sign)
+        {
+            if (product == null)
+                return;
+
+            total.add(sign);
+            if (product.getCategory() == null)
+                return;
+
+            CategoryCounts categoryCounts = category(product.getCategory());
+            categoryCounts.products.add(sign);
+            categoryCounts.quantity.add((long) sign * product.getQuantity());
+        }
+    }
+
+    /**
+     * LongAdder instead of AtomicLong, every order changes the quantity of the category
+     * and under load many threads do that for the same few categories
+     */
+    private static class CategoryCounts
+    {
+        private final LongAdder products = new LongAdder();
+
+        private final LongAdder quantity = new LongAdder();
+    }
+}
@@ -0,0 +1,17 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.config.DataGeneratorProperties;
+import com.varna.code.challenge.models.view.GenerationReport;
+
+public interface ProductDataGenerator
+{
+    /**
+     * Generates synthetic products and inserts them in batches, the batches are generated
+     * and inserted in parallel, each one in its own transaction.
+     * Product n is named Product(n + 1), so generating into a table with products can clash with their names
+     *
+     * @param settings how many products to generate and how their values are distributed
+     * @return how many products were inserted and how long it took
+     */
+    GenerationReport generate(DataGeneratorProperties settings);
+}
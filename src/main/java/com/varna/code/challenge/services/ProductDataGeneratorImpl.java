@@ -0,0 +1,161 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.config.DataGeneratorProperties;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.GenerationReport;
+import com.varna.code.challenge.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class ProductDataGeneratorImpl implements ProductDataGenerator
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductDataGeneratorImpl.class);
+
+    private static final String[] WORDS = {
+            "fast", "silent", "wireless", "compact", "portable", "gaming", "office", "ergonomic",
+            "black", "silver", "durable", "premium", "budget", "with", "and", "for", "the", "new"
+    };
+
+    /**
+     * Products are created up to this many days ago
+     */
+    private static final int MAX_AGE_DAYS = 365;
+
+    private final ProductRepository productRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public ProductDataGeneratorImpl(ProductRepository productRepository, ApplicationEventPublisher eventPublisher)
+    {
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public GenerationReport generate(DataGeneratorProperties settings)
+    {
+        long started = System.nanoTime();
+        double[] categoryDistribution = categoryDistribution(settings.getCategories(), settings.getCategorySkew());
+        LocalDate today = LocalDate.now();
+        long batches = (settings.getProducts() + settings.getBatchSize() - 1) / settings.getBatchSize();
+        int threads = settings.getThreads() > 0 ? settings.getThreads() : Runtime.getRuntime().availableProcessors();
+
+        LongAdder inserted = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (long batch = 0; batch < batches; batch++) {
+                long batchNumber = batch;
+                results.add(executor.submit(() -> {
+                    inserted.add(productRepository.insertAll(
+                            generateBatch(settings, categoryDistribution, today, batchNumber)));
+                    LOGGER.debug("Generated batch {} of {}", batchNumber + 1, batches);
+                }));
+            }
+
+            for (Future<?> result : results)
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Data generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Data generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            // Already inserted batches stay, the counters have to see them too
+            if (inserted.sum() > 0)
+                eventPublisher.publishEvent(new ProductsBulkChangedEvent(inserted.sum()));
+        }
+
+        GenerationReport report = new GenerationReport(inserted.sum(), (System.nanoTime() - started) / 1_000_000);
+        LOGGER.info("Generated {} with {} threads", report, threads);
+        return report;
+    }
+
+    /**
+     * Every batch has its own random seeded from the seed and the batch number,
+     * so the generated rows do not depend on the threads or the order the batches run in
+     */
+    private List<Product> generateBatch(DataGeneratorProperties settings,
+                                        double[] categoryDistribution,
+                                        LocalDate today,
+                                        long batch)
+    {
+        Random random = new Random(settings.getSeed() * 31 + batch);
+        long first = batch * settings.getBatchSize();
+        long last = Math.min(first + settings.getBatchSize(), settings.getProducts());
+
+        List<Product> products = new ArrayList<>((int) (last - first));
+        for (long i = first; i < last; i++) {
+            Product product = new Product();
+            product.setName("Product" + (i + 1));
+            product.setCategory("Category" + (pickCategory(categoryDistribution, random.nextDouble()) + 1));
+            product.setQuantity(random.nextDouble() < settings.getOutOfStockRatio()
+                    ? 0
+                    : random.nextInt(settings.getMaxQuantity()));
+            product.setDateCreated(today.minusDays(random.nextInt(MAX_AGE_DAYS)));
+            product.setLastModifiedDate(product.getDateCreated().plusDays(random.nextInt(MAX_AGE_DAYS)));
+            if (product.getLastModifiedDate().isAfter(today))
+                product.setLastModifiedDate(today);
+            product.setDescription(description(random, settings.getDescriptionMinLength(),
+                    settings.getDescriptionMaxLength()));
+            products.add(product);
+        }
+
+        return products;
+    }
+
+    /**
+     * @return cumulative probabilities of the categories, category k has weight 1 / (k + 1)^skew
+     */
+    private static double[] categoryDistribution(int categories, double skew)
+    {
+        double[] cumulative = new double[categories];
+        double sum = 0;
+        for (int k = 0; k < categories; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < categories; k++)
+            cumulative[k] /= sum;
+
+        return cumulative;
+    }
+
+    private static int pickCategory(double[] cumulative, double probability)
+    {
+        int index = Arrays.binarySearch(cumulative, probability);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    private static String description(Random random, int minLength, int maxLength)
+    {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder description = new StringBuilder(length + 16);
+        while (description.length() < length) {
+            if (description.length() > 0)
+                description.append(' ');
+            description.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        description.setLength(length);
+        return description.toString();
+    }
+}
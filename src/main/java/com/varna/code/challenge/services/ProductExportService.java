@@ -0,0 +1,24 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.DataFormat;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ProductExportService
+{
+    /**
+     * Writes the products ordered by id to the stream, one product per line, while they are read from the database.
+     * The memory used does not depend on the amount of products.
+     * The csv has a header line and can be imported back (see {@link ProductImportService}), the import reads
+     * only the name, category and description - the exported ids, quantities and dates are ignored
+     *
+     * @param category only products in this category, or all products if null
+     * @param format   ndjson objects like the product views or csv
+     * @param output   the stream to write to, it is flushed but not closed
+     * @return how many products were written
+     * @throws IOException if writing to the stream fails
+     */
+    long exportProducts(@Nullable String category, DataFormat format, OutputStream output) throws IOException;
+}
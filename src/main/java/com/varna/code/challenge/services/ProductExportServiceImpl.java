@@ -0,0 +1,94 @@
+package com.varna.code.challenge.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.varna.code.challenge.models.binding.DataFormat;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import com.varna.code.challenge.utils.CsvUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@Service
+public class ProductExportServiceImpl implements ProductExportService
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductExportServiceImpl.class);
+
+    private static final String CSV_HEADER = "id,name,category,description,quantity,dateCreated,dateModified";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ProductRepository productRepository;
+
+    private final ObjectWriter productWriter;
+
+    private final int fetchSize;
+
+    @Autowired
+    public ProductExportServiceImpl(ProductRepository productRepository,
+                                   ObjectMapper objectMapper,
+                                   @Value("${products.export.fetch-size:1000}") int fetchSize)
+    {
+        this.productRepository = productRepository;
+        this.productWriter = objectMapper.writerFor(ProductView.class);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public long exportProducts(@Nullable String category, DataFormat format, OutputStream output) throws IOException
+    {
+        long started = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == DataFormat.CSV)
+            writer.write(CSV_HEADER + "\n");
+
+        long[] written = {0};
+        try {
+            productRepository.forEachProduct(category, fetchSize, product -> {
+                try {
+                    writer.write(format == DataFormat.CSV ? toCsv(product) : toJson(product));
+                    writer.write('\n');
+                    written[0]++;
+                } catch (IOException e) {
+                    // Stops reading the cursor, the client went away
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        LOGGER.info("Exported {} products in {} ms", written[0], (System.nanoTime() - started) / 1_000_000);
+        return written[0];
+    }
+
+    private String toJson(Product product) throws IOException
+    {
+        return productWriter.writeValueAsString(new ProductView(product));
+    }
+
+    private static String toCsv(Product product)
+    {
+        return product.getId() + "," +
+                CsvUtils.escape(product.getName()) + "," +
+                CsvUtils.escape(product.getCategory()) + "," +
+                CsvUtils.escape(product.getDescription()) + "," +
+                product.getQuantity() + "," +
+                (product.getDateCreated() == null ? "" : product.getDateCreated()) + "," +
+                (product.getLastModifiedDate() == null ? "" : product.getLastModifiedDate());
+    }
+}
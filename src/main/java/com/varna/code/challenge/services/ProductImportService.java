@@ -0,0 +1,23 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.DataFormat;
+import com.varna.code.challenge.models.view.ImportReport;
+
+import java.io.InputStream;
+
+public interface ProductImportService
+{
+    /**
+     * Imports products from a stream, one product per line, with the same semantics as adding a product -
+     * existing names get their quantity increased, new names are inserted with quantity 1.
+     * The stream is read incrementally and written in batches, each batch in its own transaction.
+     * Only name, category and description are imported, other fields or csv columns (id, quantity, dates) are ignored
+     *
+     * @param input  the stream with products (ndjson objects or csv with header line, quoted values can span lines)
+     * @param format the format of the stream
+     * @return counts of the imported and failed rows and the errors for the failed ones
+     * @throws ProductException if the stream can not be read or the csv header has no name and category
+     */
+    ImportReport importProducts(InputStream input, DataFormat format) throws ProductException;
+}
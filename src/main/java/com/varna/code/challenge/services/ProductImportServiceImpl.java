@@ -0,0 +1,229 @@
+package com.varna.code.challenge.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.DataFormat;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ImportError;
+import com.varna.code.challenge.models.view.ImportReport;
+import com.varna.code.challenge.repositories.ProductRepository;
+import com.varna.code.challenge.utils.CsvUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class ProductImportServiceImpl implements ProductImportService
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductImportServiceImpl.class);
+
+    /**
+     * Length of name and category columns (see db/changelogs/init.xml)
+     */
+    private static final int MAX_FIELD_LENGTH = 16;
+
+    private final ProductRepository productRepository;
+
+    private final ObjectReader productReader;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int batchSize;
+
+    private final int maxReportedErrors;
+
+    @Autowired
+    public ProductImportServiceImpl(ProductRepository productRepository,
+                                    ObjectMapper objectMapper,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${products.import.batch-size:1000}") int batchSize,
+                                    @Value("${products.import.max-reported-errors:100}") int maxReportedErrors)
+    {
+        this.productRepository = productRepository;
+        this.productReader = objectMapper.readerFor(ProductBinding.class);
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    @Override
+    public ImportReport importProducts(InputStream input, DataFormat format) throws ProductException
+    {
+        long started = System.nanoTime();
+        ImportReport report = new ImportReport();
+        Batch batch = new Batch();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            long rowNumber = 0;
+            RowParser parser = this::parseJson;
+            if (format == DataFormat.CSV) {
+                parser = csvParser(reader.readLine());
+                rowNumber++;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rowNumber++;
+                if (line.isBlank())
+                    continue;
+
+                // Rows are reported by their first line, a quoted csv value with line breaks continues on the next ones
+                long row = rowNumber;
+                if (format == DataFormat.CSV) {
+                    String next;
+                    while (CsvUtils.hasUnclosedQuote(line) && (next = reader.readLine()) != null) {
+                        rowNumber++;
+                        line = line + '\n' + next;
+                    }
+                }
+
+                report.setRowsRead(report.getRowsRead() + 1);
+                try {
+                    batch.add(row, validate(parser.parse(line)));
+                } catch (IllegalArgumentException invalidRow) {
+                    fail(report, row, invalidRow.getMessage());
+                }
+
+                if (batch.rows.size() >= batchSize)
+                    write(batch, report);
+            }
+
+            write(batch, report);
+        } catch (IOException e) {
+            throw new ProductException("Could not read the products, " +
+                    (report.getInserted() + report.getUpdated()) + " products were imported before the error");
+        } finally {
+            // The batches bypass the product events, let the listeners rebuild their state
+            if (report.getInserted() + report.getUpdated() > 0)
+                eventPublisher.publishEvent(new ProductsBulkChangedEvent(report.getInserted() + report.getUpdated()));
+        }
+
+        report.setElapsedMillis((System.nanoTime() - started) / 1_000_000);
+        report.setRowsPerSecond(report.getRowsRead() * 1000 / Math.max(report.getElapsedMillis(), 1));
+        LOGGER.info("Imported {} rows ({} inserted, {} updated, {} failed) in {} ms",
+                report.getRowsRead(),
+                report.getInserted(),
+                report.getUpdated(),
+                report.getFailed(),
+                report.getElapsedMillis());
+
+        return report;
+    }
+
+    private void write(Batch batch, ImportReport report)
+    {
+        if (batch.rows.isEmpty())
+            return;
+
+        try {
+            int inserted = productRepository.mergeByName(batch.byName.values());
+            report.setInserted(report.getInserted() + inserted);
+            report.setUpdated(report.getUpdated() + batch.byName.size() - inserted);
+        } catch (DataAccessException e) {
+            LOGGER.error("Could not write import batch message: {}", e.getMessage());
+            for (long row : batch.rows)
+                fail(report, row, "Could not write the product");
+        }
+
+        LOGGER.debug("Import progress: {} rows read", report.getRowsRead());
+        batch.clear();
+    }
+
+    private void fail(ImportReport report, long row, String message)
+    {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < maxReportedErrors)
+            report.getErrors().add(new ImportError(row, message));
+    }
+
+    private ProductBinding validate(ProductBinding product) throws IllegalArgumentException
+    {
+        // A json line with the literal null binds to no product
+        if (product == null || product.getName() == null || product.getCategory() == null ||
+                product.getName().isBlank() || product.getCategory().isBlank())
+            throw new IllegalArgumentException("Invalid product passed, you need name and category");
+        if (product.getName().length() > MAX_FIELD_LENGTH || product.getCategory().length() > MAX_FIELD_LENGTH)
+            throw new IllegalArgumentException("Name and category cannot exceed 16 symbols");
+
+        return product;
+    }
+
+    private ProductBinding parseJson(String line) throws IllegalArgumentException
+    {
+        try {
+            return productReader.readValue(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid json");
+        }
+    }
+
+    private RowParser csvParser(String header) throws ProductException
+    {
+        List<String> columns = header == null ? new ArrayList<>() : CsvUtils.parseLine(header.trim());
+        int name = columns.indexOf("name");
+        int category = columns.indexOf("category");
+        int description = columns.indexOf("description");
+        if (name < 0 || category < 0)
+            throw new ProductException("The csv header should contain name and category columns");
+
+        return line -> {
+            List<String> values = CsvUtils.parseLine(line);
+            if (values.size() != columns.size())
+                throw new IllegalArgumentException("Expected " + columns.size() + " values but found " + values.size());
+
+            return new ProductBinding(values.get(category),
+                    values.get(name),
+                    description < 0 ? null : values.get(description));
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowParser
+    {
+        ProductBinding parse(String line) throws IllegalArgumentException;
+    }
+
+    /**
+     * Rows waiting to be written, rows with the same name are merged into one product
+     */
+    private static class Batch
+    {
+        private final Map<String, Product> byName = new LinkedHashMap<>();
+
+        private final List<Long> rows = new ArrayList<>();
+
+        private void add(long row, ProductBinding binding)
+        {
+            Product product = byName.get(binding.getName());
+            if (product == null)
+                byName.put(binding.getName(), new Product(binding));
+            else
+                product.setQuantity(product.getQuantity() + 1);
+
+            rows.add(row);
+        }
+
+        private void clear()
+        {
+            byName.clear();
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ProductSuggestion;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix tree over the lower cased product names, for suggestions while the name is typed
+ * Every node keeps the products with the most quantity under it, so suggestions ordered by quantity
+ * are read from a single node no matter how many names start with the prefix.
+ * Built when the application starts and kept in sync by the product events after the writes are committed,
+ * every event reads its product again and replaces what is stored for its id. The suggestions never read the database
+ */
+@Component
+public class ProductNameTrie
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductNameTrie.class);
+
+    private static final Comparator<ProductSuggestion> BY_NAME = Comparator
+            .comparing((ProductSuggestion product) -> product.getName().toLowerCase(Locale.ROOT))
+            .thenComparing(ProductSuggestion::getName)
+            .thenComparingInt(ProductSuggestion::getId);
+
+    private static final Comparator<ProductSuggestion> BY_QUANTITY = Comparator
+            .comparingInt(ProductSuggestion::getQuantity)
+            .reversed()
+            .thenComparing(BY_NAME);
+
+    private final ProductRepository productRepository;
+
+    private final int fetchSize;
+
+    private final int maxSuggestions;
+
+    /**
+     * Writes are serialized by the monitor of the trie, the lock only keeps the suggestions from reading
+     * a node while it is changed
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node root = new Node("");
+
+    /**
+     * The suggestion stored in the trie for every product id, changed only with the trie
+     */
+    private Map<Integer, ProductSuggestion> byId = new HashMap<>();
+
+    @Autowired
+    public ProductNameTrie(ProductRepository productRepository,
+                           @Value("${products.export.fetch-size:1000}") int fetchSize,
+                           @Value("${products.suggest.max-suggestions:10}") int maxSuggestions)
+    {
+        this.productRepository = productRepository;
+        this.fetchSize = fetchSize;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    /**
+     * @param prefix     the start of the name, case insensitive
+     * @param limit      how many products to suggest, at most products.suggest.max-suggestions
+     * @param byQuantity the products with the most quantity first, otherwise ordered by name
+     * @return the products whose name starts with the prefix
+     */
+    public List<ProductSuggestion> suggest(String prefix, int limit, boolean byQuantity)
+    {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int count = Math.min(limit, maxSuggestions);
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int matched = 0;
+            while (matched < key.length()) {
+                Node child = node.children.get(key.charAt(matched));
+                if (child == null)
+                    return Collections.emptyList();
+
+                int common = commonPrefix(child.edge, key, matched);
+                // The prefix can end in the middle of the edge, all names under the child still start with it
+                if (matched + common < key.length() && common < child.edge.length())
+                    return Collections.emptyList();
+
+                node = child;
+                matched += common;
+            }
+
+            if (byQuantity)
+                return new ArrayList<>(node.top.subList(0, Math.min(count, node.top.size())));
+
+            List<ProductSuggestion> suggestions = new ArrayList<>(count);
+            collect(node, suggestions, count);
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        rebuild();
+    }
+
+    /**
+     * Replaces the trie with one built from all products in the table,
+     * suggestions are served from the previous trie until the new one is built
+     */
+    public synchronized void rebuild()
+    {
+        long started = System.nanoTime();
+        Node rebuilt = new Node("");
+        Map<Integer, ProductSuggestion> rebuiltById = new HashMap<>();
+        productRepository.forEachProduct(null, fetchSize, product -> {
+            if (product.getName() != null) {
+                ProductSuggestion suggestion = new ProductSuggestion(new ProductView(product));
+                insert(rebuilt, suggestion);
+                rebuiltById.put(suggestion.getId(), suggestion);
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            root = rebuilt;
+            byId = rebuiltById;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        LOGGER.info("Indexed {} product names for suggestions in {} ms",
+                rebuiltById.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductEvent(ProductEvent event)
+    {
+        // The events of concurrent writes arrive in any order, so the row is read again instead of applying
+        // the event's change - read while the other events wait, the last one stores the latest name
+        int productId = event.getAfter() != null ? event.getAfter().getId() : event.getBefore().getId();
+        Optional<ProductSuggestion> current = productRepository.findViewById(productId)
+                .filter(product -> product.getName() != null)
+                .map(ProductSuggestion::new);
+
+        lock.writeLock().lock();
+        try {
+            ProductSuggestion stored = byId.remove(productId);
+            if (stored != null)
+                remove(root, productId, stored.getName());
+
+            current.ifPresent(suggestion -> {
+                insert(root, suggestion);
+                byId.put(productId, suggestion);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        rebuild();
+    }
+
+    private void insert(Node root, ProductSuggestion product)
+    {
+        String key = product.getName().toLowerCase(Locale.ROOT);
+        Deque<Node> path = new ArrayDeque<>();
+        path.push(root);
+
+        Node node = root;
+        int matched = 0;
+        while (matched < key.length()) {
+            Node child = node.children.get(key.charAt(matched));
+            if (child == null) {
+                child = new Node(key.substring(matched));
+                node.children.put(key.charAt(matched), child);
+                path.push(child);
+                node = child;
+                break;
+            }
+
+            int common = commonPrefix(child.edge, key, matched);
+            if (common < child.edge.length()) {
+                // The key leaves the edge in the middle, split it so the common part ends in a node
+                Node split = new Node(child.edge.substring(0, common));
+                child.edge = child.edge.substring(common);
+                split.children.put(child.edge.charAt(0), child);
+                node.children.put(key.charAt(matched), split);
+                child = split;
+            }
+
+            path.push(child);
+            node = child;
+            matched += common;
+        }
+
+        node.products.add(product);
+        node.products.sort(BY_NAME);
+        while (!path.isEmpty())
+            recount(path.pop());
+    }
+
+    private void remove(Node root, int productId, String name)
+    {
+        String key = name.toLowerCase(Locale.ROOT);
+        Deque<Node> path = new ArrayDeque<>();
+        path.push(root);
+
+        Node node = root;
+        int matched = 0;
+        while (matched < key.length()) {
+            Node child = node.children.get(key.charAt(matched));
+            if (child == null || !key.startsWith(child.edge, matched))
+                return;
+
+            path.push(child);
+            node = child;
+            matched += child.edge.length();
+        }
+
+        if (!node.products.removeIf(product -> product.getId() == productId))
+            return;
+
+        while (!path.isEmpty()) {
+            Node current = path.pop();
+            recount(current);
+
+            Node parent = path.peek();
+            if (parent == null)
+                break;
+
+            if (current.size == 0) {
+                parent.children.remove(current.edge.charAt(0));
+            } else if (current.products.isEmpty() && current.children.size() == 1) {
+                // Merge with the only child, so the tree stays compact
+                Node only = current.children.firstEntry().getValue();
+                only.edge = current.edge + only.edge;
+                parent.children.put(only.edge.charAt(0), only);
+            }
+        }
+    }
+
+    /**
+     * Updates the amount of products under the node and the products with the most quantity,
+     * the children have to be up to date
+     */
+    private void recount(Node node)
+    {
+        List<ProductSuggestion> candidates = new ArrayList<>(node.products);
+        int size = node.products.size();
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+            size += child.size;
+        }
+
+        candidates.sort(BY_QUANTITY);
+        node.size = size;
+        node.top = List.copyOf(candidates.subList(0, Math.min(maxSuggestions, candidates.size())));
+    }
+
+    private static void collect(Node node, List<ProductSuggestion> suggestions, int count)
+    {
+        for (ProductSuggestion product : node.products) {
+            if (suggestions.size() == count)
+                return;
+
+            suggestions.add(product);
+        }
+
+        for (Node child : node.children.values()) {
+            if (suggestions.size() == count)
+                return;
+
+            collect(child, suggestions, count);
+        }
+    }
+
+    private static int commonPrefix(String edge, String key, int from)
+    {
+        int common = 0;
+        while (common < edge.length() && from + common < key.length() &&
+                edge.charAt(common) == key.charAt(from + common))
+            common++;
+
+        return common;
+    }
+
+    private static class Node
+    {
+        /**
+         * The part of the name between the parent and this node
+         */
+        private String edge;
+
+        /**
+         * By the first character of their edge, in order so the names are collected in order
+         */
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+
+        /**
+         * The products whose name ends in this node, more than one if the names differ only by case
+         */
+        private final List<ProductSuggestion> products = new ArrayList<>(1);
+
+        private List<ProductSuggestion> top = Collections.emptyList();
+
+        private int size;
+
+        private Node(String edge)
+        {
+            this.edge = edge;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In memory inverted index over the names and descriptions of the products,
+ * used for full text search when the database has none (H2 in development and tests)
+ * Built when the application starts and kept in sync by the product events after the writes are committed,
+ * every event reads its product again and replaces the postings of its id
+ */
+@Component
+public class ProductSearchIndex
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Same as the weights of name (A) and description (B) in the postgres search_vector
+     */
+    private static final float NAME_WEIGHT = 1.0f;
+
+    private static final float DESCRIPTION_WEIGHT = 0.4f;
+
+    private static final Comparator<Match> BY_RELEVANCE = Comparator.comparingDouble((Match match) -> match.score)
+            .reversed()
+            .thenComparingInt(match -> match.product.getId());
+
+    private final ProductRepository productRepository;
+
+    private final int fetchSize;
+
+    /**
+     * The index is only kept when the database can not search
+     */
+    private volatile boolean enabled;
+
+    private volatile Index index = new Index();
+
+    @Autowired
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${products.export.fetch-size:1000}") int fetchSize)
+    {
+        this.productRepository = productRepository;
+        this.fetchSize = fetchSize;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        if (!productRepository.hasFullTextSearch()) {
+            enabled = true;
+            rebuild();
+        }
+    }
+
+    /**
+     * Replaces the index with one built from all products in the table
+     */
+    public synchronized void rebuild()
+    {
+        long started = System.nanoTime();
+        Index rebuilt = new Index();
+        productRepository.forEachProduct(null, fetchSize, product -> rebuilt.add(new ProductView(product)));
+        index = rebuilt;
+
+        LOGGER.info("Indexed {} products for search in {} ms",
+                rebuilt.products.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Finds the products which contain every word of the query in the name or the description
+     * Products are ranked by the sum of the weighted occurrences of the words, rare words weigh more
+     *
+     * @param query      the words to search
+     * @param category   only products in this category, or all products if null
+     * @param pageNumber the page
+     * @param pageSize   the products per page
+     * @return the products for the page ordered by relevance
+     */
+    public List<ProductView> search(String query, @Nullable String category, int pageNumber, int pageSize)
+    {
+        Index current = index;
+        List<String> terms = tokenize(query).distinct().collect(Collectors.toList());
+        if (terms.isEmpty())
+            return Collections.emptyList();
+
+        List<Set<Integer>> postings = new ArrayList<>();
+        for (String term : terms) {
+            Set<Integer> ids = current.postings.get(term);
+            if (ids == null)
+                return Collections.emptyList();
+
+            postings.add(ids);
+        }
+        // Intersect starting from the rarest word, so the fewest products are checked
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        long limit = (long) pageNumber * pageSize + pageSize;
+        PriorityQueue<Match> best = new PriorityQueue<>(BY_RELEVANCE.reversed());
+        for (Integer id : postings.get(0)) {
+            IndexedProduct product = current.products.get(id);
+            if (product == null ||
+                    (category != null && !category.equals(product.view.getCategory())) ||
+                    !postings.stream().allMatch(ids -> ids.contains(id)))
+                continue;
+
+            double score = 0;
+            for (String term : terms) {
+                double idf = Math.log(1 + (double) current.products.size() / current.postings.get(term).size());
+                score += product.weights.getOrDefault(term, 0f) * idf;
+            }
+
+            best.add(new Match(product.view, score));
+            if (best.size() > limit)
+                best.poll();
+        }
+
+        List<Match> ranked = new ArrayList<>(best);
+        ranked.sort(BY_RELEVANCE);
+
+        return ranked.stream()
+                .skip((long) pageNumber * pageSize)
+                .map(match -> match.product)
+                .collect(Collectors.toList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductEvent(ProductEvent event)
+    {
+        if (!enabled)
+            return;
+
+        // The events of concurrent writes arrive in any order, so the row is read again instead of applying
+        // the event's change - read while the other events wait, the last one stores the latest text
+        int productId = event.getAfter() != null ? event.getAfter().getId() : event.getBefore().getId();
+        Optional<ProductView> current = productRepository.findViewById(productId);
+
+        index.remove(productId);
+        current.ifPresent(index::add);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        if (enabled)
+            rebuild();
+    }
+
+    private static Stream<String> tokenize(@Nullable String text)
+    {
+        if (text == null)
+            return Stream.empty();
+
+        return Arrays.stream(SEPARATORS.split(text.toLowerCase(Locale.ROOT)))
+                .filter(term -> !term.isEmpty());
+    }
+
+    /**
+     * Writes are serialized by the monitor of ProductSearchIndex, searches run concurrently with them
+     */
+    private static class Index
+    {
+        private final Map<String, Set<Integer>> postings = new ConcurrentHashMap<>();
+
+        private final Map<Integer, IndexedProduct> products = new ConcurrentHashMap<>();
+
+        private void add(ProductView product)
+        {
+            Map<String, Float> weights = new HashMap<>();
+            tokenize(product.getName()).forEach(term -> weights.merge(term, NAME_WEIGHT, Float::sum));
+            tokenize(product.getDescription()).forEach(term -> weights.merge(term, DESCRIPTION_WEIGHT, Float::sum));
+
+            products.put(product.getId(), new IndexedProduct(product, weights));
+            for (String term : weights.keySet())
+                postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(product.getId());
+        }
+
+        private void remove(int productId)
+        {
+            IndexedProduct removed = products.remove(productId);
+            if (removed == null)
+                return;
+
+            for (String term : removed.weights.keySet()) {
+                postings.computeIfPresent(term, (t, ids) -> {
+                    ids.remove(productId);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    private static class IndexedProduct
+    {
+        private final ProductView view;
+
+        private final Map<String, Float> weights;
+
+        private IndexedProduct(ProductView view, Map<String, Float> weights)
+        {
+            this.view = view;
+            this.weights = weights;
+        }
+    }
+
+    private static class Match
+    {
+        private final ProductView product;
+
+        private final double score;
+
+        private Match(ProductView product, double score)
+        {
+            this.product = product;
+            this.score = score;
+        }
+    }
+}
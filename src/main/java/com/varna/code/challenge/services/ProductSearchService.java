@@ -0,0 +1,36 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.view.ProductSuggestion;
+import com.varna.code.challenge.models.view.ProductView;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+public interface ProductSearchService
+{
+    /**
+     * Full text search over the names and descriptions of the products
+     * Searched in the database when it supports full text search, otherwise in {@link ProductSearchIndex}
+     *
+     * @param query      the words to search
+     * @param category   only products in this category, or all products if null
+     * @param pageNumber the page
+     * @param pageSize   the products per page
+     * @return the products for the page, the most relevant first
+     * @throws ProductException if the query is empty or the page number or page size are invalid
+     */
+    List<ProductView> searchProducts(String query, @Nullable String category, int pageNumber, int pageSize)
+            throws ProductException;
+
+    /**
+     * Suggests products while their name is typed, served from {@link ProductNameTrie} without reading the database
+     *
+     * @param prefix     the start of the name, case insensitive
+     * @param limit      how many products to suggest, at most products.suggest.max-suggestions
+     * @param byQuantity the products with the most quantity first, otherwise ordered by name
+     * @return the products whose name starts with the prefix
+     * @throws ProductException if the limit is not positive
+     */
+    List<ProductSuggestion> suggestProducts(String prefix, int limit, boolean byQuantity) throws ProductException;
+}
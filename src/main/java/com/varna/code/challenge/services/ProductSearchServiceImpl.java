@@ -0,0 +1,56 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.view.ProductSuggestion;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class ProductSearchServiceImpl implements ProductSearchService
+{
+    private final ProductRepository productRepository;
+
+    private final ProductSearchIndex searchIndex;
+
+    private final ProductNameTrie nameTrie;
+
+    @Autowired
+    public ProductSearchServiceImpl(ProductRepository productRepository,
+                                    ProductSearchIndex searchIndex,
+                                    ProductNameTrie nameTrie)
+    {
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.nameTrie = nameTrie;
+    }
+
+    @Override
+    public List<ProductView> searchProducts(String query, @Nullable String category, int pageNumber, int pageSize)
+            throws ProductException
+    {
+        if (query == null || query.isBlank())
+            throw new ProductException("Search query should not be empty");
+        else if (pageNumber < 0 || pageSize <= 0)
+            throw new ProductException("Page number and items per page should be positive");
+
+        if (productRepository.hasFullTextSearch())
+            return productRepository.search(query, category, PageRequest.of(pageNumber, pageSize));
+
+        return searchIndex.search(query, category, pageNumber, pageSize);
+    }
+
+    @Override
+    public List<ProductSuggestion> suggestProducts(String prefix, int limit, boolean byQuantity) throws ProductException
+    {
+        if (limit <= 0)
+            throw new ProductException("Limit should be positive");
+
+        return nameTrie.suggest(prefix == null ? "" : prefix, limit, byQuantity);
+    }
+}
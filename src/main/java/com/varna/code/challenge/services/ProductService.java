@@ -2,11 +2,14 @@ package com.varna.code.challenge.services;
 
 import com.varna.code.challenge.exceptions.ProductException;
 import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
 import com.varna.code.challenge.models.binding.PageableAndSortable;
 import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.OrderLineView;
 import com.varna.code.challenge.models.view.ProductByPage;
 import com.varna.code.challenge.models.view.ProductView;
-import com.varna.code.challenge.models.view.ProductsByCategory;
+import com.varna.code.challenge.models.view.ProductsByCursor;
 import org.springframework.lang.Nullable;
 
 import java.util.List;
@@ -22,6 +25,15 @@ public interface ProductService
      */
     ProductView addProduct(ProductBinding productToAdd) throws ProductException;
 
+    /**
+     * Get a single product, frequently read products are served from memory (see {@link ProductCache})
+     *
+     * @param productId id of the product
+     * @return the product
+     * @throws ProductException if there is no such product
+     */
+    ProductView getProduct(int productId) throws ProductException;
+
     /**
      * Deletes a product by id
      *
@@ -58,6 +70,26 @@ public interface ProductService
     ProductByPage getProducts(int pageNumber, int pageSize, @Nullable String orderBy, @Nullable String orderDirection)
             throws IllegalArgumentException;
 
+    /**
+     * Get products by cursor (keyset pagination) with single sort
+     * The cost of a page does not depend on how deep it is
+     *
+     * @param cursor         the cursor returned with the previous page, null or empty for the first page
+     * @param pageSize       the items per page
+     * @param orderBy        the order criteria
+     * @param orderDirection the order direction
+     * @return List of products for the page, total products and the cursor for the next page
+     * @throws IllegalArgumentException if orderBy is present by direction is not,
+     *                                  if invalid direction is passed
+     *                                  if invalid page size is given
+     *                                  if there is no field 'orderBy' in products table
+     *                                  if the cursor is invalid or was created for a different sort
+     */
+    ProductByPage getProductsAfter(@Nullable String cursor,
+                                   int pageSize,
+                                   @Nullable String orderBy,
+                                   @Nullable String orderDirection) throws IllegalArgumentException;
+
     /**
      * @return the amount of all products in the table
      */
@@ -74,14 +106,34 @@ public interface ProductService
     List<ProductView> getAllByPage(int pageNumber, int itemsPerPage) throws ProductException;
 
     /**
-     * Returns list of products by page and sort
+     * Returns list of products by page and sort, only the products matching the filter if there is one
      *
      * @param pageableAndSortable the page and sort object to determine by which fields to sort
      * @return the list of products for the desired page and desired sort
-     * @throws ProductException invalid sort argument, invalid page number, invalid page size
+     * @throws ProductException invalid sort argument, invalid page number, invalid page size, invalid filter range
      */
     List<ProductView> getAllByPage(PageableAndSortable pageableAndSortable) throws ProductException;
 
+    /**
+     * Returns products after the cursor (keyset pagination) ordered by id
+     *
+     * @param cursor       the cursor returned with the previous page, null or empty for the first page
+     * @param itemsPerPage the items per page
+     * @return the products for the page and the cursor for the next one
+     * @throws ProductException invalid itemsPerPage or invalid cursor
+     */
+    ProductsByCursor getAllAfter(@Nullable String cursor, int itemsPerPage) throws ProductException;
+
+    /**
+     * Returns products after the cursor of pageableAndSortable (keyset pagination) with the given sort
+     *
+     * @param pageableAndSortable the sort, page size and cursor, page number is ignored
+     * @return the products for the page and the cursor for the next one
+     * @throws ProductException invalid sort argument, invalid page size, invalid cursor,
+     *                          cursor created for a different sort or filter with cursor
+     */
+    ProductsByCursor getAllAfter(PageableAndSortable pageableAndSortable) throws ProductException;
+
     /**
      * Order a product with a given amount
      *
@@ -94,8 +146,36 @@ public interface ProductService
     ProductView orderProduct(int amount, int productId) throws ProductException;
 
     /**
-     * @return list of categories and amount of products for each category
+     * Order many products at once (cart checkout) in a single transaction
+     * The order is all or nothing - if any line fails none of the lines are applied
+     *
+     * @param lines the product ids and amounts, lines with the same product are summed
+     * @return the outcome for every line in the order they were given
+     * @throws ProductException if there are no lines
+     */
+    List<OrderLineView> orderProducts(List<OrderLineBinding> lines) throws ProductException;
+
+    /**
+     * Served from memory, does not query the products table
+     *
+     * @return list of categories with amount of products and summed quantity for each category,
+     * and the version of the aggregate
+     */
+    CategoriesSnapshot getCategories();
+
+    /**
+     * Served from memory, lets the clients skip reading products which did not change
+     *
+     * @return tag of the current products, changes after every committed write
+     */
+    String getProductsTag();
+
+    /**
+     * Served from memory, lets the clients skip reading the count and categories if they did not change
+     *
+     * @return tag of the current product count and categories,
+     * changes after every committed write and every reconciliation of the counters
      */
-    List<ProductsByCategory> getCategories();
+    String getCountersTag();
 
 }
@@ -2,24 +2,44 @@ package com.varna.code.challenge.services;
 
 import com.varna.code.challenge.exceptions.ProductException;
 import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
 import com.varna.code.challenge.models.binding.PageableAndSortable;
 import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.binding.ProductCursor;
+import com.varna.code.challenge.models.binding.ProductFilter;
 import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.response.ResponseStatus;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.OrderLineView;
 import com.varna.code.challenge.models.view.ProductByPage;
 import com.varna.code.challenge.models.view.ProductView;
-import com.varna.code.challenge.models.view.ProductsByCategory;
+import com.varna.code.challenge.models.view.ProductsByCursor;
+import com.varna.code.challenge.models.view.UpdatedProduct;
 import com.varna.code.challenge.repositories.ProductRepository;
+import com.varna.code.challenge.repositories.ProductSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,10 +47,46 @@ public class ProductServiceImpl implements ProductService
 {
     private final ProductRepository productRepository;
 
+    private final ProductCounters productCounters;
+
+    private final ProductCache productCache;
+
+    private final PageCache pageCache;
+
+    private final SortedProductIndex sortedIndex;
+
+    private final CatalogVersion catalogVersion;
+
+    private final ProductAddCoalescer addCoalescer;
+
+    private final InventoryLedger inventoryLedger;
+
+    private final OrderBatcher orderBatcher;
+
+    private final ApplicationEventPublisher eventPublisher;
+
     @Autowired
-    public ProductServiceImpl(ProductRepository productRepository)
+    public ProductServiceImpl(ProductRepository productRepository,
+                              ProductCounters productCounters,
+                              ProductCache productCache,
+                              PageCache pageCache,
+                              SortedProductIndex sortedIndex,
+                              CatalogVersion catalogVersion,
+                              ProductAddCoalescer addCoalescer,
+                              InventoryLedger inventoryLedger,
+                              OrderBatcher orderBatcher,
+                              ApplicationEventPublisher eventPublisher)
     {
         this.productRepository = productRepository;
+        this.productCounters = productCounters;
+        this.productCache = productCache;
+        this.pageCache = pageCache;
+        this.sortedIndex = sortedIndex;
+        this.catalogVersion = catalogVersion;
+        this.addCoalescer = addCoalescer;
+        this.inventoryLedger = inventoryLedger;
+        this.orderBatcher = orderBatcher;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -41,58 +97,76 @@ public class ProductServiceImpl implements ProductService
                 productToAdd.getName().isBlank() || productToAdd.getCategory().isBlank())
             throw new ProductException("Invalid product passed, you need name and category");
 
-        // Check if we already have such product and if we do, increase quantity, else insert it with quantity = 1
-        Product p = productRepository.findByName(productToAdd.getName());
-        if (p != null) {
-            // If we pass existing product name but with different category,
-            // the new category will be ignored and only the previous product's quantity
-            // will be increased
-            p.setQuantity(p.getQuantity() + 1);
-            p.setLastModifiedDate(LocalDate.now());
-            Product insertedProduct = productRepository.save(p);
-            return new ProductView(insertedProduct);
+        // Adds to a known product are summed and written in batches when the coalescing is on
+        if (addCoalescer.isRunning()) {
+            Optional<ProductView> coalesced = productCache.findByName(productToAdd.getName())
+                    .flatMap(addCoalescer::add);
+            if (coalesced.isPresent())
+                return coalesced.get();
         }
 
+        // Insert the product with quantity = 1, or if we already have such product increase its quantity
+        // If we pass existing product name but with different category,
+        // the new category will be ignored and only the previous product's quantity will be increased
+        Product product = new Product(productToAdd);
+        boolean inserted;
         try {
-
-            Product returnProduct = productRepository.save(new Product(productToAdd));
-            return new ProductView(returnProduct);
-
+            inserted = productRepository.upsertByName(product);
         } catch (DataIntegrityViolationException invalidValues) {
             // Catch it here so in the controller we catch more generic ProductException and pass the user correct msg
             throw new ProductException("You inserted too long values, name and category cannot exceed 16 symbols");
         }
+
+        if (inserted) {
+            eventPublisher.publishEvent(ProductEvent.created(product));
+        } else {
+            // Only the quantity and the modified date were changed, the rest of the product is as before
+            ProductView before = new ProductView(product);
+            before.setQuantity(product.getQuantity() - 1);
+            eventPublisher.publishEvent(ProductEvent.updated(before, product));
+        }
+
+        return new ProductView(product);
     }
 
     @Override
     public void deleteProduct(int productId) throws ProductException
     {
-        if (!productRepository.existsById(productId))
-            throw new ProductException("No such product");
+        // Delete and read the deleted row in one statement, the event needs its category
+        Optional<Product> product = productRepository.deleteByIdReturning(productId);
+        if (product.isEmpty())
+            throw new ProductException("No such product", ProductException.Reason.NOT_FOUND);
+
+        eventPublisher.publishEvent(ProductEvent.deleted(product.get()));
+    }
 
-        productRepository.deleteById(productId);
+    @Override
+    public ProductView getProduct(int productId) throws ProductException
+    {
+        return productCache.findById(productId)
+                .orElseThrow(() -> new ProductException("No such product", ProductException.Reason.NOT_FOUND));
     }
 
     @Override
     public ProductView updateProduct(int productId, EditProductBinding productToEdit) throws ProductException
     {
-        Optional<Product> product = productRepository.findById(productId);
-        if (product.isEmpty()) {
-            throw new ProductException("There is no product with such id");
-        } else {
-            Product p = product.get();
-            mapNotNullValues(p, productToEdit);
-            p.setLastModifiedDate(LocalDate.now());
+        Optional<UpdatedProduct> updated;
+        try {
+            updated = productRepository.updateNotNull(productId, productToEdit);
+        } catch (DuplicateKeyException takenName) {
+            // Names are unique, the unique index decides renaming to a taken name
+            throw new ProductException("There is already a product with such name", ProductException.Reason.CONFLICT);
+        } catch (DataIntegrityViolationException invalidValues) {
+            // Catch it here so in the controller we catch more generic ProductException
+            throw new ProductException("You inserted too long values, name and category cannot exceed 16 symbols");
+        }
 
-            try {
-                productRepository.save(p);
-            } catch (DataIntegrityViolationException invalidValues) {
-                // Catch it here so in the controller we catch more generic ProductException
-                throw new ProductException("You inserted too long values, name and category cannot exceed 16 symbols");
-            }
+        if (updated.isEmpty())
+            throw new ProductException("There is no product with such id", ProductException.Reason.NOT_FOUND);
 
-            return new ProductView(p);
-        }
+        Product p = updated.get().getAfter();
+        eventPublisher.publishEvent(ProductEvent.updated(updated.get().getBefore(), p));
+        return new ProductView(p);
     }
 
     @Override
@@ -101,9 +175,7 @@ public class ProductServiceImpl implements ProductService
         if (pageNumber < 0 || itemsPerPage <= 0)
             throw new ProductException("Page number and items per page should be positive");
 
-        return productRepository.findAll(PageRequest.of(pageNumber, itemsPerPage))
-                .map(ProductView::new)
-                .stream().collect(Collectors.toList());
+        return readPage(PageRequest.of(pageNumber, itemsPerPage));
     }
 
     @Override
@@ -119,10 +191,8 @@ public class ProductServiceImpl implements ProductService
             throw new IllegalArgumentException("Invalid page number or page size");
         } else if (orderBy == null) { // orderDirection is null if we are here
             // We only have pageNumber and pageSize
-            long totalRecords = productRepository.count();
-            List<ProductView> productsForPage = productRepository.findAll(PageRequest.of(pageNumber, pageSize))
-                    .map(ProductView::new)
-                    .stream().collect(Collectors.toList());
+            long totalRecords = productCounters.getTotal();
+            List<ProductView> productsForPage = readPage(PageRequest.of(pageNumber, pageSize));
 
             return new ProductByPage(totalRecords, productsForPage);
         } else {
@@ -131,11 +201,9 @@ public class ProductServiceImpl implements ProductService
                 Sort.Direction sortDirection = Sort.Direction.valueOf(orderDirection.toUpperCase());
 
 
-                long totalRecords = productRepository.count();
-                List<ProductView> productsForPage = productRepository.findAll(
-                        PageRequest.of(pageNumber, pageSize, Sort.by(sortDirection, orderBy)))
-                        .map(ProductView::new)
-                        .stream().collect(Collectors.toList());
+                long totalRecords = productCounters.getTotal();
+                List<ProductView> productsForPage = readPage(
+                        PageRequest.of(pageNumber, pageSize, Sort.by(sortDirection, orderBy)));
 
                 return new ProductByPage(totalRecords, productsForPage);
             } catch (IllegalArgumentException wrongSortOrder) {
@@ -147,26 +215,84 @@ public class ProductServiceImpl implements ProductService
         }
     }
 
+    @Override
+    public ProductByPage getProductsAfter(@Nullable String cursor,
+                                          int pageSize,
+                                          @Nullable String orderBy,
+                                          @Nullable String orderDirection) throws IllegalArgumentException
+    {
+        if ((orderBy != null && orderDirection == null) ||
+                (orderBy == null && orderDirection != null)) {
+            throw new IllegalArgumentException("You must either provide both orderBy and direction, or none");
+        } else if (pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page size");
+        }
+
+        List<Sort.Order> orders = new ArrayList<>();
+        if (orderBy != null) {
+            try {
+                orders.add(new Sort.Order(Sort.Direction.valueOf(orderDirection.toUpperCase()), orderBy));
+            } catch (IllegalArgumentException wrongSortOrder) {
+                throw new IllegalArgumentException("Sort order should be one of ASC or DESC (case insensitive)");
+            }
+        }
+
+        try {
+            ProductsByCursor page = seek(cursor, pageSize, orders);
+            return new ProductByPage(productCounters.getTotal(), page.getProducts(), page.getNextCursor());
+        } catch (PropertyReferenceException noSuchProperty) {
+            throw new IllegalArgumentException("No such property to sort " + orderBy);
+        }
+    }
+
+    @Override
+    public ProductsByCursor getAllAfter(@Nullable String cursor, int itemsPerPage) throws ProductException
+    {
+        if (itemsPerPage <= 0)
+            throw new ProductException("Items per page should be positive");
+
+        try {
+            return seek(cursor, itemsPerPage, new ArrayList<>());
+        } catch (IllegalArgumentException invalidCursor) {
+            throw new ProductException(invalidCursor.getMessage());
+        }
+    }
+
+    @Override
+    public ProductsByCursor getAllAfter(PageableAndSortable pageableAndSortable) throws ProductException
+    {
+        if (pageableAndSortable.getItemsPerPage() <= 0)
+            throw new ProductException("Items per page should be positive");
+        else if (pageableAndSortable.getFilter() != null && !pageableAndSortable.getFilter().isEmpty())
+            throw new ProductException("Filters are supported only with page number, not with cursor");
+
+        try {
+            return seek(pageableAndSortable.getCursor(),
+                    pageableAndSortable.getItemsPerPage(),
+                    toSortOrder(pageableAndSortable));
+        } catch (PropertyReferenceException e) {
+            throw new ProductException("Wrong sort order, no property " + e.getPropertyName());
+        } catch (IllegalArgumentException invalidCursor) {
+            throw new ProductException(invalidCursor.getMessage());
+        }
+    }
+
     @Override
     public List<ProductView> getAllByPage(PageableAndSortable pageableAndSortable) throws ProductException
     {
-        // map the sortedProperties hashmap to List<Sort.Order> which hibernate accepts
-        List<Sort.Order> hibernateSortOrder = pageableAndSortable.getSortedProperties()
-                .keySet().stream()
-                .map(property ->
-                        new Sort.Order(
-                                Sort.Direction.fromString(
-                                        pageableAndSortable.getSortedProperties().get(property).name()),
-                                property))
-                .collect(Collectors.toList());
+        List<Sort.Order> hibernateSortOrder = toSortOrder(pageableAndSortable);
 
         int pageNumber = pageableAndSortable.getPageNumber();
         int itemsPerPage = pageableAndSortable.getItemsPerPage();
+        PageRequest page = PageRequest.of(pageNumber, itemsPerPage, Sort.by(hibernateSortOrder));
+        ProductFilter filter = pageableAndSortable.getFilter();
 
         try {
-            return productRepository.findAll(PageRequest.of(pageNumber, itemsPerPage, Sort.by(hibernateSortOrder)))
-                    .map(ProductView::new)
-                    .stream().collect(Collectors.toList());
+            // Filtered pages are read from the table, the cache only holds the pages of all products
+            if (filter != null && !filter.isEmpty())
+                return productRepository.findAllViews(toSpecification(filter), page);
+
+            return readPage(page);
         } catch (PropertyReferenceException e) {
             throw new ProductException("Wrong sort order, no property " + e.getPropertyName());
         }
@@ -175,43 +301,242 @@ public class ProductServiceImpl implements ProductService
     @Override
     public long getProductCount()
     {
-        return productRepository.count();
+        return productCounters.getTotal();
     }
 
     @Override
     public ProductView orderProduct(int amount, int productId) throws ProductException
     {
-        // If i want to optimize i would check for negative amount first and then get
-        // the product from database, but for me, the code looks cleaner this way
-        Optional<Product> productToOrder = productRepository.findById(productId);
-
-        if (amount <= 0) {
+        if (amount <= 0)
             throw new ProductException("Amount should be positive, greater than zero");
-        } else if (productToOrder.isEmpty()) {
-            throw new ProductException("No such product");
-        } else if (productToOrder.get().getQuantity() < amount) {
-            throw new ProductException("There isn't that much in stock");
-        } else {
-            Product p = productToOrder.get();
-            p.setQuantity(p.getQuantity() - amount);
 
-            return new ProductView(productRepository.save(p));
+        // Hot products are sold from the stock the ledger took from their rows
+        InventoryLedger.Outcome outcome = inventoryLedger.order(productId, amount);
+        if (outcome == InventoryLedger.Outcome.NOT_ORDERED)
+            throw notOrdered(productId);
+        else if (outcome == InventoryLedger.Outcome.ORDERED)
+            return heldProduct(productId);
+
+        // Concurrent orders are committed together when the batching is on, the batch publishes the events
+        if (orderBatcher.isRunning()) {
+            ProductView batched = orderBatcher.order(productId, amount).orElseThrow(() -> notOrdered(productId));
+            inventoryLedger.tableOrdered(productId);
+            return batched;
+        }
+
+        // Check and decrease the quantity in a single statement, so concurrent orders can not oversell
+        Optional<Product> orderedProduct = productRepository.decreaseQuantity(productId, amount);
+        if (orderedProduct.isEmpty())
+            throw notOrdered(productId);
+
+        inventoryLedger.tableOrdered(productId);
+
+        Product p = orderedProduct.get();
+        ProductView before = new ProductView(p);
+        before.setQuantity(p.getQuantity() + amount);
+        eventPublisher.publishEvent(ProductEvent.updated(before, p));
+
+        return new ProductView(p);
+    }
+
+    /**
+     * Nothing was updated by the order, only now we need to know why
+     */
+    private ProductException notOrdered(int productId)
+    {
+        if (productCache.findById(productId).isEmpty())
+            return new ProductException("No such product", ProductException.Reason.NOT_FOUND);
+
+        return new ProductException("There isn't that much in stock", ProductException.Reason.OUT_OF_STOCK);
+    }
+
+    /**
+     * @return the hot product with the quantity it can still be ordered, the table quantity plus the held stock
+     */
+    private ProductView heldProduct(int productId) throws ProductException
+    {
+        ProductView product = productCache.findById(productId)
+                .orElseThrow(() -> new ProductException("No such product", ProductException.Reason.NOT_FOUND));
+
+        return new ProductView(product.getId(), product.getName(), product.getCategory(), product.getDescription(),
+                product.getQuantity() + inventoryLedger.getAvailable(productId),
+                product.getDateCreated(), product.getDateModified());
+    }
+
+    @Override
+    @Transactional
+    public List<OrderLineView> orderProducts(List<OrderLineBinding> lines) throws ProductException
+    {
+        if (lines == null || lines.isEmpty())
+            throw new ProductException("The order should contain at least one product");
+
+        // Same product on many lines is ordered once with the summed amount,
+        // the sorted map also gives the id order in which the rows are locked and updated
+        SortedMap<Integer, Integer> amountByProductId = new TreeMap<>();
+        for (OrderLineBinding line : lines)
+            amountByProductId.merge(line.getProductId(), line.getAmount(), Integer::sum);
+
+        Map<Integer, Product> products = productRepository.findAllByIdForUpdate(amountByProductId.keySet())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // The rows do not count the stock the ledger holds for hot products, it is given back to the locked rows
+        inventoryLedger.releaseLocked(products.keySet()).forEach((productId, amount) -> {
+            Product p = products.get(productId);
+            p.setQuantity(p.getQuantity() + amount);
+        });
+
+        List<String> errors = lines.stream()
+                .map(line -> validateOrderLine(line,
+                        products.get(line.getProductId()),
+                        amountByProductId.get(line.getProductId())))
+                .collect(Collectors.toList());
+
+        if (errors.stream().anyMatch(Objects::nonNull)) {
+            List<OrderLineView> failedLines = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                String error = errors.get(i) != null ? errors.get(i) : "Not ordered, other products of the order failed";
+                failedLines.add(new OrderLineView(lines.get(i).getProductId(), lines.get(i).getAmount(),
+                        ResponseStatus.FAILED, error, null));
+            }
+
+            return failedLines;
         }
+
+        // The rows are locked and checked, so every conditional update must change its row
+        int[] updatedRows = productRepository.decreaseQuantities(amountByProductId);
+        if (Arrays.stream(updatedRows).anyMatch(count -> count == 0))
+            throw new IllegalStateException("Locked product was not updated while ordering");
+
+        amountByProductId.forEach((productId, amount) -> {
+            Product p = products.get(productId);
+            ProductView before = new ProductView(p);
+            p.setQuantity(p.getQuantity() - amount);
+            eventPublisher.publishEvent(ProductEvent.updated(before, p));
+        });
+
+        return lines.stream()
+                .map(line -> new OrderLineView(line.getProductId(), line.getAmount(), ResponseStatus.SUCCESS,
+                        null, products.get(line.getProductId()).getQuantity()))
+                .collect(Collectors.toList());
     }
 
     @Override
-    public List<ProductsByCategory> getCategories()
+    public CategoriesSnapshot getCategories()
     {
-        return productRepository.getProductsByCategory();
+        return productCounters.getCategories();
     }
 
-    private void mapNotNullValues(Product p, EditProductBinding pe)
+    @Override
+    public String getProductsTag()
+    {
+        return catalogVersion.tag(catalogVersion.get());
+    }
+
+    @Override
+    public String getCountersTag()
     {
-        if (pe.getCategory() != null)
-            p.setCategory(pe.getCategory());
-        if (pe.getDescription() != null)
-            p.setDescription(pe.getDescription());
-        if (pe.getName() != null)
-            p.setName(pe.getName());
+        // The counters are also reconciled with the table, so they have their own version
+        return catalogVersion.tag(productCounters.getVersion()) + "-c";
+    }
+
+    /**
+     * Reads a page by cursor, the page size is read + 1 so we know if there is a next page
+     * without issuing another query
+     */
+    private ProductsByCursor seek(@Nullable String cursor, int pageSize, List<Sort.Order> requestedOrder)
+            throws IllegalArgumentException, PropertyReferenceException
+    {
+        List<Sort.Order> orders = ProductCursor.withTieBreaker(requestedOrder);
+
+        ProductCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            after = ProductCursor.decode(cursor);
+            if (!after.matches(orders))
+                throw new IllegalArgumentException("The cursor was created for a different sort");
+        }
+
+        int limit = Math.min(pageSize, Integer.MAX_VALUE - 1);
+        Optional<ProductsByCursor> indexed = sortedIndex.getPageAfter(orders, after, limit);
+        if (indexed.isPresent())
+            return indexed.get();
+
+        List<Product> products = productRepository.findAllAfter(orders, after, limit + 1);
+
+        String nextCursor = null;
+        if (products.size() > limit) {
+            products = products.subList(0, limit);
+            nextCursor = ProductCursor.after(products.get(limit - 1), orders).encode();
+        }
+
+        return new ProductsByCursor(
+                products.stream().map(ProductView::new).collect(Collectors.toList()),
+                nextCursor);
+    }
+
+    /**
+     * Sorted pages are served by the sorted index when it is enabled, the other pages by the page cache
+     */
+    private List<ProductView> readPage(PageRequest page) throws PropertyReferenceException
+    {
+        return sortedIndex.getPage(page).orElseGet(() -> pageCache.getPage(page));
+    }
+
+    /**
+     * All criteria of the filter have to match
+     */
+    private Specification<Product> toSpecification(ProductFilter filter) throws ProductException
+    {
+        if (filter.getMinQuantity() != null && filter.getMaxQuantity() != null &&
+                filter.getMinQuantity() > filter.getMaxQuantity())
+            throw new ProductException("Minimum quantity should not be greater than maximum quantity");
+        else if (isAfter(filter.getCreatedFrom(), filter.getCreatedTo()) ||
+                isAfter(filter.getModifiedFrom(), filter.getModifiedTo()))
+            throw new ProductException("The start of a date range should not be after its end");
+
+        return Specification.where(ProductSpecifications.inCategories(filter.getCategories()))
+                .and(ProductSpecifications.quantityBetween(filter.getMinQuantity(), filter.getMaxQuantity()))
+                .and(ProductSpecifications.createdBetween(filter.getCreatedFrom(), filter.getCreatedTo()))
+                .and(ProductSpecifications.modifiedBetween(filter.getModifiedFrom(), filter.getModifiedTo()))
+                .and(ProductSpecifications.nameContains(filter.getNameContains()));
+    }
+
+    private static boolean isAfter(@Nullable LocalDate from, @Nullable LocalDate to)
+    {
+        return from != null && to != null && from.isAfter(to);
+    }
+
+    /**
+     * map the sortedProperties hashmap to List<Sort.Order> which hibernate accepts
+     */
+    private List<Sort.Order> toSortOrder(PageableAndSortable pageableAndSortable)
+    {
+        if (pageableAndSortable.getSortedProperties() == null)
+            return new ArrayList<>();
+
+        return pageableAndSortable.getSortedProperties()
+                .keySet().stream()
+                .map(property ->
+                        new Sort.Order(
+                                Sort.Direction.fromString(
+                                        pageableAndSortable.getSortedProperties().get(property).name()),
+                                property))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return why the line can not be ordered or null if it can
+     */
+    @Nullable
+    private String validateOrderLine(OrderLineBinding line, @Nullable Product product, int orderedAmount)
+    {
+        if (line.getAmount() <= 0)
+            return "Amount should be positive, greater than zero";
+        else if (product == null)
+            return "No such product";
+        else if (product.getQuantity() < orderedAmount)
+            return "There isn't that much in stock";
+
+        return null;
     }
 }
@@ -0,0 +1,331 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.ProductCursor;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.ProductsByCursor;
+import com.varna.code.challenge.repositories.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional in memory copy of the products with an ordered index per requested sort,
+ * so sorted pages are a walk over a skip list instead of a sort or index scan in the database.
+ * An index is created on the first request with its sort (single or multi column), at most max-sorts of them.
+ * Every index is a concurrent skip list of the product snapshots ordered by the sort keys and the id,
+ * nulls are last when ascending and first when descending, like the database orders them.
+ * Only numbers and dates are indexed - strings are ordered by the collation of the database, which java
+ * does not reproduce, and the pages of one sort must come in the same order from memory and from the table.
+ * Cursor pages seek to the cursor (tailSet) and cost only the page. Offset pages walk every product before
+ * the page, so only offsets up to max-offset are served, deeper pages are left to the page cache.
+ * Kept in sync by the product events after the writes are committed, every event reads its product again
+ */
+@Component
+public class SortedProductIndex implements MeterBinder
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SortedProductIndex.class);
+
+    /**
+     * Estimates for a 64 bit jvm with compressed references, used only to report the memory footprint
+     */
+    private static final int PRODUCT_ENTRY_BYTES = 48;
+
+    private static final int VIEW_BYTES = 40 + 2 * 24;
+
+    private static final int STRING_BYTES = 40;
+
+    private static final int SKIP_LIST_ENTRY_BYTES = 32;
+
+    private static final Map<String, Function<ProductView, Comparable<?>>> SORT_KEYS = Map.of(
+            "id", ProductView::getId,
+            "quantity", ProductView::getQuantity,
+            "dateCreated", ProductView::getDateCreated,
+            "lastModifiedDate", ProductView::getDateModified);
+
+    private final ProductRepository productRepository;
+
+    private final boolean enabled;
+
+    private final int maxSorts;
+
+    private final long maxOffset;
+
+    private final int fetchSize;
+
+    private volatile Map<Integer, ProductView> products = new ConcurrentHashMap<>();
+
+    private volatile Map<String, ConcurrentSkipListSet<ProductView>> indexes = new ConcurrentHashMap<>();
+
+    private final LongAdder productBytes = new LongAdder();
+
+    @Autowired
+    public SortedProductIndex(ProductRepository productRepository,
+                              @Value("${products.sorted-index.enabled:false}") boolean enabled,
+                              @Value("${products.sorted-index.max-sorts:8}") int maxSorts,
+                              @Value("${products.sorted-index.max-offset:10000}") long maxOffset,
+                              @Value("${products.export.fetch-size:1000}") int fetchSize)
+    {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.maxSorts = maxSorts;
+        this.maxOffset = maxOffset;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @param page the page and sort
+     * @return the products for the page, or empty if the page can not be served from memory
+     * (the index is disabled, the page is not sorted, a property has no index, there are max-sorts indexes
+     * or the offset is over max-offset)
+     */
+    public Optional<List<ProductView>> getPage(PageRequest page)
+    {
+        if (page.getOffset() > maxOffset)
+            return Optional.empty();
+
+        return index(page.getSort()).map(index -> index.stream()
+                .skip(page.getOffset())
+                .limit(page.getPageSize())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Keyset pagination over the index, the walk starts right after the cursor however deep the page is
+     *
+     * @param orders the sort, the last order must be by id (see {@link ProductCursor#withTieBreaker(List)})
+     * @param after  the position to seek after, null for the first page
+     * @param limit  maximum number of products to return
+     * @return the page and the cursor of the next one, or empty if the page can not be served from memory
+     * (the index is disabled, a property has no index or there are max-sorts indexes)
+     */
+    public Optional<ProductsByCursor> getPageAfter(List<Sort.Order> orders, @Nullable ProductCursor after, int limit)
+    {
+        return index(Sort.by(orders)).map(index -> {
+            NavigableSet<ProductView> tail = after == null ? index : index.tailSet(probe(after), false);
+            List<ProductView> products = tail.stream().limit(limit + 1L).collect(Collectors.toList());
+
+            String nextCursor = null;
+            if (products.size() > limit) {
+                products = products.subList(0, limit);
+                ProductView last = products.get(limit - 1);
+                nextCursor = ProductCursor.after(orders, orders.stream()
+                        .map(order -> (Object) SORT_KEYS.get(order.getProperty()).apply(last))
+                        .collect(Collectors.toList())).encode();
+            }
+
+            return new ProductsByCursor(products, nextCursor);
+        });
+    }
+
+    /**
+     * @return estimated bytes of memory per product, the snapshot and its entries in every index
+     */
+    public long getBytesPerProduct()
+    {
+        int count = products.size();
+        if (count == 0)
+            return 0;
+
+        return productBytes.sum() / count + PRODUCT_ENTRY_BYTES + (long) indexes.size() * SKIP_LIST_ENTRY_BYTES;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        if (enabled)
+            reload();
+    }
+
+    /**
+     * Reads all products again and rebuilds the existing indexes
+     */
+    public synchronized void reload()
+    {
+        long started = System.nanoTime();
+        Map<Integer, ProductView> loaded = new ConcurrentHashMap<>();
+        productRepository.forEachProduct(null, fetchSize, product -> loaded.put(product.getId(), new ProductView(product)));
+
+        productBytes.reset();
+        loaded.values().forEach(product -> productBytes.add(estimateBytes(product)));
+
+        Map<String, ConcurrentSkipListSet<ProductView>> rebuilt = new ConcurrentHashMap<>();
+        indexes.forEach((signature, index) -> {
+            ConcurrentSkipListSet<ProductView> rebuiltIndex = new ConcurrentSkipListSet<>(index.comparator());
+            rebuiltIndex.addAll(loaded.values());
+            rebuilt.put(signature, rebuiltIndex);
+        });
+
+        products = loaded;
+        indexes = rebuilt;
+
+        LOGGER.info("Loaded {} products into {} sorted indexes in {} ms, about {} bytes per product",
+                loaded.size(),
+                rebuilt.size(),
+                (System.nanoTime() - started) / 1_000_000,
+                getBytesPerProduct());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductEvent(ProductEvent event)
+    {
+        if (!enabled)
+            return;
+
+        // The events of concurrent writes arrive in any order, so the row is read again instead of taking
+        // the event's after - read while the other events wait, the last one stores the latest row
+        int productId = event.getAfter() != null ? event.getAfter().getId() : event.getBefore().getId();
+        Optional<ProductView> current = productRepository.findViewById(productId);
+
+        ProductView stored = products.remove(productId);
+        if (stored != null) {
+            productBytes.add(-estimateBytes(stored));
+            indexes.values().forEach(index -> index.remove(stored));
+        }
+
+        current.ifPresent(product -> {
+            products.put(product.getId(), product);
+            productBytes.add(estimateBytes(product));
+            indexes.values().forEach(index -> index.add(product));
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        if (enabled)
+            reload();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("products.sorted-index.products", this, index -> index.products.size())
+                .register(registry);
+        Gauge.builder("products.sorted-index.sorts", this, index -> index.indexes.size())
+                .register(registry);
+        Gauge.builder("products.sorted-index.bytes-per-product", this, SortedProductIndex::getBytesPerProduct)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * @return the index of the sort, created if needed, or empty if the sort can not be indexed
+     */
+    private Optional<ConcurrentSkipListSet<ProductView>> index(Sort sort)
+    {
+        if (!enabled || sort.isUnsorted() ||
+                !sort.stream().allMatch(order -> SORT_KEYS.containsKey(order.getProperty())))
+            return Optional.empty();
+
+        String signature = signature(sort);
+        ConcurrentSkipListSet<ProductView> index = indexes.get(signature);
+        return Optional.ofNullable(index != null ? index : createIndex(signature, sort));
+    }
+
+    /**
+     * A product placed exactly at the cursor, it has only the sort keys
+     */
+    private static ProductView probe(ProductCursor cursor)
+    {
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < cursor.getOrders().size(); i++)
+            values.put(cursor.getOrders().get(i).getProperty(), cursor.getValues().get(i));
+
+        Integer quantity = (Integer) values.get("quantity");
+        return new ProductView((Integer) values.get("id"),
+                null,
+                null,
+                null,
+                quantity == null ? 0 : quantity,
+                (LocalDate) values.get("dateCreated"),
+                (LocalDate) values.get("lastModifiedDate"));
+    }
+
+    /**
+     * Creates the index while the writes wait, so no change is missed between reading the products and publishing it
+     *
+     * @return the index, or null if there are already max-sorts indexes
+     */
+    @Nullable
+    private synchronized ConcurrentSkipListSet<ProductView> createIndex(String signature, Sort sort)
+    {
+        ConcurrentSkipListSet<ProductView> index = indexes.get(signature);
+        if (index != null)
+            return index;
+        else if (indexes.size() >= maxSorts)
+            return null;
+
+        index = new ConcurrentSkipListSet<>(comparator(sort));
+        index.addAll(products.values());
+        indexes.put(signature, index);
+
+        LOGGER.info("Created sorted index {}, about {} bytes per product", signature, getBytesPerProduct());
+        return index;
+    }
+
+    private static String signature(Sort sort)
+    {
+        return sort.stream()
+                .map(order -> (order.isAscending() ? "+" : "-") + order.getProperty())
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * The id is the last key, so every product has exactly one place in the index
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<ProductView> comparator(Sort sort)
+    {
+        Comparator<ProductView> comparator = null;
+        for (Sort.Order order : sort) {
+            Function<ProductView, Comparable> key = (Function) SORT_KEYS.get(order.getProperty());
+            Comparator<Comparable> direction = order.isAscending()
+                    ? Comparator.nullsLast(Comparator.<Comparable>naturalOrder())
+                    : Comparator.nullsFirst(Comparator.<Comparable>reverseOrder());
+            Comparator<ProductView> byKey = Comparator.comparing(key, direction);
+
+            comparator = comparator == null ? byKey : comparator.thenComparing(byKey);
+        }
+
+        return comparator.thenComparingInt(ProductView::getId);
+    }
+
+    private static long estimateBytes(ProductView product)
+    {
+        return VIEW_BYTES +
+                stringBytes(product.getName()) +
+                stringBytes(product.getCategory()) +
+                stringBytes(product.getDescription());
+    }
+
+    private static long stringBytes(@Nullable String value)
+    {
+        return value == null ? 0 : STRING_BYTES + value.length();
+    }
+}
@@ -0,0 +1,86 @@
+package com.varna.code.challenge.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 csv handling for the product import and export
+ * Quoted values can contain commas, escaped quotes ("") and line breaks, so a record can span several lines
+ */
+public final class CsvUtils
+{
+    private CsvUtils()
+    {
+    }
+
+    /**
+     * Splits a csv record to values
+     *
+     * @param line the record without the trailing line break, the lines of a multi-line record joined with \n
+     * @return the unquoted values
+     * @throws IllegalArgumentException if a quoted value is not closed
+     */
+    public static List<String> parseLine(String line) throws IllegalArgumentException
+    {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+
+        if (quoted)
+            throw new IllegalArgumentException("Unclosed quote");
+
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * @param record the lines of a record read so far
+     * @return true if a quoted value is still open, so the record continues on the next line
+     */
+    public static boolean hasUnclosedQuote(String record)
+    {
+        // Escaped quotes come in pairs, so an odd count leaves a value open
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"')
+                quoted = !quoted;
+        }
+
+        return quoted;
+    }
+
+    /**
+     * @param value the value to write, null is written as empty value
+     * @return the value quoted if it contains comma, quote or line break
+     */
+    public static String escape(String value)
+    {
+        if (value == null)
+            return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
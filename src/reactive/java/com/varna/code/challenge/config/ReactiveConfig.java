@@ -0,0 +1,58 @@
+package com.varna.code.challenge.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * The reactive stack - WebFlux on Netty with the products read and written over R2DBC
+ * java -jar challenge.jar --spring.profiles.active=reactive
+ *
+ * Liquibase, the data generator and the reconciliation of the counters still use the JDBC data source,
+ * only the requests are served without blocking (see application-reactive.properties)
+ */
+@Configuration
+@Profile(ReactiveConfig.REACTIVE_PROFILE)
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveConfig
+{
+    public static final String REACTIVE_PROFILE = "reactive";
+
+    /**
+     * The data source auto configuration backs off when there is a R2DBC connection factory,
+     * the JPA repositories and liquibase still need it
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties)
+    {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Tomcat is on the classpath for the servlet stack and would be picked first, the event loop needs Netty
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory()
+    {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * The transaction manager is not a bean, with two transaction managers in the context
+     * the JPA {@link org.springframework.transaction.annotation.Transactional} methods would have to name theirs
+     */
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory)
+    {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+}
@@ -0,0 +1,211 @@
+package com.varna.code.challenge.controllers;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.response.AbstractResponse;
+import com.varna.code.challenge.models.response.FailedResponse;
+import com.varna.code.challenge.models.response.SuccessResponse;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.services.ReactiveProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * The endpoints of {@link ProductController} on WebFlux (reactive profile), with the same responses
+ * Served only by the servlet stack, the reactive one has no such endpoints:
+ * GET /products/all and POST /products/all with a cursor, POST /products/all with a filter,
+ * GET /products/search, GET /products/suggest, POST /products/orders, POST /products/import
+ * and GET /products/export
+ */
+@RestController
+@Profile("reactive")
+public class ReactiveProductController
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveProductController.class);
+
+    private static final String CATEGORIES_VERSION_HEADER = "X-Categories-Version";
+
+    private static final String CATEGORIES_RECONCILED_AT_HEADER = "X-Categories-Reconciled-At";
+
+    private final ReactiveProductService productService;
+
+    private final String categoriesCacheControl;
+
+    @Autowired
+    public ReactiveProductController(ReactiveProductService productService,
+                                     @Value("${products.categories.max-age:5s}") Duration categoriesMaxAge,
+                                     @Value("${products.categories.stale-while-revalidate:30s}")
+                                             Duration categoriesStaleWhileRevalidate)
+    {
+        this.productService = productService;
+        this.categoriesCacheControl = CacheControl.maxAge(categoriesMaxAge)
+                .staleWhileRevalidate(categoriesStaleWhileRevalidate)
+                .getHeaderValue();
+    }
+
+    /**
+     * @see ProductController#addNewProduct(ProductBinding)
+     */
+    @PostMapping("/products/new")
+    public Mono<ResponseEntity<AbstractResponse>> addNewProduct(@RequestBody ProductBinding productBindingModel)
+    {
+        return respond(productService.addProduct(productBindingModel),
+                "adding product",
+                HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @see ProductController#getProduct(int)
+     */
+    @GetMapping("/product/{id}")
+    public Mono<ResponseEntity<AbstractResponse>> getProduct(@PathVariable(name = "id") int productId)
+    {
+        return respond(productService.getProduct(productId), "reading product", HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * @see ProductController#deleteProduct(int)
+     */
+    @DeleteMapping("/delete/{id}")
+    public Mono<ResponseEntity<AbstractResponse>> deleteProduct(@PathVariable(name = "id") int productId)
+    {
+        return respond(productService.deleteProduct(productId).thenReturn("Successfully deleted the product"),
+                "deleting product",
+                HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * @see ProductController#updateProduct(int, EditProductBinding)
+     */
+    @PutMapping("/update/{id}")
+    public Mono<ResponseEntity<AbstractResponse>> updateProduct(@PathVariable(name = "id") int productId,
+                                                                @RequestBody EditProductBinding editProductModel)
+    {
+        return respond(productService.updateProduct(productId, editProductModel),
+                "updating product",
+                HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * @see ProductController#getAllCategories(org.springframework.web.context.request.ServletWebRequest)
+     */
+    @GetMapping("/categories")
+    public Mono<ResponseEntity<AbstractResponse>> getAllCategories(ServerWebExchange exchange)
+    {
+        exchange.getResponse().getHeaders().set(HttpHeaders.CACHE_CONTROL, categoriesCacheControl);
+        if (exchange.checkNotModified(productService.getCountersTag()))
+            return Mono.empty();
+
+        CategoriesSnapshot categories = productService.getCategories();
+        return Mono.just(ResponseEntity.ok()
+                .header(CATEGORIES_VERSION_HEADER, String.valueOf(categories.getVersion()))
+                .header(CATEGORIES_RECONCILED_AT_HEADER, categories.getReconciledAt().toString())
+                .body(new SuccessResponse(categories.getCategories())));
+    }
+
+    /**
+     * Paging and sorting by single field, by page number only
+     *
+     * @see ProductController#getAllProducts
+     */
+    @GetMapping("/products")
+    public Mono<ResponseEntity<AbstractResponse>> getAllProducts(@RequestParam int page,
+                                                                 @RequestParam int pageSize,
+                                                                 @RequestParam(required = false) String orderBy,
+                                                                 @RequestParam(required = false) String direction,
+                                                                 ServerWebExchange exchange)
+    {
+        // Checked before reading anything, a page of unchanged products is the same page
+        if (exchange.checkNotModified(productService.getProductsTag()))
+            return Mono.empty();
+
+        return respond(productService.getProducts(page, pageSize, orderBy, direction),
+                "getting product",
+                HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * @see ProductController#getProductsCount(org.springframework.web.context.request.ServletWebRequest)
+     */
+    @GetMapping("/products/count")
+    public Mono<ResponseEntity<AbstractResponse>> getProductsCount(ServerWebExchange exchange)
+    {
+        if (exchange.checkNotModified(productService.getCountersTag()))
+            return Mono.empty();
+
+        return Mono.just(ResponseEntity.ok(new SuccessResponse(productService.getProductCount())));
+    }
+
+    /**
+     * Get all products by page number
+     *
+     * @see ProductController#getAllByPage
+     */
+    @GetMapping("/products/all")
+    public Mono<ResponseEntity<AbstractResponse>> getAllByPage(@RequestParam int offset,
+                                                               @RequestParam int limit,
+                                                               ServerWebExchange exchange)
+    {
+        if (exchange.checkNotModified(productService.getProductsTag()))
+            return Mono.empty();
+
+        return respond(productService.getAllByPage(offset, limit), "getting product", HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Paging with sorting by many properties, by page number only
+     *
+     * @see ProductController#getAllByPageWithSort(PageableAndSortable)
+     */
+    @PostMapping("/products/all")
+    public Mono<ResponseEntity<AbstractResponse>> getAllByPageWithSort(
+            @RequestBody PageableAndSortable pageableAndSortable)
+    {
+        return respond(productService.getAllByPage(pageableAndSortable), "getting product", HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * @see ProductController#orderProducts(int, int)
+     */
+    @PostMapping("/product/{id}/order/{amount}")
+    public Mono<ResponseEntity<AbstractResponse>> orderProducts(@PathVariable int id, @PathVariable int amount)
+    {
+        return respond(productService.orderProduct(amount, id).thenReturn("Successfully Ordered product"),
+                "ordering product with id: " + id + ", amount: " + amount,
+                HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Wraps the result in the response envelope, the errors of the service are returned with their message
+     *
+     * @param result           the result of the service
+     * @param action           what was done, for the log of the unexpected errors
+     * @param unexpectedStatus the status of the unexpected errors, the same as in {@link ProductController}
+     */
+    private Mono<ResponseEntity<AbstractResponse>> respond(Mono<?> result, String action, HttpStatus unexpectedStatus)
+    {
+        return result
+                .map(body -> ResponseEntity.ok((AbstractResponse) new SuccessResponse(body)))
+                .onErrorResume(e -> e instanceof ProductException || e instanceof IllegalArgumentException,
+                        e -> Mono.just(ResponseEntity.badRequest().body(new FailedResponse(e.getMessage()))))
+                .onErrorResume(e -> {
+                    LOGGER.error("Unexpected server error while {} message: {}", action, e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(unexpectedStatus)
+                            .body(new FailedResponse("Unexpected error occurred")));
+                });
+    }
+}
@@ -0,0 +1,273 @@
+package com.varna.code.challenge.repositories;
+
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Non blocking access to the products table over R2DBC, used by the reactive stack (reactive profile)
+ * Same statements as {@link ProductRepositoryImpl}, the callers run the multi statement methods
+ * in a reactive transaction (see ReactiveConfig)
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveProductRepository
+{
+    /**
+     * The sortable properties of {@link Product} and their columns,
+     * the order by clause is built from them so only known columns reach the statement
+     */
+    private static final Map<String, String> COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "category", "category",
+            "description", "description",
+            "quantity", "quantity",
+            "dateCreated", "created_date",
+            "lastModifiedDate", "last_modified_date");
+
+    private static final String SELECT_BY_ID = "select * from products where id = :id";
+
+    private static final String SELECT_ID_BY_NAME = "select id from products where name = :name";
+
+    private static final String SELECT_BY_NAME = "select * from products where name = :name";
+
+    private static final String SELECT_PAGE = "select * from products order by %s limit :limit offset :offset";
+
+    private static final String DECREASE_QUANTITY =
+            "update products set quantity = quantity - :amount where id = :id and quantity >= :amount";
+
+    private static final String DELETE_BY_ID = "delete from products where id = :id";
+
+    private static final String UPDATE_PRODUCT =
+            "update products set name = :name, category = :category, description = :description, " +
+                    "last_modified_date = :lastModifiedDate where id = :id";
+
+    private static final String UPSERT_BY_NAME =
+            "insert into products (name, category, description, quantity, created_date, last_modified_date) " +
+                    "values (:name, :category, :description, :quantity, :dateCreated, :lastModifiedDate) " +
+                    "on conflict (name) do update set quantity = products.quantity + excluded.quantity, " +
+                    "last_modified_date = excluded.last_modified_date";
+
+    private static final String MERGE_BY_NAME =
+            "merge into products p using (select cast(:name as varchar) name, cast(:category as varchar) category, " +
+                    "cast(:description as varchar) description, cast(:quantity as int) quantity, " +
+                    "cast(:dateCreated as date) created_date, cast(:lastModifiedDate as date) last_modified_date) s " +
+                    "on p.name = s.name " +
+                    "when matched then update set quantity = p.quantity + s.quantity, " +
+                    "last_modified_date = s.last_modified_date " +
+                    "when not matched then insert (name, category, description, quantity, created_date, last_modified_date) " +
+                    "values (s.name, s.category, s.description, s.quantity, s.created_date, s.last_modified_date)";
+
+    private final DatabaseClient databaseClient;
+
+    private final boolean postgres;
+
+    @Autowired
+    public ReactiveProductRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory)
+    {
+        this.databaseClient = databaseClient;
+        // Vendor specific statements are only used where the standard ones need another round trip
+        this.postgres = "PostgreSQL".equals(connectionFactory.getMetadata().getName());
+    }
+
+    /**
+     * @param productId the id of the product
+     * @return the product, or empty if there is no such product
+     */
+    public Mono<Product> findById(int productId)
+    {
+        return databaseClient.execute(SELECT_BY_ID)
+                .bind("id", productId)
+                .map(ReactiveProductRepository::mapProduct)
+                .one();
+    }
+
+    /**
+     * @param name the name of the product
+     * @return true if there is a product with this name
+     */
+    public Mono<Boolean> existsByName(String name)
+    {
+        return databaseClient.execute(SELECT_ID_BY_NAME)
+                .bind("name", name)
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * @param page the page, sorted by the properties of {@link Product} and always by id as last key
+     * @return the products on the page
+     * @throws IllegalArgumentException if there is no such property to sort
+     */
+    public Flux<ProductView> findPage(PageRequest page) throws IllegalArgumentException
+    {
+        String orderBy = page.getSort().stream()
+                .map(order -> column(order.getProperty()) + (order.isAscending() ? " asc" : " desc"))
+                .collect(Collectors.joining(", "));
+        // The same page has to hold the same products, the id makes the order total
+        orderBy = orderBy.isEmpty() ? "id" : orderBy + ", id";
+
+        return databaseClient.execute(String.format(SELECT_PAGE, orderBy))
+                .bind("limit", page.getPageSize())
+                .bind("offset", page.getOffset())
+                .map(row -> new ProductView(mapProduct(row)))
+                .all();
+    }
+
+    /**
+     * Inserts the product, or increases the quantity of the product with the same name
+     * The product is filled with the row as it is after the statement
+     *
+     * @param product the product to insert
+     * @return true if the product was inserted, false if the quantity of an existing product was increased
+     */
+    public Mono<Boolean> upsertByName(Product product)
+    {
+        if (postgres) {
+            // xmax is 0 only for rows inserted by this statement, updated rows carry the id of the updating transaction
+            return bindProduct(databaseClient.execute(UPSERT_BY_NAME + " returning *, (xmax = 0) as inserted"), product)
+                    .map(row -> Boolean.TRUE.equals(copyInto(product, row).get("inserted", Boolean.class)))
+                    .one();
+        }
+
+        // Other databases (H2 in tests) have no RETURNING, check and read the row in the same transaction
+        return existsByName(product.getName())
+                .flatMap(exists -> bindProduct(databaseClient.execute(MERGE_BY_NAME), product)
+                        .fetch().rowsUpdated()
+                        .then(databaseClient.execute(SELECT_BY_NAME)
+                                .bind("name", product.getName())
+                                .map(row -> copyInto(product, row))
+                                .one())
+                        .map(row -> !exists));
+    }
+
+    /**
+     * Writes the name, category, description and modified date of the product
+     *
+     * @param product the changed product
+     * @return the amount of updated rows
+     */
+    public Mono<Integer> update(Product product)
+    {
+        return bindNullable(databaseClient.execute(UPDATE_PRODUCT)
+                .bind("id", product.getId())
+                .bind("name", product.getName())
+                .bind("category", product.getCategory())
+                .bind("lastModifiedDate", product.getLastModifiedDate()), "description", product.getDescription())
+                .fetch().rowsUpdated();
+    }
+
+    /**
+     * Decreases the quantity only if there is enough of it, in a single statement
+     *
+     * @return the product after the order, or empty if there is no such product or not enough quantity
+     */
+    public Mono<Product> decreaseQuantity(int productId, int amount)
+    {
+        DatabaseClient.GenericExecuteSpec decrease = databaseClient
+                .execute(DECREASE_QUANTITY + (postgres ? " returning *" : ""))
+                .bind("id", productId)
+                .bind("amount", amount);
+
+        if (postgres)
+            return decrease.map(ReactiveProductRepository::mapProduct).one();
+
+        // Other databases (H2 in tests) have no RETURNING, read the row in the same transaction
+        return decrease.fetch().rowsUpdated()
+                .filter(updated -> updated > 0)
+                .flatMap(updated -> findById(productId));
+    }
+
+    /**
+     * Deletes the product and returns it as it was before the delete
+     *
+     * @return the deleted product, or empty if there is no such product
+     */
+    public Mono<Product> deleteByIdReturning(int productId)
+    {
+        if (postgres) {
+            return databaseClient.execute(DELETE_BY_ID + " returning *")
+                    .bind("id", productId)
+                    .map(ReactiveProductRepository::mapProduct)
+                    .one();
+        }
+
+        return databaseClient.execute(SELECT_BY_ID + " for update")
+                .bind("id", productId)
+                .map(ReactiveProductRepository::mapProduct)
+                .one()
+                .flatMap(product -> databaseClient.execute(DELETE_BY_ID)
+                        .bind("id", productId)
+                        .fetch().rowsUpdated()
+                        .thenReturn(product));
+    }
+
+    private static String column(String property) throws IllegalArgumentException
+    {
+        String column = COLUMNS.get(property);
+        if (column == null)
+            throw new IllegalArgumentException("No such property to sort " + property);
+
+        return column;
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindProduct(DatabaseClient.GenericExecuteSpec statement,
+                                                                 Product product)
+    {
+        return bindNullable(statement
+                .bind("name", product.getName())
+                .bind("category", product.getCategory())
+                .bind("quantity", product.getQuantity())
+                .bind("dateCreated", product.getDateCreated())
+                .bind("lastModifiedDate", product.getLastModifiedDate()), "description", product.getDescription());
+    }
+
+    /**
+     * R2DBC needs the type of null values, only the description is nullable
+     */
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec statement,
+                                                                  String name,
+                                                                  String value)
+    {
+        return value == null ? statement.bindNull(name, String.class) : statement.bind(name, value);
+    }
+
+    private static Product mapProduct(Row row)
+    {
+        Product product = new Product();
+        copyInto(product, row);
+        return product;
+    }
+
+    /**
+     * Sets all fields of the product from the row
+     *
+     * @return the row, for reading extra columns
+     */
+    private static Row copyInto(Product product, Row row)
+    {
+        // The id is bigint in the table, the drivers return it as long
+        product.setId(row.get("id", Number.class).intValue());
+        product.setName(row.get("name", String.class));
+        product.setCategory(row.get("category", String.class));
+        product.setDescription(row.get("description", String.class));
+        product.setQuantity(row.get("quantity", Integer.class));
+        product.setDateCreated(row.get("created_date", LocalDate.class));
+        product.setLastModifiedDate(row.get("last_modified_date", LocalDate.class));
+        return row;
+    }
+}
@@ -0,0 +1,89 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.ProductByPage;
+import com.varna.code.challenge.models.view.ProductView;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The operations of {@link ProductService} for the reactive stack (reactive profile)
+ * The products are read and written over R2DBC without blocking, the counters and tags are served from memory
+ * The errors are signalled as in {@link ProductService}, through the returned Mono
+ */
+public interface ReactiveProductService
+{
+    /**
+     * @see ProductService#addProduct(ProductBinding)
+     */
+    Mono<ProductView> addProduct(ProductBinding productToAdd);
+
+    /**
+     * @return the product, or ProductException if there is no such product
+     */
+    Mono<ProductView> getProduct(int productId);
+
+    /**
+     * @return empty Mono after the product is deleted, or ProductException if there is no such product
+     */
+    Mono<Void> deleteProduct(int productId);
+
+    /**
+     * @see ProductService#updateProduct(int, EditProductBinding)
+     */
+    Mono<ProductView> updateProduct(int productId, EditProductBinding productToEdit);
+
+    /**
+     * @return the products for the page and sort and the total amount of products,
+     * or IllegalArgumentException with the same messages as {@link ProductService#getProducts}
+     */
+    Mono<ProductByPage> getProducts(int pageNumber,
+                                    int pageSize,
+                                    @Nullable String orderBy,
+                                    @Nullable String orderDirection);
+
+    /**
+     * @return the products for the page, or ProductException if the page number or items per page are invalid
+     */
+    Mono<List<ProductView>> getAllByPage(int pageNumber, int itemsPerPage);
+
+    /**
+     * Sorted by every property of the model, by page number only
+     *
+     * @return the products for the page, or ProductException with the same messages as
+     * {@link ProductService#getAllByPage(PageableAndSortable)}, or if the model has a cursor or filter
+     */
+    Mono<List<ProductView>> getAllByPage(PageableAndSortable pageableAndSortable);
+
+    /**
+     * @see ProductService#orderProduct(int, int)
+     */
+    Mono<ProductView> orderProduct(int amount, int productId);
+
+    /**
+     * Served from memory
+     *
+     * @return the amount of all products
+     */
+    long getProductCount();
+
+    /**
+     * @see ProductService#getCategories()
+     */
+    CategoriesSnapshot getCategories();
+
+    /**
+     * @see ProductService#getProductsTag()
+     */
+    String getProductsTag();
+
+    /**
+     * @see ProductService#getCountersTag()
+     */
+    String getCountersTag();
+}
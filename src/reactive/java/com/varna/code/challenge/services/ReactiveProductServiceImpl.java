@@ -0,0 +1,265 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.binding.SortOrder;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.ProductByPage;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.repositories.ReactiveProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The events are published after the reactive transaction completed, there is no transaction bound to the thread
+ * so the transactional listeners (counters, caches, indexes) receive them right away
+ */
+@Service
+@Profile("reactive")
+public class ReactiveProductServiceImpl implements ReactiveProductService
+{
+    private final ReactiveProductRepository productRepository;
+
+    private final ProductCounters productCounters;
+
+    private final CatalogVersion catalogVersion;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public ReactiveProductServiceImpl(ReactiveProductRepository productRepository,
+                                      ProductCounters productCounters,
+                                      CatalogVersion catalogVersion,
+                                      TransactionalOperator transactionalOperator,
+                                      ApplicationEventPublisher eventPublisher)
+    {
+        this.productRepository = productRepository;
+        this.productCounters = productCounters;
+        this.catalogVersion = catalogVersion;
+        this.transactionalOperator = transactionalOperator;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public Mono<ProductView> addProduct(ProductBinding productToAdd)
+    {
+        if (productToAdd.getName() == null || productToAdd.getCategory() == null ||
+                productToAdd.getName().isBlank() || productToAdd.getCategory().isBlank())
+            return Mono.error(new ProductException("Invalid product passed, you need name and category"));
+
+        Product product = new Product(productToAdd);
+        return transactionalOperator.transactional(productRepository.upsertByName(product))
+                .onErrorMap(DataIntegrityViolationException.class, invalidValues -> new ProductException(
+                        "You inserted too long values, name and category cannot exceed 16 symbols"))
+                .map(inserted -> {
+                    if (inserted) {
+                        eventPublisher.publishEvent(ProductEvent.created(product));
+                    } else {
+                        ProductView before = new ProductView(product);
+                        before.setQuantity(product.getQuantity() - 1);
+                        eventPublisher.publishEvent(ProductEvent.updated(before, product));
+                    }
+
+                    return new ProductView(product);
+                });
+    }
+
+    @Override
+    public Mono<ProductView> getProduct(int productId)
+    {
+        return productRepository.findById(productId)
+                .map(ProductView::new)
+                .switchIfEmpty(Mono.error(() ->
+                        new ProductException("No such product", ProductException.Reason.NOT_FOUND)));
+    }
+
+    @Override
+    public Mono<Void> deleteProduct(int productId)
+    {
+        return transactionalOperator.transactional(productRepository.deleteByIdReturning(productId))
+                .switchIfEmpty(Mono.error(() ->
+                        new ProductException("No such product", ProductException.Reason.NOT_FOUND)))
+                .doOnNext(product -> eventPublisher.publishEvent(ProductEvent.deleted(product)))
+                .then();
+    }
+
+    @Override
+    public Mono<ProductView> updateProduct(int productId, EditProductBinding productToEdit)
+    {
+        Mono<ProductEvent> update = productRepository.findById(productId)
+                .switchIfEmpty(Mono.error(() -> new ProductException("There is no product with such id",
+                        ProductException.Reason.NOT_FOUND)))
+                .flatMap(product -> {
+                    // Names are unique, renaming to a taken name would otherwise fail as a constraint violation
+                    if (productToEdit.getName() == null || productToEdit.getName().equals(product.getName()))
+                        return Mono.just(product);
+
+                    return productRepository.existsByName(productToEdit.getName())
+                            .flatMap(taken -> taken
+                                    ? Mono.error(new ProductException("There is already a product with such name",
+                                    ProductException.Reason.CONFLICT))
+                                    : Mono.just(product));
+                })
+                .flatMap(product -> {
+                    ProductView before = new ProductView(product);
+                    mapNotNullValues(product, productToEdit);
+                    product.setLastModifiedDate(LocalDate.now());
+
+                    return productRepository.update(product).thenReturn(ProductEvent.updated(before, product));
+                });
+
+        return transactionalOperator.transactional(update)
+                .onErrorMap(DataIntegrityViolationException.class, invalidValues -> new ProductException(
+                        "You inserted too long values, name and category cannot exceed 16 symbols"))
+                .map(event -> {
+                    eventPublisher.publishEvent(event);
+                    return event.getAfter();
+                });
+    }
+
+    @Override
+    public Mono<ProductByPage> getProducts(int pageNumber,
+                                           int pageSize,
+                                           @Nullable String orderBy,
+                                           @Nullable String orderDirection)
+    {
+        if ((orderBy != null && orderDirection == null) ||
+                (orderBy == null && orderDirection != null))
+            return Mono.error(new IllegalArgumentException(
+                    "You must either provide both orderBy and direction, or none"));
+        else if (pageNumber < 0 || pageSize <= 0)
+            return Mono.error(new IllegalArgumentException("Invalid page number or page size"));
+
+        Sort sort = Sort.unsorted();
+        if (orderBy != null) {
+            try {
+                sort = Sort.by(Sort.Direction.valueOf(orderDirection.toUpperCase()), orderBy);
+            } catch (IllegalArgumentException wrongSortOrder) {
+                return Mono.error(new IllegalArgumentException(
+                        "Sort order should be one of ASC or DESC (case insensitive)"));
+            }
+        }
+
+        long totalRecords = productCounters.getTotal();
+        PageRequest page = PageRequest.of(pageNumber, pageSize, sort);
+        return Mono.defer(() -> productRepository.findPage(page).collectList())
+                .map(products -> new ProductByPage(totalRecords, products));
+    }
+
+    @Override
+    public Mono<List<ProductView>> getAllByPage(int pageNumber, int itemsPerPage)
+    {
+        if (pageNumber < 0 || itemsPerPage <= 0)
+            return Mono.error(new ProductException("Page number and items per page should be positive"));
+
+        return productRepository.findPage(PageRequest.of(pageNumber, itemsPerPage)).collectList();
+    }
+
+    @Override
+    public Mono<List<ProductView>> getAllByPage(PageableAndSortable pageableAndSortable)
+    {
+        if (pageableAndSortable.getCursor() != null)
+            return Mono.error(new ProductException("Cursor pagination is served only by the servlet stack"));
+        else if (pageableAndSortable.getFilter() != null && !pageableAndSortable.getFilter().isEmpty())
+            return Mono.error(new ProductException("Filters are served only by the servlet stack"));
+        else if (pageableAndSortable.getPageNumber() < 0 || pageableAndSortable.getItemsPerPage() <= 0)
+            return Mono.error(new ProductException("Page number and items per page should be positive"));
+
+        List<Sort.Order> orders = new ArrayList<>();
+        Map<String, SortOrder> sortedProperties = pageableAndSortable.getSortedProperties();
+        if (sortedProperties != null) {
+            for (Map.Entry<String, SortOrder> property : sortedProperties.entrySet()) {
+                try {
+                    PropertyPath.from(property.getKey(), Product.class);
+                } catch (PropertyReferenceException e) {
+                    return Mono.error(new ProductException("Wrong sort order, no property " + e.getPropertyName()));
+                }
+
+                orders.add(new Sort.Order(Sort.Direction.fromString(property.getValue().name()), property.getKey()));
+            }
+        }
+
+        PageRequest page = PageRequest.of(pageableAndSortable.getPageNumber(),
+                pageableAndSortable.getItemsPerPage(),
+                Sort.by(orders));
+        return Mono.defer(() -> productRepository.findPage(page).collectList());
+    }
+
+    @Override
+    public Mono<ProductView> orderProduct(int amount, int productId)
+    {
+        if (amount <= 0)
+            return Mono.error(new ProductException("Amount should be positive, greater than zero"));
+
+        // Check and decrease the quantity in a single statement, so concurrent orders can not oversell
+        return transactionalOperator.transactional(productRepository.decreaseQuantity(productId, amount))
+                .switchIfEmpty(Mono.defer(() -> productRepository.findById(productId)
+                        // Nothing was updated, only now we need to know why
+                        .flatMap(product -> Mono.<Product>error(new ProductException(
+                                "There isn't that much in stock", ProductException.Reason.OUT_OF_STOCK)))
+                        .switchIfEmpty(Mono.error(() ->
+                                new ProductException("No such product", ProductException.Reason.NOT_FOUND)))))
+                .map(product -> {
+                    ProductView before = new ProductView(product);
+                    before.setQuantity(product.getQuantity() + amount);
+                    eventPublisher.publishEvent(ProductEvent.updated(before, product));
+
+                    return new ProductView(product);
+                });
+    }
+
+    @Override
+    public long getProductCount()
+    {
+        return productCounters.getTotal();
+    }
+
+    @Override
+    public CategoriesSnapshot getCategories()
+    {
+        return productCounters.getCategories();
+    }
+
+    @Override
+    public String getProductsTag()
+    {
+        return catalogVersion.tag(catalogVersion.get());
+    }
+
+    @Override
+    public String getCountersTag()
+    {
+        return catalogVersion.tag(productCounters.getVersion()) + "-c";
+    }
+
+    private void mapNotNullValues(Product p, EditProductBinding pe)
+    {
+        if (pe.getCategory() != null)
+            p.setCategory(pe.getCategory());
+        if (pe.getDescription() != null)
+            p.setDescription(pe.getDescription());
+        if (pe.getName() != null)
+            p.setName(pe.getName());
+    }
+}
@@ -0,0 +1,330 @@
+package com.varna.code.challenge.controllers;
+
+import com.jayway.jsonpath.JsonPath;
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The reactive stack against an in memory H2 database, liquibase creates the table over JDBC
+ * and the requests read and write it over R2DBC
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "products.generator.on-startup=false",
+        "logging.file.name="})
+@ActiveProfiles("reactive")
+public class ReactiveProductControllerTests
+{
+    private static final String ADD_PRODUCT_URL = "/products/new";
+
+    private static final String GET_PRODUCTS_URL = "/products";
+
+    private static final String GET_CATEGORIES_URL = "/categories";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    public void addWithNullProductNameAndCategory_ShouldThrow()
+    {
+        addProduct(new ProductBinding())
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("FAILED")
+                .jsonPath("$.body").isEqualTo("Invalid product passed, you need name and category");
+    }
+
+    @Test
+    public void addWithEmptyProductNameAndCategory_ShouldThrow()
+    {
+        addProduct(new ProductBinding("", "", ""))
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("FAILED")
+                .jsonPath("$.body").isEqualTo("Invalid product passed, you need name and category");
+    }
+
+    @Test
+    public void addWithTooLongName_ShouldThrow()
+    {
+        addProduct(new ProductBinding("category", "name longer than 16", ""))
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("You inserted too long values, name and category cannot exceed 16 symbols");
+    }
+
+    @Test
+    public void addExistingProduct_ShouldIncreaseItsQuantity()
+    {
+        int id = addProduct("Lamp", "lighting");
+
+        addProduct(new ProductBinding("lighting", "Lamp", null))
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("SUCCESS")
+                .jsonPath("$.body.id").isEqualTo(id)
+                .jsonPath("$.body.quantity").isEqualTo(2);
+    }
+
+    @Test
+    public void getMissingProduct_ShouldThrow()
+    {
+        webTestClient.get().uri("/product/{id}", Integer.MAX_VALUE)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("No such product");
+    }
+
+    @Test
+    public void updateProduct_ShouldChangeOnlyTheGivenFields()
+    {
+        int id = addProduct("Desk", "furniture");
+
+        webTestClient.put().uri("/update/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new EditProductBinding(null, null, "oak"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.body.name").isEqualTo("Desk")
+                .jsonPath("$.body.description").isEqualTo("oak");
+
+        webTestClient.get().uri("/product/{id}", id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.body.description").isEqualTo("oak");
+    }
+
+    @Test
+    public void updateToTakenName_ShouldThrow()
+    {
+        addProduct("Sofa", "furniture");
+        int id = addProduct("Couch", "furniture");
+
+        webTestClient.put().uri("/update/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new EditProductBinding("Sofa", null, null))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("There is already a product with such name");
+    }
+
+    @Test
+    public void deleteProduct_ShouldRemoveIt()
+    {
+        int id = addProduct("Stool", "furniture");
+
+        webTestClient.delete().uri("/delete/{id}", id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("Successfully deleted the product");
+
+        webTestClient.delete().uri("/delete/{id}", id)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("No such product");
+    }
+
+    @Test
+    public void orderProduct_ShouldNotOversell()
+    {
+        int id = addProduct("Kettle", "kitchen");
+
+        webTestClient.post().uri("/product/{id}/order/{amount}", id, 1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("Successfully Ordered product");
+
+        webTestClient.post().uri("/product/{id}/order/{amount}", id, 1)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("There isn't that much in stock");
+
+        webTestClient.post().uri("/product/{id}/order/{amount}", Integer.MAX_VALUE, 1)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("No such product");
+    }
+
+    @Test
+    public void getProducts_WithIncorrectPageNumberOrPageSize_ShouldThrow()
+    {
+        getProducts("?page=string not allowed&pageSize=string not allowed").expectStatus().isBadRequest();
+        getProducts("?page=-1&pageSize=20").expectStatus().isBadRequest();
+        getProducts("?page=5&pageSize=0").expectStatus().isBadRequest();
+        getProducts("?page=0&pageSize=-5").expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getProducts_WithCorrectPageNumberAndPageSizeAndSort_ShouldReturn200Ok()
+    {
+        addProduct("Vase", "decor");
+
+        getProducts("?page=0&pageSize=10&orderBy=name&direction=ASC")
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("SUCCESS")
+                .jsonPath("$.body.products").isNotEmpty();
+    }
+
+    @Test
+    public void getProducts_WithCorrectPageNumberAndPageSizeAndIncorrectSort_ShouldReturnBadRequest()
+    {
+        getProducts("?page=1&pageSize=10&direction=ASC")
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("You must either provide both orderBy and direction, or none");
+
+        getProducts("?page=1&pageSize=10&orderBy=price&direction=ASC")
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("No such property to sort price");
+    }
+
+    @Test
+    public void getAllByPageWithSort_ShouldOrderByEveryProperty()
+    {
+        addProduct("Clock", "sorting");
+        addProduct("Bowl", "sorting");
+        addProduct("Bowl", "sorting");
+
+        byte[] body = getAllByPageWithSort(Map.of(
+                "sortedProperties", Map.of("quantity", "DESC"),
+                "pageNumber", 0,
+                "itemsPerPage", 1000))
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+
+        List<Integer> quantities = JsonPath.read(new String(body), "$.body[*].quantity");
+        List<Integer> sorted = new ArrayList<>(quantities);
+        sorted.sort(Comparator.reverseOrder());
+        assertEquals(sorted, quantities);
+    }
+
+    @Test
+    public void getAllByPageWithSort_WithUnknownPropertyOrCursor_ShouldReturnBadRequest()
+    {
+        getAllByPageWithSort(Map.of("sortedProperties", Map.of("price", "ASC"), "pageNumber", 0, "itemsPerPage", 10))
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("Wrong sort order, no property price");
+
+        getAllByPageWithSort(Map.of("cursor", "", "itemsPerPage", 10))
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.body").isEqualTo("Cursor pagination is served only by the servlet stack");
+    }
+
+    @Test
+    public void getProducts_WithCurrentETag_ShouldReturn304()
+    {
+        String eTag = getProducts("?page=0&pageSize=10")
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri(GET_PRODUCTS_URL + "?page=0&pageSize=10")
+                .header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void getCategories_WithCurrentETag_ShouldReturn304()
+    {
+        String eTag = webTestClient.get().uri(GET_CATEGORIES_URL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("X-Categories-Version")
+                .expectHeader().exists("X-Categories-Reconciled-At")
+                .returnResult(String.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri(GET_CATEGORIES_URL)
+                .header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().value("Cache-Control", containsString("stale-while-revalidate="));
+    }
+
+    @Test
+    public void getProductsCount_ShouldCountTheAddedProducts()
+    {
+        long before = countProducts();
+        addProduct("Rug", "decor");
+
+        assertEquals(before + 1, countProducts());
+    }
+
+    private WebTestClient.ResponseSpec addProduct(ProductBinding product)
+    {
+        return webTestClient.post().uri(ADD_PRODUCT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(product)
+                .exchange();
+    }
+
+    /**
+     * @return the id of the added product
+     */
+    private int addProduct(String name, String category)
+    {
+        byte[] body = addProduct(new ProductBinding(category, name, null))
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+
+        return JsonPath.read(new String(body), "$.body.id");
+    }
+
+    private WebTestClient.ResponseSpec getProducts(String query)
+    {
+        return webTestClient.get().uri(GET_PRODUCTS_URL + query).exchange();
+    }
+
+    private WebTestClient.ResponseSpec getAllByPageWithSort(Map<String, Object> pageableAndSortable)
+    {
+        return webTestClient.post().uri("/products/all")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(pageableAndSortable)
+                .exchange();
+    }
+
+    private long countProducts()
+    {
+        byte[] body = webTestClient.get().uri("/products/count")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+
+        return ((Number) JsonPath.read(new String(body), "$.body")).longValue();
+    }
+}
@@ -0,0 +1,179 @@
+package com.varna.code.challenge.config;
+
+import com.varna.code.challenge.exceptions.ServiceBusyException;
+import com.varna.code.challenge.services.OrderBatcher;
+import com.varna.code.challenge.services.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AdmissionAspectTests
+{
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ProductService productService = mock(ProductService.class);
+
+    private final OrderBatcher orderBatcher = mock(OrderBatcher.class);
+
+    private final ProductService admittedProductService;
+
+    public AdmissionAspectTests()
+    {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("orderBatcher", orderBatcher);
+        AdmissionAspect admission = new AdmissionAspect(1, Duration.ofMillis(50),
+                beans.getBeanProvider(OrderBatcher.class));
+        admission.bindTo(meterRegistry);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(productService);
+        proxyFactory.addAspect(admission);
+        admittedProductService = proxyFactory.getProxy();
+    }
+
+    @Test
+    public void callWithoutPermits_ShouldBeRejectedAfterTheTimeout() throws Exception
+    {
+        CountDownLatch admitted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productService.getAllByPage(0, 10)).thenAnswer(a -> {
+            admitted.countDown();
+            release.await();
+            return null;
+        });
+
+        // Holds the only permit until released
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admittedProductService.getAllByPage(0, 10);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        admitted.await(5, TimeUnit.SECONDS);
+
+        try {
+            admittedProductService.getProduct(1);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ServiceBusyException.class));
+            assertEquals("The service is busy, try again later", e.getMessage());
+        }
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, meterRegistry.get(AdmissionAspect.REJECTED_COUNTER).counter().count());
+        // The permit is returned, the next call is admitted
+        admittedProductService.getProduct(1);
+    }
+
+    @Test
+    public void callsServedFromMemory_ShouldNotNeedPermits() throws Exception
+    {
+        CountDownLatch admitted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productService.getAllByPage(0, 10)).thenAnswer(a -> {
+            admitted.countDown();
+            release.await();
+            return null;
+        });
+        when(productService.getProductCount()).thenReturn(5L);
+
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admittedProductService.getAllByPage(0, 10);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        admitted.await(5, TimeUnit.SECONDS);
+
+        assertEquals(5L, admittedProductService.getProductCount());
+        admittedProductService.getCategories();
+        admittedProductService.getProductsTag();
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(0, meterRegistry.get(AdmissionAspect.REJECTED_COUNTER).counter().count());
+    }
+
+    @Test
+    public void singleOrdersWhileBatching_ShouldNotNeedPermits() throws Exception
+    {
+        CountDownLatch admitted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productService.getAllByPage(0, 10)).thenAnswer(a -> {
+            admitted.countDown();
+            release.await();
+            return null;
+        });
+        when(orderBatcher.isRunning()).thenReturn(true);
+
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admittedProductService.getAllByPage(0, 10);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        admitted.await(5, TimeUnit.SECONDS);
+
+        admittedProductService.orderProduct(1, 1);
+
+        // The other calls still need a permit
+        try {
+            admittedProductService.getProduct(1);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ServiceBusyException.class));
+        }
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(1, meterRegistry.get(AdmissionAspect.REJECTED_COUNTER).counter().count());
+    }
+
+    @Test
+    public void singleOrdersWithoutBatching_ShouldNeedPermits() throws Exception
+    {
+        CountDownLatch admitted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productService.getAllByPage(0, 10)).thenAnswer(a -> {
+            admitted.countDown();
+            release.await();
+            return null;
+        });
+        when(orderBatcher.isRunning()).thenReturn(false);
+
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admittedProductService.getAllByPage(0, 10);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        admitted.await(5, TimeUnit.SECONDS);
+
+        try {
+            admittedProductService.orderProduct(1, 1);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ServiceBusyException.class));
+            assertEquals("The service is busy, try again later", e.getMessage());
+        }
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(1, meterRegistry.get(AdmissionAspect.REJECTED_COUNTER).counter().count());
+    }
+}
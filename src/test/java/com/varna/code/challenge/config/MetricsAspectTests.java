@@ -0,0 +1,67 @@
+package com.varna.code.challenge.config;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.services.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetricsAspectTests
+{
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ProductService productService = mock(ProductService.class);
+
+    private final ProductService timedProductService;
+
+    public MetricsAspectTests()
+    {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("meterRegistry", meterRegistry);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(productService);
+        proxyFactory.addAspect(new MetricsAspect(beans.getBeanProvider(MeterRegistry.class)));
+        timedProductService = proxyFactory.getProxy();
+    }
+
+    @Test
+    public void serviceCall_ShouldBeTimedByMethodAndOutcome()
+    {
+        timedProductService.getProductCount();
+        timedProductService.getProductCount();
+
+        assertEquals(2, meterRegistry.get(MetricsAspect.SERVICE_TIMER)
+                .tag("method", "getProductCount")
+                .tag("outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    public void productException_ShouldBeCountedByReason() throws Exception
+    {
+        when(productService.orderProduct(5, 1))
+                .thenThrow(new ProductException("There isn't that much in stock", ProductException.Reason.OUT_OF_STOCK));
+
+        try {
+            timedProductService.orderProduct(5, 1);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+        }
+
+        assertEquals(1, meterRegistry.get(MetricsAspect.ERRORS_COUNTER)
+                .tag("reason", "out_of_stock")
+                .counter().count());
+        assertEquals(1, meterRegistry.get(MetricsAspect.SERVICE_TIMER)
+                .tag("method", "orderProduct")
+                .tag("outcome", "out_of_stock")
+                .timer().count());
+    }
+}
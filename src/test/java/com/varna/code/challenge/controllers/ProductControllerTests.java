@@ -13,17 +13,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -36,9 +47,20 @@ public class ProductControllerTests
 
     private static final String GET_PRODUCTS_URL = "/products";
 
+    private static final String GET_CATEGORIES_URL = "/categories";
+
+    private static final String EXPORT_PRODUCTS_URL = "/products/export";
+
+    private static final String SEARCH_PRODUCTS_URL = "/products/search";
+
+    private static final String SUGGEST_PRODUCTS_URL = "/products/suggest";
+
     @Autowired
     private MockRequest mockRequest;
 
+    @Autowired
+    private MockMvc mockMvc;
+
     @MockBean
     private ProductRepository productRepository;
 
@@ -52,8 +74,8 @@ public class ProductControllerTests
     public void setup()
     {
         // Return empty page to not have NPE
-        when(productRepository.findAll(any(Pageable.class)))
-                .thenAnswer(arg -> new PageImpl<ProductView>(new ArrayList<>()));
+        when(productRepository.findAllViews(any(Pageable.class)))
+                .thenAnswer(arg -> new ArrayList<ProductView>());
     }
 
 
@@ -96,6 +118,107 @@ public class ProductControllerTests
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void getCategories_ShouldReturnVersionHeaders() throws Exception
+    {
+        mockRequest.performGet(GET_CATEGORIES_URL, Map.of())
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Categories-Version"))
+                .andExpect(header().exists("X-Categories-Reconciled-At"));
+    }
+
+    @Test
+    public void getCategories_WithCurrentETag_ShouldReturn304() throws Exception
+    {
+        String eTag = mockRequest.performGet(GET_CATEGORIES_URL, Map.of())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", containsString("stale-while-revalidate=")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(mockRequest.getRequest(GET_CATEGORIES_URL, Map.of()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(header().string("Cache-Control", containsString("stale-while-revalidate=")))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getProducts_WithCurrentETag_ShouldReturn304() throws Exception
+    {
+        Map<String, Object> page = Map.of("page", 0, "pageSize", 10);
+        String eTag = mockRequest.performGet(GET_PRODUCTS_URL, page)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(mockRequest.getRequest(GET_PRODUCTS_URL, page).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(mockRequest.getRequest(GET_PRODUCTS_URL, page).header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", eTag));
+    }
+
+    @Test
+    public void searchProducts_WithEmptyQuery_ShouldThrow() throws Exception
+    {
+        mockRequest.performGet(SEARCH_PRODUCTS_URL, Map.of("q", ""))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.body", is("Search query should not be empty")));
+    }
+
+    @Test
+    public void searchProducts_ShouldReturn200Ok() throws Exception
+    {
+        mockRequest.performGet(SEARCH_PRODUCTS_URL, Map.of("q", "chair", "category", "furniture"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("SUCCESS")));
+    }
+
+    @Test
+    public void suggestProducts_WithNonPositiveLimit_ShouldThrow() throws Exception
+    {
+        mockRequest.performGet(SUGGEST_PRODUCTS_URL, Map.of("prefix", "ch", "limit", 0))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.body", is("Limit should be positive")));
+    }
+
+    @Test
+    public void exportProducts_WithUnsupportedFormat_ShouldThrow() throws Exception
+    {
+        MvcResult result = mockRequest.performGet(EXPORT_PRODUCTS_URL, Map.of("format", "xml"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.body", is("Unsupported format xml")));
+    }
+
+    @Test
+    public void exportProducts_ShouldStreamTheProducts() throws Exception
+    {
+        doAnswer(a -> {
+            Consumer<Product> action = a.getArgument(2);
+            Product product = new Product();
+            product.setId(1);
+            product.setName("product1");
+            product.setCategory("category");
+            action.accept(product);
+            return null;
+        }).when(productRepository).forEachProduct(isNull(), anyInt(), any());
+
+        MvcResult result = mockRequest.performGet(EXPORT_PRODUCTS_URL, Map.of("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(content().string(startsWith("id,name,category")))
+                .andExpect(content().string(containsString("1,product1,category,,1,")));
+    }
+
     @Test
     public void getProducts_WithIncorrectPageNumberOrPageSize_ShouldThrow() throws Exception
     {
@@ -1,18 +1,39 @@
 package com.varna.code.challenge.repositories;
 
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.binding.ProductCursor;
 import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
 import com.varna.code.challenge.models.view.ProductsByCategory;
+import com.varna.code.challenge.models.view.UpdatedProduct;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 @DataJpaTest
@@ -23,6 +44,9 @@ public class ProductRepositoryTests
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     private static final String categoryOne = "categoryOne";
 
     private static final String categoryTwo = "categoryTwo";
@@ -53,6 +77,357 @@ public class ProductRepositoryTests
 
         assertEquals(2L, mappedByCategory.get(categoryOne));
         assertEquals(3L, mappedByCategory.get(categoryTwo));
+
+        Map<String, Long> quantityByCategory = actualResult.stream()
+                .collect(Collectors.toMap(
+                        ProductsByCategory::getCategory, ProductsByCategory::getQuantityAvailable));
+
+        assertEquals(6L, quantityByCategory.get(categoryOne));
+        assertEquals(3L, quantityByCategory.get(categoryTwo));
+    }
+
+    @Test
+    public void findAllAfter_WalkingAllPages_ShouldReturnEveryProductOnceInOrder()
+    {
+        productRepository.saveAll(createInitialData());
+
+        List<List<Sort.Order>> sorts = List.of(
+                List.of(),
+                List.of(Sort.Order.asc("quantity")),
+                List.of(Sort.Order.desc("quantity"), Sort.Order.asc("category")),
+                List.of(Sort.Order.asc("category"), Sort.Order.desc("name")),
+                List.of(Sort.Order.desc("lastModifiedDate")),
+                List.of(Sort.Order.asc("lastModifiedDate")),
+                List.of(Sort.Order.desc("name")));
+
+        for (List<Sort.Order> sort : sorts) {
+            List<Sort.Order> orders = ProductCursor.withTieBreaker(sort);
+            List<Integer> expectedIds = productRepository.findAllAfter(orders, null, Integer.MAX_VALUE)
+                    .stream().map(Product::getId).collect(Collectors.toList());
+
+            List<Integer> actualIds = new ArrayList<>();
+            ProductCursor cursor = null;
+            List<Product> page;
+            do {
+                page = productRepository.findAllAfter(orders, cursor, 2);
+                page.forEach(p -> actualIds.add(p.getId()));
+                if (!page.isEmpty())
+                    cursor = ProductCursor.decode(ProductCursor.after(page.get(page.size() - 1), orders).encode());
+            } while (!page.isEmpty());
+
+            assertEquals(5, expectedIds.size());
+            assertEquals(expectedIds, actualIds, "Wrong order for sort " + sort);
+        }
+    }
+
+    @Test
+    public void findAllAfter_ShouldPlaceNullsLikeTheIndexAndBreakTiesInTheLastDirection()
+    {
+        List<Product> saved = new ArrayList<>();
+        productRepository.saveAll(createInitialData()).forEach(saved::add);
+
+        List<Sort.Order> byModifiedDesc = ProductCursor.withTieBreaker(List.of(Sort.Order.desc("lastModifiedDate")));
+        List<Sort.Order> byQuantityDesc = ProductCursor.withTieBreaker(List.of(Sort.Order.desc("quantity")));
+        List<Product> modifiedDesc = productRepository.findAllAfter(byModifiedDesc, null, 10);
+        List<Product> quantityDesc = productRepository.findAllAfter(byQuantityDesc, null, 10);
+
+        assertEquals(Sort.Order.desc("id"), byQuantityDesc.get(1));
+        // The null date is first when descending
+        assertEquals(saved.get(3).getId(), modifiedDesc.get(0).getId());
+        assertEquals(saved.get(4).getId(), modifiedDesc.get(4).getId());
+        // The two products with quantity 3 come in descending id order
+        assertEquals(saved.get(1).getId(), quantityDesc.get(0).getId());
+        assertEquals(saved.get(0).getId(), quantityDesc.get(1).getId());
+    }
+
+    @Test
+    public void decreaseQuantity_WithEnoughInStock_ShouldReturnUpdatedProduct()
+    {
+        Product product = productRepository.save(createInitialData().get(0));
+
+        Optional<Product> actualProduct = productRepository.decreaseQuantity(product.getId(), 2);
+
+        assertTrue(actualProduct.isPresent());
+        assertEquals(1, actualProduct.get().getQuantity());
+        assertEquals(product1, actualProduct.get().getName());
+    }
+
+    @Test
+    public void decreaseQuantity_WithoutEnoughInStockOrMissingProduct_ShouldNotUpdate()
+    {
+        Product product = productRepository.save(createInitialData().get(0));
+
+        assertTrue(productRepository.decreaseQuantity(product.getId(), 4).isEmpty());
+        assertTrue(productRepository.decreaseQuantity(product.getId() + 100, 1).isEmpty());
+    }
+
+    @Test
+    public void findAllByIdForUpdateAndDecreaseQuantities_ShouldUpdateInOneBatch()
+    {
+        productRepository.saveAll(createInitialData());
+        List<Product> products = productRepository.findAllAfter(ProductCursor.withTieBreaker(List.of()), null, 2);
+        int firstId = products.get(0).getId();
+        int secondId = products.get(1).getId();
+
+        List<Product> lockedProducts = productRepository.findAllByIdForUpdate(List.of(secondId, firstId, -1));
+        int[] actualUpdated = productRepository.decreaseQuantities(new TreeMap<>(Map.of(firstId, 1, secondId, 4)));
+
+        assertEquals(List.of(firstId, secondId),
+                lockedProducts.stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(1, actualUpdated[0]);
+        assertEquals(0, actualUpdated[1]);
+    }
+
+    @Test
+    public void applyOrders_ShouldApplyOnlyTheOrdersWhichFitInTheQuantity()
+    {
+        Product product = productRepository.save(createInitialData().get(0));
+        int quantity = product.getQuantity();
+
+        int[] actualUpdated = productRepository.applyOrders(List.of(
+                new OrderLineBinding(product.getId(), quantity - 1),
+                new OrderLineBinding(product.getId(), 2),
+                new OrderLineBinding(product.getId(), 1)));
+        entityManager.clear();
+
+        assertEquals(1, actualUpdated[0]);
+        assertEquals(0, actualUpdated[1]);
+        assertEquals(1, actualUpdated[2]);
+        assertEquals(0, productRepository.findById(product.getId()).get().getQuantity());
+    }
+
+    @Test
+    public void increaseQuantities_ShouldUpdateInOneBatchAndReturnTheChangedProducts()
+    {
+        productRepository.saveAll(createInitialData());
+        List<Product> products = productRepository.findAllAfter(ProductCursor.withTieBreaker(List.of()), null, 2);
+        int firstId = products.get(0).getId();
+        int secondId = products.get(1).getId();
+
+        List<Product> actualProducts = productRepository.increaseQuantities(
+                new TreeMap<>(Map.of(firstId, 3, secondId, 1, -1, 5)));
+
+        assertEquals(List.of(firstId, secondId),
+                actualProducts.stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(products.get(0).getQuantity() + 3, actualProducts.get(0).getQuantity());
+        assertEquals(products.get(1).getQuantity() + 1, actualProducts.get(1).getQuantity());
+        assertEquals(LocalDate.now(), actualProducts.get(0).getLastModifiedDate());
+    }
+
+    @Test
+    public void upsertByName_ShouldInsertNewAndIncreaseExisting()
+    {
+        Product first = new Product();
+        first.setName(product1);
+        first.setCategory(categoryOne);
+        Product second = new Product();
+        second.setName(product1);
+        second.setCategory(categoryTwo);
+
+        boolean firstInserted = productRepository.upsertByName(first);
+        boolean secondInserted = productRepository.upsertByName(second);
+
+        assertTrue(firstInserted);
+        assertFalse(secondInserted);
+        assertEquals(first.getId(), second.getId());
+        assertEquals(2, second.getQuantity());
+        assertEquals(categoryOne, second.getCategory());
+        assertEquals(1L, productRepository.count());
+    }
+
+    @Test
+    public void saveWithDuplicateName_ShouldViolateUniqueIndex()
+    {
+        productRepository.saveAll(createInitialData());
+        Product duplicate = new Product();
+        duplicate.setName(product1);
+        duplicate.setCategory(categoryOne);
+
+        try {
+            productRepository.insertAll(List.of(duplicate));
+        } catch (Exception e) {
+            assertThat(e, instanceOf(DataIntegrityViolationException.class));
+        }
+    }
+
+    @Test
+    public void forEachProduct_ShouldReadProductsOfCategoryInIdOrder()
+    {
+        productRepository.saveAll(createInitialData());
+        List<Product> all = new ArrayList<>();
+        List<Product> inCategory = new ArrayList<>();
+
+        productRepository.forEachProduct(null, 2, all::add);
+        productRepository.forEachProduct(categoryTwo, 2, inCategory::add);
+
+        assertEquals(5, all.size());
+        for (int i = 1; i < all.size(); i++)
+            assertTrue(all.get(i - 1).getId() < all.get(i).getId());
+        assertEquals(3, inCategory.size());
+        assertTrue(inCategory.stream().allMatch(p -> categoryTwo.equals(p.getCategory())));
+    }
+
+    @Test
+    public void findAllViews_ShouldReadSortedPageWithoutManagingEntities()
+    {
+        productRepository.saveAll(createInitialData());
+        entityManager.clear();
+
+        List<ProductView> firstPage = productRepository.findAllViews(
+                PageRequest.of(0, 2, Sort.by(Sort.Order.desc("quantity"), Sort.Order.asc("id"))));
+        List<ProductView> lastPage = productRepository.findAllViews(
+                PageRequest.of(2, 2, Sort.by(Sort.Order.desc("quantity"), Sort.Order.asc("id"))));
+
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.get(0).getQuantity() >= firstPage.get(1).getQuantity());
+        assertEquals(1, lastPage.size());
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    public void findAllViewsWithUnknownSortProperty_ShouldThrow()
+    {
+        try {
+            productRepository.findAllViews(PageRequest.of(0, 2, Sort.by("not_existing_field")));
+        } catch (Exception e) {
+            assertThat(e, instanceOf(PropertyReferenceException.class));
+        }
+    }
+
+    @Test
+    public void findAllViewsWithFilter_ShouldReadOnlyMatchingProducts()
+    {
+        productRepository.saveAll(createInitialData());
+
+        List<ProductView> byQuantity = productRepository.findAllViews(
+                Specification.where(ProductSpecifications.inCategories(List.of(categoryOne, categoryTwo)))
+                        .and(ProductSpecifications.quantityBetween(2, null)),
+                PageRequest.of(0, 10, Sort.by(Sort.Order.desc("name"))));
+        List<ProductView> byName = productRepository.findAllViews(
+                Specification.where(ProductSpecifications.inCategories(List.of(categoryTwo)))
+                        .and(ProductSpecifications.quantityBetween(1, 1))
+                        .and(ProductSpecifications.nameContains("UCT5")),
+                PageRequest.of(0, 10));
+        List<ProductView> byLiteralWildcard = productRepository.findAllViews(
+                ProductSpecifications.nameContains("_"),
+                PageRequest.of(0, 10));
+
+        assertEquals(List.of(product2, product1),
+                byQuantity.stream().map(ProductView::getName).collect(Collectors.toList()));
+        assertEquals(1, byName.size());
+        assertEquals(product5, byName.get(0).getName());
+        assertTrue(byLiteralWildcard.isEmpty());
+    }
+
+    @Test
+    public void findViewById_ShouldReadTheRowNotTheManagedEntity()
+    {
+        Product saved = productRepository.save(createInitialData().get(0));
+        productRepository.decreaseQuantity(saved.getId(), 1);
+
+        Optional<ProductView> view = productRepository.findViewById(saved.getId());
+
+        assertTrue(view.isPresent());
+        assertEquals(saved.getQuantity() - 1, view.get().getQuantity());
+        assertTrue(productRepository.findViewById(saved.getId() + 100).isEmpty());
+    }
+
+    @Test
+    public void deleteByIdReturning_ShouldReturnTheDeletedProduct()
+    {
+        Product saved = productRepository.save(createInitialData().get(0));
+
+        Optional<Product> deleted = productRepository.deleteByIdReturning(saved.getId());
+        Optional<Product> deletedAgain = productRepository.deleteByIdReturning(saved.getId());
+
+        assertTrue(deleted.isPresent());
+        assertEquals(saved.getCategory(), deleted.get().getCategory());
+        assertTrue(deletedAgain.isEmpty());
+        assertEquals(0L, productRepository.count());
+    }
+
+    @Test
+    public void updateNotNull_ShouldChangeOnlyTheGivenColumns()
+    {
+        Product product = createInitialData().get(0);
+        product.setDescription("description");
+        product.setLastModifiedDate(LocalDate.of(2020, 10, 15));
+        Product saved = productRepository.save(product);
+
+        Optional<UpdatedProduct> updated = productRepository.updateNotNull(saved.getId(),
+                new EditProductBinding(null, categoryTwo, null));
+        entityManager.clear();
+
+        assertTrue(updated.isPresent());
+        assertEquals(categoryOne, updated.get().getBefore().getCategory());
+        assertEquals(LocalDate.of(2020, 10, 15), updated.get().getBefore().getDateModified());
+        assertEquals(categoryTwo, updated.get().getAfter().getCategory());
+        assertEquals(product1, updated.get().getAfter().getName());
+        assertEquals(LocalDate.now(), updated.get().getAfter().getLastModifiedDate());
+        Product stored = productRepository.findById(saved.getId()).get();
+        assertEquals(categoryTwo, stored.getCategory());
+        assertEquals("description", stored.getDescription());
+        assertEquals(saved.getQuantity(), stored.getQuantity());
+    }
+
+    @Test
+    public void updateNotNull_WithMissingProductOrTakenName_ShouldNotUpdate()
+    {
+        productRepository.saveAll(createInitialData());
+        int productId = productRepository.findByName(product1).getId();
+
+        assertTrue(productRepository.updateNotNull(-1, new EditProductBinding(product5, null, null)).isEmpty());
+        try {
+            productRepository.updateNotNull(productId, new EditProductBinding(product2, null, null));
+        } catch (Exception e) {
+            assertThat(e, instanceOf(DuplicateKeyException.class));
+        }
+    }
+
+    @Test
+    public void insertAll_ShouldInsertEveryProduct()
+    {
+        int actualInserted = productRepository.insertAll(createInitialData());
+
+        assertEquals(5, actualInserted);
+        assertEquals(5L, productRepository.count());
+    }
+
+    @Test
+    public void mergeByName_ShouldIncreaseExistingAndInsertNew()
+    {
+        productRepository.saveAll(createInitialData());
+        Product existing = new Product();
+        existing.setName(product1);
+        existing.setCategory(categoryTwo);
+        existing.setQuantity(5);
+        Product inserted = new Product();
+        inserted.setName("product6");
+        inserted.setCategory(categoryTwo);
+        inserted.setQuantity(2);
+
+        int actualInserted = productRepository.mergeByName(List.of(existing, inserted));
+
+        assertEquals(1, actualInserted);
+        assertEquals(6L, productRepository.count());
+        List<ProductsByCategory> categories = productRepository.getProductsByCategory();
+        Map<String, Long> quantityByCategory = categories.stream()
+                .collect(Collectors.toMap(
+                        ProductsByCategory::getCategory, ProductsByCategory::getQuantityAvailable));
+        assertEquals(11L, quantityByCategory.get(categoryOne));
+        assertEquals(5L, quantityByCategory.get(categoryTwo));
+    }
+
+    @Test
+    public void searchWithoutFullTextSearch_ShouldThrow()
+    {
+        assertFalse(productRepository.hasFullTextSearch());
+
+        try {
+            productRepository.search(product1, null, PageRequest.of(0, 10));
+        } catch (Exception e) {
+            assertThat(e, instanceOf(UnsupportedOperationException.class));
+        }
     }
 
     private List<Product> createInitialData()
@@ -78,6 +453,14 @@ public class ProductRepositoryTests
         p5.setName(product5);
         p5.setCategory(categoryTwo);
 
+        // Duplicated and null sort keys to check the cursor tie breaking
+        p1.setQuantity(3);
+        p2.setQuantity(3);
+        p3.setQuantity(1);
+        p4.setName(null);
+        p4.setLastModifiedDate(null);
+        p5.setLastModifiedDate(LocalDate.now().minusDays(1));
+
         return List.of(p1, p2, p3, p4, p5);
     }
 }
@@ -1,22 +1,72 @@
 package com.varna.code.challenge.services;
 
+import com.varna.code.challenge.models.events.ProductEvent;
 import com.varna.code.challenge.repositories.ProductRepository;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.context.annotation.ComponentScan;
 
+import java.time.Duration;
+
 
 @ComponentScan(basePackages = "com.varna.code.challenge")
 public abstract class AbstractProductServiceTests
 {
     protected final ProductService productService;
 
+    protected final ProductCounters productCounters;
+
+    protected final ProductCache productCache;
+
+    protected final PageCache pageCache;
+
+    protected final CatalogVersion catalogVersion;
+
+    protected final SortedProductIndex sortedIndex;
+
+    protected final ProductAddCoalescer addCoalescer;
+
+    protected final InventoryLedger inventoryLedger;
+
+    protected final OrderBatcher orderBatcher;
+
     @Mock
     protected ProductRepository productRepository;
 
+    @Mock
+    protected PlatformTransactionManager transactionManager;
+
     protected AbstractProductServiceTests()
     {
         MockitoAnnotations.initMocks(this);
-        productService = new ProductServiceImpl(productRepository);
+        productCounters = new ProductCounters(productRepository);
+        productCache = new ProductCache(productRepository, 100, Duration.ofMinutes(5));
+        catalogVersion = new CatalogVersion();
+        pageCache = new PageCache(productRepository, catalogVersion, 100, 2);
+        sortedIndex = new SortedProductIndex(productRepository, false, 8, 10000, 100);
+        // There is no transaction in these tests, the listeners get the events right away
+        ApplicationEventPublisher eventPublisher = event -> {
+            productCounters.onProductEvent((ProductEvent) event);
+            productCache.onProductEvent((ProductEvent) event);
+            sortedIndex.onProductEvent((ProductEvent) event);
+            catalogVersion.onProductEvent((ProductEvent) event);
+        };
+        // Not started, the tests which coalesce, hold hot stock or batch orders start them themselves
+        addCoalescer = new ProductAddCoalescer(productRepository, eventPublisher, true, Duration.ofHours(1), 100);
+        inventoryLedger = new InventoryLedger(productRepository, eventPublisher, true, 10, Duration.ofHours(1), 20, 10);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("transactionManager", transactionManager);
+        orderBatcher = new OrderBatcher(productRepository, eventPublisher,
+                beans.getBeanProvider(PlatformTransactionManager.class), true, Duration.ofMillis(50), 8);
+        productService = new ProductServiceImpl(productRepository, productCounters, productCache, pageCache,
+                sortedIndex,
+                catalogVersion,
+                addCoalescer,
+                inventoryLedger,
+                orderBatcher,
+                eventPublisher);
     }
 }
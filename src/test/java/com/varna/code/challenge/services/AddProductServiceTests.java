@@ -5,13 +5,22 @@ import com.varna.code.challenge.models.binding.ProductBinding;
 import com.varna.code.challenge.models.entities.Product;
 import com.varna.code.challenge.models.view.ProductView;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AddProductServiceTests extends AbstractProductServiceTests
@@ -49,15 +58,13 @@ public class AddProductServiceTests extends AbstractProductServiceTests
     public void addWithExistingProductName_ShouldIncreaseQuantityAndDateModified() throws Exception
     {
         final String productName = "product1";
-        when(productRepository.findByName(productName))
+        when(productRepository.upsertByName(any(Product.class)))
                 .thenAnswer(a -> {
-                    Product p = new Product();
-                    p.setName(productName);
-                    p.setLastModifiedDate(LocalDate.now().minusDays(2));
-                    return p;
+                    Product p = a.getArgument(0);
+                    p.setQuantity(2);
+                    p.setLastModifiedDate(LocalDate.now());
+                    return false;
                 });
-        when(productRepository.save(any(Product.class)))
-                .thenAnswer(a -> a.getArgument(0));
 
         ProductBinding model = new ProductBinding("correctCategory", productName, "");
 
@@ -68,4 +75,137 @@ public class AddProductServiceTests extends AbstractProductServiceTests
 
     }
 
+    @Test
+    public void addWithNewProductName_ShouldInsertWithQuantityOne() throws Exception
+    {
+        when(productRepository.upsertByName(any(Product.class)))
+                .thenAnswer(a -> {
+                    Product p = a.getArgument(0);
+                    p.setId(7);
+                    return true;
+                });
+
+        ProductView actualProduct = productService.addProduct(new ProductBinding("category", "product1", ""));
+
+        assertEquals(7, actualProduct.getId());
+        assertEquals(1, actualProduct.getQuantity());
+        assertEquals(1, productCounters.getCount("category"));
+    }
+
+    @Test
+    public void addWithTooLongValues_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "You inserted too long values, name and category cannot exceed 16 symbols";
+        when(productRepository.upsertByName(any(Product.class)))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+
+        try {
+            productService.addProduct(new ProductBinding("category", "a name longer than 16", ""));
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void addExistingProductsWithCoalescing_ShouldWriteOneUpdatePerFlush() throws Exception
+    {
+        when(productRepository.findByName("product1")).thenReturn(existingProduct(5));
+        when(productRepository.increaseQuantities(any())).thenReturn(List.of(existingProduct(8)));
+        addCoalescer.start();
+
+        try {
+            assertEquals(6, productService.addProduct(new ProductBinding("category", "product1", "")).getQuantity());
+            assertEquals(7, productService.addProduct(new ProductBinding("category", "product1", "")).getQuantity());
+            assertEquals(8, productService.addProduct(new ProductBinding("category", "product1", "")).getQuantity());
+            verify(productRepository, never()).upsertByName(any(Product.class));
+
+            addCoalescer.flush();
+
+            verify(productRepository).increaseQuantities(new TreeMap<>(Map.of(3, 3)));
+            // The flush invalidates the cached product, it is read again
+            when(productRepository.findById(3)).thenReturn(Optional.of(existingProduct(8)));
+            assertEquals(8, productCache.findByName("product1").get().getQuantity());
+            assertEquals(3.0, addCoalescer.getCoalescingRatio());
+        } finally {
+            addCoalescer.stop();
+        }
+    }
+
+    @Test
+    public void stopWithPendingAdds_ShouldWriteThem() throws Exception
+    {
+        when(productRepository.findByName("product1")).thenReturn(existingProduct(5));
+        when(productRepository.increaseQuantities(any())).thenReturn(List.of(existingProduct(7)));
+        addCoalescer.start();
+
+        productService.addProduct(new ProductBinding("category", "product1", ""));
+        productService.addProduct(new ProductBinding("category", "product1", ""));
+        addCoalescer.stop();
+
+        verify(productRepository).increaseQuantities(new TreeMap<>(Map.of(3, 2)));
+
+        // Stopped, the adds are written right away
+        when(productRepository.upsertByName(any(Product.class))).thenReturn(false);
+        productService.addProduct(new ProductBinding("category", "product1", ""));
+        verify(productRepository).upsertByName(any(Product.class));
+    }
+
+    @Test
+    public void failedFlush_ShouldKeepTheAddsForTheNextFlush() throws Exception
+    {
+        when(productRepository.findByName("product1")).thenReturn(existingProduct(5));
+        when(productRepository.increaseQuantities(any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenReturn(List.of(existingProduct(8)));
+        addCoalescer.start();
+
+        try {
+            productService.addProduct(new ProductBinding("category", "product1", ""));
+            productService.addProduct(new ProductBinding("category", "product1", ""));
+            addCoalescer.flush();
+            productService.addProduct(new ProductBinding("category", "product1", ""));
+            addCoalescer.flush();
+
+            verify(productRepository).increaseQuantities(new TreeMap<>(Map.of(3, 2)));
+            verify(productRepository).increaseQuantities(new TreeMap<>(Map.of(3, 3)));
+        } finally {
+            addCoalescer.stop();
+        }
+    }
+
+    @Test
+    public void flushOfDeletedProduct_ShouldAddItAgain() throws Exception
+    {
+        when(productRepository.findByName("product1")).thenReturn(existingProduct(5));
+        when(productRepository.increaseQuantities(any())).thenReturn(List.of());
+        when(productRepository.upsertByName(any(Product.class))).thenAnswer(a -> {
+            Product p = a.getArgument(0);
+            p.setId(4);
+            return true;
+        });
+        addCoalescer.start();
+
+        try {
+            productService.addProduct(new ProductBinding("category", "product1", ""));
+            productService.addProduct(new ProductBinding("category", "product1", ""));
+            addCoalescer.flush();
+
+            verify(productRepository).upsertByName(argThat(p -> p.getName().equals("product1") && p.getQuantity() == 2));
+            Product added = existingProduct(2);
+            added.setId(4);
+            when(productRepository.findById(4)).thenReturn(Optional.of(added));
+            assertEquals(4, productCache.findByName("product1").get().getId());
+        } finally {
+            addCoalescer.stop();
+        }
+    }
+
+    private static Product existingProduct(int quantity)
+    {
+        Product product = new Product(new ProductBinding("category", "product1", ""));
+        product.setId(3);
+        product.setQuantity(quantity);
+        return product;
+    }
 }
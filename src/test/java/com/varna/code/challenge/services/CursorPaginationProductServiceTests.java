@@ -0,0 +1,138 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.ProductCursor;
+import com.varna.code.challenge.models.binding.SortOrder;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductByPage;
+import com.varna.code.challenge.models.view.ProductsByCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+public class CursorPaginationProductServiceTests extends AbstractProductServiceTests
+{
+    @Test
+    public void getAllAfterWithMoreProductsThanPageSize_ShouldReturnNextCursor() throws Exception
+    {
+        Product first = new Product();
+        first.setId(1);
+        Product second = new Product();
+        second.setId(2);
+        when(productRepository.findAllAfter(anyList(), any(), anyInt())).thenReturn(List.of(first, second));
+
+        ProductsByCursor actualPage = productService.getAllAfter("", 1);
+
+        assertEquals(1, actualPage.getProducts().size());
+        assertNotNull(actualPage.getNextCursor());
+        assertEquals(List.of(1), ProductCursor.decode(actualPage.getNextCursor()).getValues());
+    }
+
+    @Test
+    public void getAllAfterOnLastPage_ShouldNotReturnNextCursor() throws Exception
+    {
+        when(productRepository.findAllAfter(anyList(), any(), anyInt())).thenReturn(List.of(new Product()));
+
+        ProductsByCursor actualPage = productService.getAllAfter("", 10);
+
+        assertEquals(1, actualPage.getProducts().size());
+        assertNull(actualPage.getNextCursor());
+    }
+
+    @Test
+    public void getAllAfterWithInvalidCursor_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "Invalid cursor";
+
+        try {
+            productService.getAllAfter("not a cursor", 10);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void getAllAfterWithCursorValueOfOtherType_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "Invalid cursor";
+        List<Sort.Order> byQuantity = ProductCursor.withTieBreaker(List.of(Sort.Order.asc("quantity")));
+        String textQuantityCursor = ProductCursor.after(byQuantity, List.of("many", 1)).encode();
+        String missingIdCursor = ProductCursor.after(byQuantity, Arrays.asList(1, null)).encode();
+
+        for (String cursor : List.of(textQuantityCursor, missingIdCursor)) {
+            PageableAndSortable pageableAndSortable = new PageableAndSortable();
+            pageableAndSortable.setItemsPerPage(10);
+            pageableAndSortable.setSortedProperties(Map.of("quantity", SortOrder.ASC));
+            pageableAndSortable.setCursor(cursor);
+
+            ProductException thrown = assertThrows(ProductException.class,
+                    () -> productService.getAllAfter(pageableAndSortable));
+            assertEquals(expectedExceptionMessage, thrown.getMessage());
+        }
+    }
+
+    @Test
+    public void getAllAfterWithCursorForDifferentSort_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "The cursor was created for a different sort";
+        Product product = new Product();
+        product.setName("product");
+        String nameCursor = ProductCursor.after(product,
+                ProductCursor.withTieBreaker(List.of(Sort.Order.asc("name")))).encode();
+
+        PageableAndSortable pageableAndSortable = new PageableAndSortable();
+        pageableAndSortable.setItemsPerPage(10);
+        pageableAndSortable.setSortedProperties(Map.of("quantity", SortOrder.DESC));
+        pageableAndSortable.setCursor(nameCursor);
+
+        try {
+            productService.getAllAfter(pageableAndSortable);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void getProductsAfterWithIncorrectProductFieldToSort_ShouldThrow() throws Exception
+    {
+        final String incorrectSortField = "not_existing_field";
+        final String expectedExceptionMessage = "No such property to sort " + incorrectSortField;
+
+        try {
+            productService.getProductsAfter("", 10, incorrectSortField, "asc");
+        } catch (Exception e) {
+            assertThat(e, instanceOf(IllegalArgumentException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void getProductsAfter_ShouldReturnTotalRecords() throws Exception
+    {
+        when(productRepository.findAllAfter(anyList(), any(), anyInt())).thenReturn(List.of(new Product()));
+        when(productRepository.count()).thenReturn(5L);
+        productCounters.reconcile();
+
+        ProductByPage actualPage = productService.getProductsAfter(null, 10, "name", "desc");
+
+        assertEquals(5L, actualPage.getTotalRecords());
+        assertEquals(1, actualPage.getProducts().size());
+    }
+}
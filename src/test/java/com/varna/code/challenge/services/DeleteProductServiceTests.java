@@ -3,6 +3,8 @@ package com.varna.code.challenge.services;
 import com.varna.code.challenge.exceptions.ProductException;
 import org.junit.jupiter.api.Test;
 
+import java.util.Optional;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -15,7 +17,7 @@ public class DeleteProductServiceTests extends AbstractProductServiceTests
     public void deleteWithInvalidId_ShouldThrow() throws Exception
     {
         final int invalidProductId = 122;
-        when(productRepository.existsById(invalidProductId)).thenReturn(false);
+        when(productRepository.deleteByIdReturning(invalidProductId)).thenReturn(Optional.empty());
 
         final String expectedExceptionMessage = "No such product";
 
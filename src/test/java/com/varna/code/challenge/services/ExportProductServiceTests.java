@@ -0,0 +1,106 @@
+package com.varna.code.challenge.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.varna.code.challenge.models.binding.DataFormat;
+import com.varna.code.challenge.models.entities.Product;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+public class ExportProductServiceTests extends AbstractProductServiceTests
+{
+    private static final LocalDate DATE = LocalDate.of(2020, 9, 1);
+
+    private final ProductExportService productExportService = new ProductExportServiceImpl(productRepository,
+            new ObjectMapper().registerModule(new JavaTimeModule()).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS),
+            100);
+
+    @Test
+    public void exportCsv_ShouldWriteHeaderAndEscapedValues() throws Exception
+    {
+        mockProducts("category");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long actualWritten = productExportService.exportProducts("category", DataFormat.CSV, output);
+
+        assertEquals(2, actualWritten);
+        assertEquals("id,name,category,description,quantity,dateCreated,dateModified\n" +
+                        "1,product1,category,\"with, comma\",3,2020-09-01,2020-09-01\n" +
+                        "2,product2,category,,3,2020-09-01,2020-09-01\n",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void exportNdjson_ShouldWriteProductViewPerLine() throws Exception
+    {
+        mockProducts(null);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        productExportService.exportProducts(null, DataFormat.NDJSON, output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"id\":1,\"name\":\"product1\",\"category\":\"category\"," +
+                "\"description\":\"with, comma\",\"quantity\":3,\"dateCreated\":\"2020-09-01\",\"dateModified\":\"2020-09-01\"}", lines[0]);
+    }
+
+    @Test
+    public void exportToFailingStream_ShouldThrowTheIOException() throws Exception
+    {
+        mockProducts(null);
+        OutputStream failing = new OutputStream()
+        {
+            @Override
+            public void write(int b) throws IOException
+            {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        try {
+            // The output is buffered, the error comes when the buffer is flushed
+            productExportService.exportProducts(null, DataFormat.NDJSON, failing);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(IOException.class));
+            assertEquals("Broken pipe", e.getMessage());
+        }
+    }
+
+    private void mockProducts(String category)
+    {
+        doAnswer(a -> {
+            Consumer<Product> action = a.getArgument(2);
+            action.accept(product(1, "with, comma"));
+            action.accept(product(2, null));
+            return null;
+        }).when(productRepository).forEachProduct(eq(category), anyInt(), any());
+    }
+
+    private Product product(int id, String description)
+    {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("product" + id);
+        product.setCategory("category");
+        product.setDescription(description);
+        product.setQuantity(3);
+        product.setDateCreated(DATE);
+        product.setLastModifiedDate(DATE);
+        return product;
+    }
+}
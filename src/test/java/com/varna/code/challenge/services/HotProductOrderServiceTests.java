@@ -0,0 +1,350 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.response.ResponseStatus;
+import com.varna.code.challenge.models.view.OrderLineView;
+import com.varna.code.challenge.models.view.ProductView;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HotProductOrderServiceTests extends AbstractProductServiceTests
+{
+    private static final int PRODUCT_ID = 7;
+
+    /**
+     * The quantity in the products table, changed only by conditional decreases like the real statement
+     */
+    private final AtomicInteger rowQuantity = new AtomicInteger();
+
+    @Test
+    public void orderHotProduct_ShouldSellFromMemoryAndTakeStockInChunks() throws Exception
+    {
+        mockRow(100);
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            for (int i = 0; i < 20; i++) {
+                ProductView actualProduct = productService.orderProduct(1, PRODUCT_ID);
+                assertEquals(100 - 10 - 1 - i, actualProduct.getQuantity());
+            }
+
+            // Ten orders before it was hot, then one chunk of 20 for the next twenty orders
+            verify(productRepository, times(10)).decreaseQuantity(PRODUCT_ID, 1);
+            verify(productRepository).decreaseQuantity(PRODUCT_ID, 20);
+            assertEquals(70, rowQuantity.get());
+        } finally {
+            inventoryLedger.stop();
+        }
+    }
+
+    @Test
+    public void hotProductNotOrderedAnymore_ShouldGiveItsStockBack() throws Exception
+    {
+        mockRow(100);
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            productService.orderProduct(5, PRODUCT_ID);
+            assertEquals(15, inventoryLedger.getAvailable(PRODUCT_ID));
+
+            inventoryLedger.evaluate();
+
+            assertEquals(0, inventoryLedger.getAvailable(PRODUCT_ID));
+            assertEquals(100 - 10 - 5, rowQuantity.get());
+            assertEquals(85, productCache.findById(PRODUCT_ID).get().getQuantity());
+        } finally {
+            inventoryLedger.stop();
+        }
+    }
+
+    @Test
+    public void hotProductStockNotGivenBack_ShouldBeGivenBackWithTheNextRelease() throws Exception
+    {
+        mockRow(100);
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            productService.orderProduct(5, PRODUCT_ID);
+            doThrow(new IllegalStateException("connection refused"))
+                    .doAnswer(this::increaseRow)
+                    .when(productRepository).increaseQuantities(any());
+
+            inventoryLedger.evaluate();
+
+            // Cooled down, the stock waits for the next release
+            assertEquals(0, inventoryLedger.getAvailable(PRODUCT_ID));
+            assertEquals(100 - 10 - 20, rowQuantity.get());
+
+            inventoryLedger.evaluate();
+
+            assertEquals(100 - 10 - 5, rowQuantity.get());
+            assertEquals(85, productCache.findById(PRODUCT_ID).get().getQuantity());
+        } finally {
+            inventoryLedger.stop();
+        }
+
+        verify(productRepository, times(2)).increaseQuantities(any());
+    }
+
+    @Test
+    public void orderHotProductInCart_ShouldOrderTheHeldStockToo() throws Exception
+    {
+        mockRow(100);
+        when(productRepository.findAllByIdForUpdate(anyCollection()))
+                .thenAnswer(a -> List.of(row(rowQuantity.get())));
+        when(productRepository.decreaseQuantities(any())).thenAnswer(a -> {
+            SortedMap<Integer, Integer> amountByProductId = a.getArgument(0);
+            rowQuantity.addAndGet(-amountByProductId.get(PRODUCT_ID));
+            return new int[]{1};
+        });
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            productService.orderProduct(5, PRODUCT_ID);
+
+            // The row has 70, the ledger holds the other 15
+            List<OrderLineView> actualLines =
+                    productService.orderProducts(List.of(new OrderLineBinding(PRODUCT_ID, 80)));
+
+            assertEquals(ResponseStatus.SUCCESS, actualLines.get(0).getStatus());
+            assertEquals(5, actualLines.get(0).getQuantityLeft());
+            assertEquals(0, inventoryLedger.getAvailable(PRODUCT_ID));
+            assertEquals(5, rowQuantity.get());
+
+            // The held stock is written to the row the cart already locked, the locks keep the id order
+            InOrder inOrder = inOrder(productRepository);
+            inOrder.verify(productRepository).findAllByIdForUpdate(anyCollection());
+            inOrder.verify(productRepository).increaseQuantities(any());
+            inOrder.verify(productRepository).decreaseQuantities(any());
+        } finally {
+            inventoryLedger.stop();
+        }
+    }
+
+    @Test
+    public void hotProductReleasedInRolledBackTransaction_ShouldBeGivenBackWithTheNextRelease() throws Exception
+    {
+        mockRow(100);
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            productService.orderProduct(5, PRODUCT_ID);
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                inventoryLedger.release(List.of(PRODUCT_ID));
+                // The rollback undoes the write of the mocked table too
+                rowQuantity.addAndGet(-15);
+                for (TransactionSynchronization synchronization
+                        : TransactionSynchronizationManager.getSynchronizations())
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            inventoryLedger.evaluate();
+
+            assertEquals(100 - 10 - 5, rowQuantity.get());
+        } finally {
+            inventoryLedger.stop();
+        }
+    }
+
+    @Test
+    public void orderHotProduct_WithoutNeededAmount_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "There isn't that much in stock";
+        mockRow(15);
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            productService.orderProduct(6, PRODUCT_ID);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        } finally {
+            inventoryLedger.stop();
+        }
+
+        // Neither a whole chunk nor the missing amount was left, the row keeps its stock
+        assertEquals(5, rowQuantity.get());
+    }
+
+    @Test
+    public void orderHotProduct_DeletedFromTheTable_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "No such product";
+        mockRow(100);
+        inventoryLedger.start();
+
+        try {
+            makeHot();
+            // Deleted by another instance, the ledger did not see the event
+            when(productRepository.decreaseQuantity(eq(PRODUCT_ID), anyInt())).thenReturn(Optional.empty());
+            when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.empty());
+
+            productService.orderProduct(1, PRODUCT_ID);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        } finally {
+            inventoryLedger.stop();
+        }
+    }
+
+    @Test
+    public void missingProductOrderedOften_ShouldNotBecomeHot() throws Exception
+    {
+        final int missingProductId = 8;
+        when(productRepository.decreaseQuantity(eq(missingProductId), anyInt())).thenReturn(Optional.empty());
+        inventoryLedger.start();
+
+        try {
+            for (int i = 0; i < 10; i++) {
+                try {
+                    productService.orderProduct(1, missingProductId);
+                } catch (Exception e) {
+                    assertThat(e, instanceOf(ProductException.class));
+                    assertEquals("No such product", e.getMessage());
+                }
+            }
+            inventoryLedger.evaluate();
+
+            try {
+                productService.orderProduct(1, missingProductId);
+            } catch (Exception e) {
+                assertEquals("No such product", e.getMessage());
+            }
+        } finally {
+            inventoryLedger.stop();
+        }
+
+        // Still ordered from the table, the ledger never tried to take a chunk
+        verify(productRepository, times(11)).decreaseQuantity(missingProductId, 1);
+        verify(productRepository, never()).decreaseQuantity(missingProductId, 20);
+    }
+
+    @Test
+    public void concurrentOrdersOfHotProduct_ShouldNotOversell() throws Exception
+    {
+        final int stock = 1000;
+        mockRow(stock);
+        inventoryLedger.start();
+
+        LongAdder sold = new LongAdder();
+        LongAdder outOfStock = new LongAdder();
+        ExecutorService clients = Executors.newFixedThreadPool(32);
+        try {
+            makeHot();
+            sold.add(10);
+
+            List<Future<?>> orders = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                orders.add(clients.submit(() -> {
+                    for (int order = 0; order < 100; order++) {
+                        int amount = ThreadLocalRandom.current().nextInt(1, 4);
+                        try {
+                            productService.orderProduct(amount, PRODUCT_ID);
+                            sold.add(amount);
+                        } catch (ProductException e) {
+                            assertEquals("There isn't that much in stock", e.getMessage());
+                            outOfStock.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> order : orders)
+                order.get(30, TimeUnit.SECONDS);
+        } finally {
+            clients.shutdown();
+            inventoryLedger.stop();
+        }
+
+        // Everything was sold except less than one order, the unsold stock is back in the row
+        assertTrue(outOfStock.sum() > 0);
+        assertEquals(stock, sold.sum() + rowQuantity.get());
+        assertTrue(rowQuantity.get() < 3);
+    }
+
+    private void makeHot() throws Exception
+    {
+        for (int i = 0; i < 10; i++)
+            productService.orderProduct(1, PRODUCT_ID);
+
+        inventoryLedger.evaluate();
+    }
+
+    private void mockRow(int quantity)
+    {
+        rowQuantity.set(quantity);
+        when(productRepository.decreaseQuantity(eq(PRODUCT_ID), anyInt())).thenAnswer(a -> {
+            int amount = a.getArgument(1);
+            int current;
+            do {
+                current = rowQuantity.get();
+                if (current < amount)
+                    return Optional.empty();
+            } while (!rowQuantity.compareAndSet(current, current - amount));
+
+            return Optional.of(row(current - amount));
+        });
+        when(productRepository.increaseQuantities(any())).thenAnswer(this::increaseRow);
+        when(productRepository.findById(PRODUCT_ID)).thenAnswer(a -> Optional.of(row(rowQuantity.get())));
+    }
+
+    private List<Product> increaseRow(InvocationOnMock invocation)
+    {
+        SortedMap<Integer, Integer> amountByProductId = invocation.getArgument(0);
+        int released = rowQuantity.addAndGet(amountByProductId.get(PRODUCT_ID));
+        return List.of(row(released));
+    }
+
+    private static Product row(int quantity)
+    {
+        Product product = new Product(new ProductBinding("category", "product7", ""));
+        product.setId(PRODUCT_ID);
+        product.setQuantity(quantity);
+        return product;
+    }
+}
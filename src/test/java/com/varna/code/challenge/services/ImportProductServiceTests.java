@@ -0,0 +1,138 @@
+package com.varna.code.challenge.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.DataFormat;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ImportReport;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+public class ImportProductServiceTests extends AbstractProductServiceTests
+{
+    private final List<Object> publishedEvents = new ArrayList<>();
+
+    private final ProductImportService productImportService =
+            new ProductImportServiceImpl(productRepository, new ObjectMapper(), publishedEvents::add, 2, 10);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importNdjson_ShouldMergeRowsWithSameNameAndWriteInBatches() throws Exception
+    {
+        List<List<Product>> batches = new ArrayList<>();
+        when(productRepository.mergeByName(anyCollection())).thenAnswer(invocation -> {
+            batches.add(new ArrayList<>((Collection<Product>) invocation.getArgument(0)));
+            return batches.get(batches.size() - 1).size();
+        });
+
+        ImportReport actualReport = productImportService.importProducts(stream(
+                "{\"name\":\"product1\",\"category\":\"category\"}\n" +
+                        "{\"name\":\"product1\",\"category\":\"category\"}\n" +
+                        "\n" +
+                        "{\"name\":\"product2\",\"category\":\"category\",\"description\":\"text\"}\n"),
+                DataFormat.NDJSON);
+
+        Product mergedProduct = batches.get(0).get(0);
+        assertEquals(2, batches.size());
+        assertEquals("product1", mergedProduct.getName());
+        assertEquals(2, mergedProduct.getQuantity());
+        assertEquals(3, actualReport.getRowsRead());
+        assertEquals(2, actualReport.getInserted());
+        assertEquals(0, actualReport.getFailed());
+        assertEquals(1, publishedEvents.size());
+        assertThat(publishedEvents.get(0), instanceOf(ProductsBulkChangedEvent.class));
+    }
+
+    @Test
+    public void importCsvWithInvalidRows_ShouldReportThemAndImportTheRest() throws Exception
+    {
+        when(productRepository.mergeByName(anyCollection())).thenReturn(0);
+
+        ImportReport actualReport = productImportService.importProducts(stream(
+                "category,name,description\n" +
+                        "laptops,\"Laptop, 15\"\"\",\"quoted, description\"\n" +
+                        "laptops,,no name\n" +
+                        "laptops,too many,values,here\n" +
+                        "laptops,a name longer than 16,\n"),
+                DataFormat.CSV);
+
+        assertEquals(4, actualReport.getRowsRead());
+        assertEquals(1, actualReport.getUpdated());
+        assertEquals(3, actualReport.getFailed());
+        assertEquals(3, actualReport.getErrors().get(0).getRow());
+        assertEquals("Invalid product passed, you need name and category", actualReport.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importExportedCsvWithLineBreaksInDescription_ShouldReadTheRecordAcrossLines() throws Exception
+    {
+        List<Product> written = new ArrayList<>();
+        when(productRepository.mergeByName(anyCollection())).thenAnswer(invocation -> {
+            written.addAll((Collection<Product>) invocation.getArgument(0));
+            return 0;
+        });
+
+        ImportReport actualReport = productImportService.importProducts(stream(
+                "id,name,category,description,quantity,dateCreated,dateModified\n" +
+                        "1,product1,category,\"first line\n\nthird, \"\"quoted\"\"\",5,2020-01-01,2020-01-02\n" +
+                        "2,product2,category,,7,2020-01-01,\n" +
+                        "3,product3,category,\"not closed\n"),
+                DataFormat.CSV);
+
+        assertEquals(3, actualReport.getRowsRead());
+        assertEquals(2, written.size());
+        assertEquals("first line\n\nthird, \"quoted\"", written.get(0).getDescription());
+        assertEquals("product2", written.get(1).getName());
+        assertEquals(1, actualReport.getFailed());
+        assertEquals(6, actualReport.getErrors().get(0).getRow());
+        assertEquals("Unclosed quote", actualReport.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void importNdjsonWithNullRow_ShouldReportItAndImportTheRest() throws Exception
+    {
+        when(productRepository.mergeByName(anyCollection())).thenReturn(1);
+
+        ImportReport actualReport = productImportService.importProducts(stream(
+                "null\n" +
+                        "{\"name\":\"product1\",\"category\":\"category\"}\n"),
+                DataFormat.NDJSON);
+
+        assertEquals(2, actualReport.getRowsRead());
+        assertEquals(1, actualReport.getInserted());
+        assertEquals(1, actualReport.getFailed());
+        assertEquals(1, actualReport.getErrors().get(0).getRow());
+        assertEquals("Invalid product passed, you need name and category", actualReport.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void importCsvWithoutHeader_ShouldThrow()
+    {
+        final String expectedExceptionMessage = "The csv header should contain name and category columns";
+
+        ProductException e = assertThrows(ProductException.class,
+                () -> productImportService.importProducts(stream("laptops,product1\n"), DataFormat.CSV));
+
+        assertEquals(expectedExceptionMessage, e.getMessage());
+    }
+
+    private InputStream stream(String content)
+    {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,184 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.view.ProductView;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderBatchingServiceTests extends AbstractProductServiceTests
+{
+    /**
+     * The quantities in the products table by product id
+     */
+    private final Map<Integer, Integer> rows = new ConcurrentHashMap<>();
+
+    @Test
+    public void concurrentOrders_ShouldBeCommittedTogetherWithTheirOwnResults() throws Exception
+    {
+        mockRows(Map.of(1, 5));
+        orderBatcher.start();
+
+        List<Object> results;
+        try {
+            results = orderConcurrently(List.of(1, 1, 1, 1, 1, 1, 1, 1));
+        } finally {
+            orderBatcher.stop();
+        }
+
+        Set<Integer> quantitiesAfter = results.stream()
+                .filter(result -> result instanceof ProductView)
+                .map(result -> ((ProductView) result).getQuantity())
+                .collect(Collectors.toSet());
+        List<String> failures = results.stream()
+                .filter(result -> result instanceof ProductException)
+                .map(result -> ((ProductException) result).getMessage())
+                .collect(Collectors.toList());
+
+        // Each successful order sees the quantity right after itself
+        assertEquals(Set.of(4, 3, 2, 1, 0), quantitiesAfter);
+        assertEquals(List.of("There isn't that much in stock", "There isn't that much in stock",
+                "There isn't that much in stock"), failures);
+        assertEquals(0, rows.get(1));
+        assertEquals(0, productCache.findById(1).get().getQuantity());
+        verify(productRepository, atMost(2)).applyOrders(anyList());
+        verify(productRepository, never()).decreaseQuantity(anyInt(), anyInt());
+    }
+
+    @Test
+    public void ordersOfManyProducts_ShouldBeAppliedInProductIdOrder() throws Exception
+    {
+        mockRows(Map.of(1, 10, 2, 10, 3, 10));
+        orderBatcher.start();
+
+        try {
+            orderConcurrently(List.of(3, 1, 2, 3, 1, 2));
+        } finally {
+            orderBatcher.stop();
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<OrderLineBinding>> batches = ArgumentCaptor.forClass(List.class);
+        verify(productRepository, atMost(6)).applyOrders(batches.capture());
+        for (List<OrderLineBinding> batch : batches.getAllValues()) {
+            List<Integer> productIds = batch.stream().map(OrderLineBinding::getProductId).collect(Collectors.toList());
+            assertEquals(productIds.stream().sorted().collect(Collectors.toList()), productIds);
+        }
+
+        assertEquals(Map.of(1, 8, 2, 8, 3, 8), rows);
+    }
+
+    @Test
+    public void failedBatch_ShouldFailItsOrders() throws Exception
+    {
+        when(productRepository.applyOrders(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        orderBatcher.start();
+
+        try {
+            productService.orderProduct(1, 1);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(DataAccessResourceFailureException.class));
+            assertEquals("connection refused", e.getMessage());
+        } finally {
+            orderBatcher.stop();
+        }
+    }
+
+    /**
+     * Orders one of each product id at the same time
+     *
+     * @return the ordered product or the exception of each order
+     */
+    private List<Object> orderConcurrently(List<Integer> productIds) throws Exception
+    {
+        ExecutorService clients = Executors.newFixedThreadPool(productIds.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Object>> orders = new ArrayList<>();
+            for (int productId : productIds) {
+                orders.add(clients.submit((Callable<Object>) () -> {
+                    start.await();
+                    try {
+                        return productService.orderProduct(1, productId);
+                    } catch (ProductException e) {
+                        return e;
+                    }
+                }));
+            }
+
+            start.countDown();
+            List<Object> results = new ArrayList<>();
+            for (Future<Object> order : orders)
+                results.add(order.get(10, TimeUnit.SECONDS));
+
+            assertTrue(orderBatcher.isRunning());
+            return results;
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * The batch runs its conditional updates one after another like the jdbc batch
+     */
+    private void mockRows(Map<Integer, Integer> quantities)
+    {
+        rows.putAll(quantities);
+        when(productRepository.applyOrders(anyList())).thenAnswer(a -> {
+            List<OrderLineBinding> orders = a.getArgument(0);
+            int[] updatedRows = new int[orders.size()];
+            for (int i = 0; i < orders.size(); i++) {
+                OrderLineBinding order = orders.get(i);
+                int quantity = rows.get(order.getProductId());
+                if (quantity >= order.getAmount()) {
+                    rows.put(order.getProductId(), quantity - order.getAmount());
+                    updatedRows[i] = 1;
+                }
+            }
+            return updatedRows;
+        });
+        when(productRepository.findAllById(anyList())).thenAnswer(a -> {
+            Collection<Integer> productIds = a.getArgument(0);
+            return productIds.stream().map(this::row).collect(Collectors.toList());
+        });
+        when(productRepository.findById(anyInt())).thenAnswer(a -> Optional.of(row(a.getArgument(0))));
+    }
+
+    private Product row(int productId)
+    {
+        Product product = new Product(new ProductBinding("category", "product" + productId, ""));
+        product.setId(productId);
+        product.setQuantity(rows.get(productId));
+        return product;
+    }
+}
@@ -0,0 +1,88 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.OrderLineBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.response.ResponseStatus;
+import com.varna.code.challenge.models.view.OrderLineView;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderManyProductsServiceTests extends AbstractProductServiceTests
+{
+    @Test
+    public void orderProductsWithoutLines_ShouldThrow() throws Exception
+    {
+        final String expectedExceptionMessage = "The order should contain at least one product";
+
+        try {
+            productService.orderProducts(List.of());
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void orderProductsWithOneFailingLine_ShouldNotOrderAnything() throws Exception
+    {
+        when(productRepository.findAllByIdForUpdate(anyCollection()))
+                .thenReturn(List.of(product(1, 10), product(2, 1)));
+
+        List<OrderLineView> actualLines = productService.orderProducts(List.of(
+                new OrderLineBinding(1, 5),
+                new OrderLineBinding(2, 2),
+                new OrderLineBinding(3, 1)));
+
+        assertEquals(3, actualLines.size());
+        assertEquals(ResponseStatus.FAILED, actualLines.get(0).getStatus());
+        assertEquals("There isn't that much in stock", actualLines.get(1).getMessage());
+        assertEquals("No such product", actualLines.get(2).getMessage());
+        assertNull(actualLines.get(0).getQuantityLeft());
+        verify(productRepository, never()).decreaseQuantities(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void orderProductsWithSameProductOnManyLines_ShouldSumTheAmounts() throws Exception
+    {
+        when(productRepository.findAllByIdForUpdate(anyCollection()))
+                .thenReturn(List.of(product(1, 10), product(2, 5)));
+        when(productRepository.decreaseQuantities(any())).thenAnswer(a -> {
+            SortedMap<Integer, Integer> amounts = a.getArgument(0);
+            assertEquals(List.of(1, 2), List.copyOf(amounts.keySet()));
+            assertEquals(7, amounts.get(1));
+            return new int[]{1, 1};
+        });
+
+        List<OrderLineView> actualLines = productService.orderProducts(List.of(
+                new OrderLineBinding(2, 5),
+                new OrderLineBinding(1, 3),
+                new OrderLineBinding(1, 4)));
+
+        assertEquals(ResponseStatus.SUCCESS, actualLines.get(0).getStatus());
+        assertEquals(0, actualLines.get(0).getQuantityLeft());
+        assertEquals(3, actualLines.get(1).getQuantityLeft());
+        assertEquals(3, actualLines.get(2).getQuantityLeft());
+    }
+
+    private Product product(int id, int quantity)
+    {
+        Product product = new Product();
+        product.setId(id);
+        product.setQuantity(quantity);
+        return product;
+    }
+}
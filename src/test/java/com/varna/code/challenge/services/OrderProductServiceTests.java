@@ -10,8 +10,9 @@ import java.util.Optional;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OrderProductServiceTests extends AbstractProductServiceTests
@@ -20,7 +21,6 @@ public class OrderProductServiceTests extends AbstractProductServiceTests
     public void orderProduct_WithNegativeAmount_ShouldThrow() throws Exception
     {
         final String expectedExceptionMessage = "Amount should be positive, greater than zero";
-        when(productRepository.findById(anyInt())).thenReturn(Optional.of(new Product()));
 
         try {
             productService.orderProduct(-1, 9);
@@ -28,12 +28,15 @@ public class OrderProductServiceTests extends AbstractProductServiceTests
             assertThat(e, instanceOf(ProductException.class));
             assertEquals(expectedExceptionMessage, e.getMessage());
         }
+
+        verify(productRepository, never()).decreaseQuantity(anyInt(), anyInt());
     }
 
     @Test
     public void orderProduct_WithNonExistingProduct_ShouldThrow() throws Exception
     {
         final String expectedExceptionMessage = "No such product";
+        when(productRepository.decreaseQuantity(anyInt(), anyInt())).thenReturn(Optional.empty());
         when(productRepository.findById(anyInt())).thenReturn(Optional.empty());
 
         try {
@@ -48,10 +51,8 @@ public class OrderProductServiceTests extends AbstractProductServiceTests
     public void orderProduct_WithProductWithoutNeededAmount_ShouldThrow() throws Exception
     {
         final String expectedExceptionMessage = "There isn't that much in stock";
-        final Product product = new Product();
-        product.setQuantity(10);
-
-        when(productRepository.findById(anyInt())).thenReturn(Optional.of(product));
+        when(productRepository.decreaseQuantity(anyInt(), anyInt())).thenReturn(Optional.empty());
+        when(productRepository.findById(anyInt())).thenReturn(Optional.of(new Product()));
 
         try {
             productService.orderProduct(11, 9);
@@ -62,20 +63,18 @@ public class OrderProductServiceTests extends AbstractProductServiceTests
     }
 
     @Test
-    public void orderProduct_WithCorrectAmount_ShouldDecreaseAmount() throws Exception
+    public void orderProduct_WithCorrectAmount_ShouldReturnDecreasedProduct() throws Exception
     {
         final int initialQuantity = 10;
         final int orderQuantity = 5;
         final Product product = new Product();
-        product.setQuantity(initialQuantity);
-
-        when(productRepository.findById(anyInt())).thenReturn(Optional.of(product));
-        when(productRepository.save(any(Product.class))).thenAnswer(a -> a.getArgument(0));
+        product.setQuantity(initialQuantity - orderQuantity);
 
+        when(productRepository.decreaseQuantity(9, orderQuantity)).thenReturn(Optional.of(product));
 
         ProductView actualProduct = productService.orderProduct(orderQuantity, 9);
 
         assertEquals(initialQuantity - orderQuantity, actualProduct.getQuantity());
+        verify(productRepository, never()).findById(anyInt());
     }
 }
-
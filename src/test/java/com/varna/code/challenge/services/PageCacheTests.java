@@ -0,0 +1,176 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.SortOrder;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PageCacheTests extends AbstractProductServiceTests
+{
+    @Test
+    public void samePage_ShouldReadTheTableOnlyOnce() throws Exception
+    {
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(List.of(view(1, 5)));
+
+        productService.getAllByPage(sortedPage("name", SortOrder.ASC, "quantity", SortOrder.DESC));
+        List<ProductView> actualProducts =
+                productService.getAllByPage(sortedPage("name", SortOrder.ASC, "quantity", SortOrder.DESC));
+
+        assertEquals(1, actualProducts.size());
+        verify(productRepository, times(1)).findAllViews(any(Pageable.class));
+    }
+
+    @Test
+    public void differentSortOrder_ShouldReadTheTableAgain() throws Exception
+    {
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(List.of(view(1, 5)));
+
+        productService.getAllByPage(sortedPage("name", SortOrder.ASC, "quantity", SortOrder.DESC));
+        productService.getAllByPage(sortedPage("quantity", SortOrder.DESC, "name", SortOrder.ASC));
+
+        verify(productRepository, times(2)).findAllViews(any(Pageable.class));
+    }
+
+    @Test
+    public void orderProduct_ShouldMakeThePagesStale() throws Exception
+    {
+        when(productRepository.findAllViews(any(Pageable.class)))
+                .thenReturn(List.of(view(1, 5)))
+                .thenReturn(List.of(view(1, 3)));
+        when(productRepository.findById(anyInt())).thenReturn(Optional.of(product(1, 5)));
+        when(productRepository.decreaseQuantity(1, 2)).thenReturn(Optional.of(product(1, 3)));
+        productService.getAllByPage(0, 10);
+
+        productService.orderProduct(2, 1);
+
+        assertEquals(3, productService.getAllByPage(0, 10).get(0).getQuantity());
+        verify(productRepository, times(2)).findAllViews(any(Pageable.class));
+    }
+
+    @Test
+    public void bulkChange_ShouldMakeThePagesStale() throws Exception
+    {
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(List.of(view(1, 5)));
+        productService.getAllByPage(0, 10);
+
+        catalogVersion.onProductsBulkChanged(new ProductsBulkChangedEvent(10));
+        productService.getAllByPage(0, 10);
+
+        verify(productRepository, times(2)).findAllViews(any(Pageable.class));
+    }
+
+    @Test
+    public void refreshPopularPages_ShouldReadOnlyTheMostRequestedStalePages() throws Exception
+    {
+        // The cache in the tests keeps the 2 most requested pages warm
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(List.of(view(1, 5)));
+        for (int i = 0; i < 3; i++)
+            productService.getAllByPage(0, 10);
+        for (int i = 0; i < 2; i++)
+            productService.getAllByPage(1, 10);
+        productService.getAllByPage(2, 10);
+
+        catalogVersion.onProductsBulkChanged(new ProductsBulkChangedEvent(10));
+        pageCache.refreshPopularPages();
+        productService.getAllByPage(0, 10);
+        productService.getAllByPage(1, 10);
+
+        verify(productRepository, times(2)).findAllViews(PageRequest.of(0, 10, Sort.unsorted()));
+        verify(productRepository, times(2)).findAllViews(PageRequest.of(1, 10, Sort.unsorted()));
+        verify(productRepository, times(1)).findAllViews(PageRequest.of(2, 10, Sort.unsorted()));
+    }
+
+    @Test
+    public void pageWithMoreProductsThanTheBound_ShouldNotBeKept() throws Exception
+    {
+        // The cache in the tests keeps at most 100 products
+        List<ProductView> bigPage = IntStream.rangeClosed(1, 150)
+                .mapToObj(id -> view(id, 5))
+                .collect(Collectors.toList());
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(bigPage);
+
+        assertEquals(150, productService.getAllByPage(0, 150).size());
+        assertEquals(150, productService.getAllByPage(0, 150).size());
+
+        verify(productRepository, times(2)).findAllViews(any(Pageable.class));
+    }
+
+    @Test
+    public void concurrentRequestsOfTheSamePage_ShouldShareOneRead() throws Exception
+    {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productRepository.findAllViews(any(Pageable.class))).thenAnswer(a -> {
+            reading.countDown();
+            release.await();
+            return List.of(view(1, 5));
+        });
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<ProductView>> first = clients.submit(() -> productService.getAllByPage(0, 10));
+            reading.await(5, TimeUnit.SECONDS);
+            Future<List<ProductView>> second = clients.submit(() -> productService.getAllByPage(0, 10));
+
+            release.countDown();
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).size());
+            assertEquals(1, second.get(5, TimeUnit.SECONDS).size());
+        } finally {
+            clients.shutdown();
+        }
+
+        verify(productRepository, times(1)).findAllViews(any(Pageable.class));
+    }
+
+    private PageableAndSortable sortedPage(String first, SortOrder firstOrder, String second, SortOrder secondOrder)
+    {
+        Map<String, SortOrder> sortedProperties = new LinkedHashMap<>();
+        sortedProperties.put(first, firstOrder);
+        sortedProperties.put(second, secondOrder);
+
+        PageableAndSortable page = new PageableAndSortable();
+        page.setPageNumber(0);
+        page.setItemsPerPage(10);
+        page.setSortedProperties(sortedProperties);
+        return page;
+    }
+
+    private ProductView view(int id, int quantity)
+    {
+        return new ProductView(product(id, quantity));
+    }
+
+    private Product product(int id, int quantity)
+    {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("product" + id);
+        product.setCategory("category");
+        product.setQuantity(quantity);
+        return product;
+    }
+}
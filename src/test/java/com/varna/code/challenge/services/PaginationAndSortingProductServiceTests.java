@@ -1,10 +1,15 @@
 package com.varna.code.challenge.services;
 
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.binding.PageableAndSortable;
+import com.varna.code.challenge.models.binding.ProductFilter;
 import com.varna.code.challenge.models.entities.Product;
 import com.varna.code.challenge.models.view.ProductByPage;
+import com.varna.code.challenge.models.view.ProductView;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageImpl;
+import org.mockito.ArgumentMatchers;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,7 +18,10 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -63,7 +71,7 @@ public class PaginationAndSortingProductServiceTests extends AbstractProductServ
         final String incorrectSortField = "not_existing_field";
         final String expectedExceptionMessage = "No such property to sort " + incorrectSortField;
 
-        when(productRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()));
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(new ArrayList<>());
 
         try {
             productService.getProducts(1, 11, incorrectSortField, "asc");
@@ -78,7 +86,7 @@ public class PaginationAndSortingProductServiceTests extends AbstractProductServ
     {
         final String expectedExceptionMessage = "Sort order should be one of ASC or DESC (case insensitive)";
 
-        when(productRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()));
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(new ArrayList<>());
 
         try {
             productService.getProducts(1, 11, "name", "as");
@@ -91,7 +99,7 @@ public class PaginationAndSortingProductServiceTests extends AbstractProductServ
     @Test
     public void getAllWithCorrectResponse_ShouldReturnCorrectModel() throws Exception
     {
-        when(productRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()));
+        when(productRepository.findAllViews(any(Pageable.class))).thenReturn(new ArrayList<>());
 
 
         ProductByPage actualReturnValue = productService.getProducts(1, 11, "name", "asc");
@@ -102,12 +110,13 @@ public class PaginationAndSortingProductServiceTests extends AbstractProductServ
     @Test
     public void getAllWithCorrectResponse_ShouldReturnCorrectModelWithCorrectFields() throws Exception
     {
-        List<Product> expectedList = List.of(new Product(), new Product());
+        List<ProductView> expectedList = List.of(new ProductView(), new ProductView());
         long expectedCount = 2L;
-        when(productRepository.findAll(any(Pageable.class)))
-                .thenReturn(new PageImpl<>(expectedList));
+        when(productRepository.findAllViews(any(Pageable.class)))
+                .thenReturn(expectedList);
         when(productRepository.count())
                 .thenReturn(expectedCount);
+        productCounters.reconcile();
 
 
         ProductByPage actualReturnValue = productService.getProducts(1, 11, "name", "asc");
@@ -116,5 +125,56 @@ public class PaginationAndSortingProductServiceTests extends AbstractProductServ
         assertEquals(expectedCount, actualReturnValue.getTotalRecords());
         assertEquals(expectedList.size(), actualReturnValue.getProducts().size());
     }
-}
 
+    @Test
+    public void getAllWithFilter_ShouldReadMatchingProductsFromTheTable() throws Exception
+    {
+        ProductFilter filter = new ProductFilter();
+        filter.setCategories(List.of("category1"));
+        filter.setMinQuantity(1);
+        PageableAndSortable page = new PageableAndSortable();
+        page.setItemsPerPage(10);
+        page.setFilter(filter);
+        when(productRepository.findAllViews(ArgumentMatchers.<Specification<Product>>any(), any(Pageable.class)))
+                .thenReturn(List.of(new ProductView()));
+
+        List<ProductView> actualProducts = productService.getAllByPage(page);
+
+        assertEquals(1, actualProducts.size());
+        verify(productRepository, never()).findAllViews(any(Pageable.class));
+    }
+
+    @Test
+    public void getAllWithInvalidFilterRange_ShouldThrow()
+    {
+        final String expectedExceptionMessage = "Minimum quantity should not be greater than maximum quantity";
+
+        ProductFilter filter = new ProductFilter();
+        filter.setMinQuantity(5);
+        filter.setMaxQuantity(1);
+        PageableAndSortable page = new PageableAndSortable();
+        page.setItemsPerPage(10);
+        page.setFilter(filter);
+
+        ProductException e = assertThrows(ProductException.class, () -> productService.getAllByPage(page));
+
+        assertEquals(expectedExceptionMessage, e.getMessage());
+    }
+
+    @Test
+    public void getAllAfterWithFilter_ShouldThrow()
+    {
+        final String expectedExceptionMessage = "Filters are supported only with page number, not with cursor";
+
+        ProductFilter filter = new ProductFilter();
+        filter.setNameContains("chair");
+        PageableAndSortable page = new PageableAndSortable();
+        page.setItemsPerPage(10);
+        page.setCursor("");
+        page.setFilter(filter);
+
+        ProductException e = assertThrows(ProductException.class, () -> productService.getAllAfter(page));
+
+        assertEquals(expectedExceptionMessage, e.getMessage());
+    }
+}
@@ -0,0 +1,102 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.UpdatedProduct;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProductCacheTests extends AbstractProductServiceTests
+{
+    private static final int PRODUCT_ID = 1;
+
+    @Test
+    public void getProduct_ShouldReadTheTableOnlyOnce() throws Exception
+    {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product("product1", 5)));
+
+        productService.getProduct(PRODUCT_ID);
+        ProductView actualProduct = productService.getProduct(PRODUCT_ID);
+
+        assertEquals("product1", actualProduct.getName());
+        verify(productRepository, times(1)).findById(PRODUCT_ID);
+    }
+
+    @Test
+    public void orderProduct_ShouldInvalidateTheCachedProduct() throws Exception
+    {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product("product1", 5)))
+                .thenReturn(Optional.of(product("product1", 3)));
+        when(productRepository.decreaseQuantity(PRODUCT_ID, 2)).thenReturn(Optional.of(product("product1", 3)));
+        productService.getProduct(PRODUCT_ID);
+
+        productService.orderProduct(2, PRODUCT_ID);
+
+        assertEquals(3, productService.getProduct(PRODUCT_ID).getQuantity());
+        verify(productRepository, times(2)).findById(PRODUCT_ID);
+    }
+
+    @Test
+    public void eventsInReverseCommitOrder_ShouldNotCacheTheOlderProduct() throws Exception
+    {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product("product1", 5)));
+        productService.getProduct(PRODUCT_ID);
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product("product1", 3)));
+
+        // Two orders of one, the listener of the later commit runs first
+        productCache.onProductEvent(ProductEvent.updated(new ProductView(product("product1", 4)), product("product1", 3)));
+        productCache.onProductEvent(ProductEvent.updated(new ProductView(product("product1", 5)), product("product1", 4)));
+
+        assertEquals(3, productService.getProduct(PRODUCT_ID).getQuantity());
+    }
+
+    @Test
+    public void renameProduct_ShouldInvalidateTheOldName() throws Exception
+    {
+        when(productRepository.findByName("product1")).thenReturn(product("product1", 5));
+        when(productRepository.updateNotNull(eq(PRODUCT_ID), any())).thenReturn(Optional.of(
+                new UpdatedProduct(new ProductView(product("product1", 5)), product("renamed", 5))));
+        assertTrue(productCache.findByName("product1").isPresent());
+
+        productService.updateProduct(PRODUCT_ID, new EditProductBinding("renamed", null, null));
+        when(productRepository.findByName("product1")).thenReturn(null);
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product("renamed", 5)));
+
+        assertTrue(productCache.findByName("product1").isEmpty());
+        assertEquals(PRODUCT_ID, productCache.findByName("renamed").orElseThrow().getId());
+    }
+
+    @Test
+    public void bulkChange_ShouldInvalidateEverything() throws Exception
+    {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product("product1", 5)));
+        productService.getProduct(PRODUCT_ID);
+
+        productCache.onProductsBulkChanged(new ProductsBulkChangedEvent(10));
+        productService.getProduct(PRODUCT_ID);
+
+        verify(productRepository, times(2)).findById(PRODUCT_ID);
+    }
+
+    private Product product(String name, int quantity)
+    {
+        Product product = new Product();
+        product.setId(PRODUCT_ID);
+        product.setName(name);
+        product.setCategory("category");
+        product.setQuantity(quantity);
+        return product;
+    }
+}
@@ -0,0 +1,165 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.EditProductBinding;
+import com.varna.code.challenge.models.binding.ProductBinding;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.CategoriesSnapshot;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.ProductsByCategory;
+import com.varna.code.challenge.models.view.UpdatedProduct;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ProductCountersTests extends AbstractProductServiceTests
+{
+    private static final String CATEGORY = "category";
+
+    private static final String OTHER_CATEGORY = "otherCategory";
+
+    @Test
+    public void addNewProduct_ShouldIncreaseTotalAndCategoryCount() throws Exception
+    {
+        when(productRepository.upsertByName(any(Product.class))).thenReturn(true);
+
+        productService.addProduct(new ProductBinding(CATEGORY, "product1", ""));
+        productService.addProduct(new ProductBinding(CATEGORY, "product2", ""));
+
+        assertEquals(2L, productService.getProductCount());
+        assertEquals(2L, productCounters.getCount(CATEGORY));
+    }
+
+    @Test
+    public void deleteProduct_ShouldDecreaseTotalAndCategoryCount() throws Exception
+    {
+        when(productRepository.count()).thenReturn(3L);
+        when(productRepository.getProductsByCategory()).thenReturn(List.of(new ProductsByCategory(CATEGORY, 3L)));
+        when(productRepository.deleteByIdReturning(1)).thenReturn(Optional.of(productInCategory(CATEGORY)));
+        productCounters.reconcile();
+
+        productService.deleteProduct(1);
+
+        assertEquals(2L, productService.getProductCount());
+        assertEquals(2L, productCounters.getCount(CATEGORY));
+    }
+
+    @Test
+    public void updateProductCategory_ShouldMoveCountBetweenCategories() throws Exception
+    {
+        when(productRepository.count()).thenReturn(1L);
+        when(productRepository.getProductsByCategory()).thenReturn(List.of(new ProductsByCategory(CATEGORY, 1L)));
+        when(productRepository.updateNotNull(eq(1), any())).thenReturn(Optional.of(new UpdatedProduct(
+                new ProductView(productInCategory(CATEGORY)), productInCategory(OTHER_CATEGORY))));
+        productCounters.reconcile();
+
+        productService.updateProduct(1, new EditProductBinding(null, OTHER_CATEGORY, null));
+
+        assertEquals(1L, productService.getProductCount());
+        assertEquals(0L, productCounters.getCount(CATEGORY));
+        assertEquals(1L, productCounters.getCount(OTHER_CATEGORY));
+    }
+
+    @Test
+    public void orderProduct_ShouldDecreaseCategoryQuantity() throws Exception
+    {
+        Product product = productInCategory(CATEGORY);
+        product.setQuantity(10);
+        when(productRepository.count()).thenReturn(1L);
+        when(productRepository.getProductsByCategory())
+                .thenReturn(List.of(new ProductsByCategory(CATEGORY, 1L, 10L)));
+        when(productRepository.decreaseQuantity(1, 4)).thenAnswer(a -> {
+            product.setQuantity(product.getQuantity() - 4);
+            return Optional.of(product);
+        });
+        productCounters.reconcile();
+        long versionBeforeOrder = productService.getCategories().getVersion();
+
+        productService.orderProduct(4, 1);
+
+        CategoriesSnapshot categories = productService.getCategories();
+        assertEquals(1, categories.getCategories().size());
+        assertEquals(1L, categories.getCategories().get(0).getProductsAvailable());
+        assertEquals(6L, categories.getCategories().get(0).getQuantityAvailable());
+        assertTrue(categories.getVersion() > versionBeforeOrder);
+    }
+
+    @Test
+    public void getCategories_ShouldNotQueryTheTable() throws Exception
+    {
+        productCounters.reconcile();
+        clearInvocations(productRepository);
+
+        productService.getCategories();
+
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    public void reconcile_ShouldReplaceCountersWithTableCounts() throws Exception
+    {
+        when(productRepository.save(any(Product.class))).thenAnswer(a -> a.getArgument(0));
+        productService.addProduct(new ProductBinding(CATEGORY, "product1", ""));
+
+        when(productRepository.count()).thenReturn(10L);
+        when(productRepository.getProductsByCategory()).thenReturn(List.of(new ProductsByCategory(OTHER_CATEGORY, 10L)));
+        productCounters.reconcile();
+
+        assertEquals(10L, productService.getProductCount());
+        assertEquals(0L, productCounters.getCount(CATEGORY));
+        assertEquals(10L, productCounters.getCount(OTHER_CATEGORY));
+    }
+
+    @Test
+    public void productAddedWhileReconciling_ShouldBeCountedOnce() throws Exception
+    {
+        // The first read misses the product committed during it, the second read sees it
+        when(productRepository.count()).thenAnswer(a -> {
+            productCounters.onProductEvent(ProductEvent.created(productInCategory(CATEGORY)));
+            return 1L;
+        }).thenReturn(2L);
+        when(productRepository.getProductsByCategory()).thenReturn(List.of(new ProductsByCategory(CATEGORY, 1L)))
+                .thenReturn(List.of(new ProductsByCategory(CATEGORY, 2L)));
+
+        productCounters.reconcile();
+
+        assertEquals(2L, productService.getProductCount());
+        assertEquals(2L, productCounters.getCount(CATEGORY));
+    }
+
+    @Test
+    public void productsAddedDuringEveryRead_ShouldBeReplayedOntoTheTableCounts() throws Exception
+    {
+        long[] table = {0};
+        when(productRepository.getProductsByCategory())
+                .thenAnswer(a -> List.of(new ProductsByCategory(CATEGORY, table[0])));
+        when(productRepository.count()).thenAnswer(a -> {
+            // Committed after the table was read
+            table[0]++;
+            productCounters.onProductEvent(ProductEvent.created(productInCategory(CATEGORY)));
+            return table[0] - 1;
+        });
+
+        productCounters.reconcile();
+
+        assertEquals(table[0], productService.getProductCount());
+        assertEquals(table[0], productCounters.getCount(CATEGORY));
+    }
+
+    private Product productInCategory(String category)
+    {
+        Product product = new Product();
+        product.setId(1);
+        product.setCategory(category);
+        return product;
+    }
+}
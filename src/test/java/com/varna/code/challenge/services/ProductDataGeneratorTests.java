@@ -0,0 +1,106 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.config.DataGeneratorProperties;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductsBulkChangedEvent;
+import com.varna.code.challenge.models.view.GenerationReport;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+public class ProductDataGeneratorTests extends AbstractProductServiceTests
+{
+    private final List<Object> publishedEvents = new ArrayList<>();
+
+    private final ProductDataGenerator productDataGenerator =
+            new ProductDataGeneratorImpl(productRepository, publishedEvents::add);
+
+    @Test
+    public void generate_ShouldInsertAllProductsInBatches()
+    {
+        List<Product> inserted = recordInserts();
+        DataGeneratorProperties settings = settings(4);
+
+        GenerationReport actualReport = productDataGenerator.generate(settings);
+
+        assertEquals(1050, actualReport.getProducts());
+        assertEquals(1050, inserted.size());
+        assertEquals(1050, inserted.stream().map(Product::getName).distinct().count());
+        assertEquals(1, publishedEvents.size());
+        assertThat(publishedEvents.get(0), instanceOf(ProductsBulkChangedEvent.class));
+        for (Product product : inserted) {
+            assertThat(product.getQuantity(), lessThanOrEqualTo(settings.getMaxQuantity()));
+            assertThat(product.getDescription().length(), lessThanOrEqualTo(settings.getDescriptionMaxLength()));
+            assertThat(product.getCategory().length(), lessThanOrEqualTo(16));
+        }
+    }
+
+    @Test
+    public void generateWithSameSeed_ShouldGenerateSameProductsWithAnyThreads()
+    {
+        List<Product> singleThreaded = recordInserts();
+        productDataGenerator.generate(settings(1));
+        List<Product> multiThreaded = recordInserts();
+        productDataGenerator.generate(settings(4));
+
+        singleThreaded.sort(Comparator.comparing(Product::getName));
+        multiThreaded.sort(Comparator.comparing(Product::getName));
+        for (int i = 0; i < singleThreaded.size(); i++) {
+            assertEquals(singleThreaded.get(i).getName(), multiThreaded.get(i).getName());
+            assertEquals(singleThreaded.get(i).getCategory(), multiThreaded.get(i).getCategory());
+            assertEquals(singleThreaded.get(i).getQuantity(), multiThreaded.get(i).getQuantity());
+            assertEquals(singleThreaded.get(i).getDescription(), multiThreaded.get(i).getDescription());
+        }
+    }
+
+    @Test
+    public void generateWithSkew_ShouldPutMostProductsInFirstCategories()
+    {
+        List<Product> inserted = recordInserts();
+        DataGeneratorProperties settings = settings(2);
+        settings.setCategories(50);
+        settings.setCategorySkew(1.5);
+
+        productDataGenerator.generate(settings);
+
+        Map<String, Long> countByCategory = inserted.stream()
+                .collect(Collectors.groupingBy(Product::getCategory, Collectors.counting()));
+        assertThat(countByCategory.get("Category1"), greaterThan(countByCategory.getOrDefault("Category50", 0L) * 10));
+    }
+
+    private DataGeneratorProperties settings(int threads)
+    {
+        DataGeneratorProperties settings = new DataGeneratorProperties();
+        settings.setProducts(1050);
+        settings.setBatchSize(100);
+        settings.setThreads(threads);
+        return settings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Product> recordInserts()
+    {
+        List<Product> inserted = new ArrayList<>();
+        when(productRepository.insertAll(anyCollection())).thenAnswer(invocation -> {
+            Collection<Product> batch = invocation.getArgument(0);
+            synchronized (inserted) {
+                inserted.addAll(batch);
+            }
+            return batch.size();
+        });
+        return inserted;
+    }
+}
@@ -0,0 +1,129 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class SearchProductServiceTests extends AbstractProductServiceTests
+{
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex(productRepository, 100);
+
+    private final ProductSearchService productSearchService =
+            new ProductSearchServiceImpl(productRepository, searchIndex, new ProductNameTrie(productRepository, 100, 10));
+
+    @BeforeEach
+    public void setup()
+    {
+        List<Product> products = List.of(
+                product(1, "Red chair", "category1", "wooden chair"),
+                product(2, "Table", "category1", "a red wooden table"),
+                product(3, "Red lamp", "category2", null),
+                product(4, "Blue chair", "category2", "soft chair, not red"));
+        doAnswer(a -> {
+            Consumer<Product> action = a.getArgument(2);
+            products.forEach(action);
+            return null;
+        }).when(productRepository).forEachProduct(isNull(), anyInt(), any());
+        when(productRepository.hasFullTextSearch()).thenReturn(false);
+
+        searchIndex.onApplicationReady();
+    }
+
+    @Test
+    public void searchWithEmptyQuery_ShouldThrow()
+    {
+        final String expectedExceptionMessage = "Search query should not be empty";
+
+        try {
+            productSearchService.searchProducts(" ", null, 0, 10);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void search_ShouldRankNameMatchesFirst() throws Exception
+    {
+        List<Integer> actualIds = ids(productSearchService.searchProducts("RED", null, 0, 10));
+
+        assertEquals(4, actualIds.size());
+        assertTrue(actualIds.subList(0, 2).containsAll(List.of(1, 3)));
+    }
+
+    @Test
+    public void search_ShouldMatchEveryWord() throws Exception
+    {
+        assertEquals(List.of(1, 4), ids(productSearchService.searchProducts("chair red", null, 0, 10)));
+        assertEquals(List.of(), ids(productSearchService.searchProducts("chair missing", null, 0, 10)));
+    }
+
+    @Test
+    public void search_ShouldFilterByCategoryAndPage() throws Exception
+    {
+        assertEquals(List.of(3, 4), ids(productSearchService.searchProducts("red", "category2", 0, 10)));
+        assertEquals(List.of(4), ids(productSearchService.searchProducts("red", "category2", 1, 1)));
+    }
+
+    @Test
+    public void productEvents_ShouldUpdateTheIndex() throws Exception
+    {
+        ProductView lamp = new ProductView(product(3, "Red lamp", "category2", null));
+        when(productRepository.findViewById(3))
+                .thenReturn(Optional.of(new ProductView(product(3, "Green lamp", "category2", null))));
+        searchIndex.onProductEvent(ProductEvent.updated(lamp, product(3, "Green lamp", "category2", null)));
+        searchIndex.onProductEvent(ProductEvent.deleted(new ProductView(product(1, "Red chair", "category1", null))));
+
+        assertEquals(List.of(3), ids(productSearchService.searchProducts("lamp", null, 0, 10)));
+        assertEquals(List.of(2, 4), ids(productSearchService.searchProducts("red", null, 0, 10)));
+    }
+
+    @Test
+    public void productEventsInReverseCommitOrder_ShouldKeepTheLatestText() throws Exception
+    {
+        when(productRepository.findViewById(3))
+                .thenReturn(Optional.of(new ProductView(product(3, "Blue lamp", "category2", null))));
+
+        // Renamed to Green lamp and then to Blue lamp, the event of the second rename arrives first
+        searchIndex.onProductEvent(ProductEvent.updated(new ProductView(product(3, "Green lamp", "category2", null)),
+                product(3, "Blue lamp", "category2", null)));
+        searchIndex.onProductEvent(ProductEvent.updated(new ProductView(product(3, "Red lamp", "category2", null)),
+                product(3, "Green lamp", "category2", null)));
+
+        assertEquals(List.of(3), ids(productSearchService.searchProducts("blue lamp", null, 0, 10)));
+        assertEquals(List.of(), ids(productSearchService.searchProducts("green", null, 0, 10)));
+    }
+
+    private List<Integer> ids(List<ProductView> products)
+    {
+        return products.stream().map(ProductView::getId).collect(Collectors.toList());
+    }
+
+    private Product product(int id, String name, String category, String description)
+    {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setCategory(category);
+        product.setDescription(description);
+        return product;
+    }
+}
@@ -0,0 +1,164 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.models.binding.ProductCursor;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.ProductsByCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class SortedProductIndexTests extends AbstractProductServiceTests
+{
+    private final SortedProductIndex enabledIndex = new SortedProductIndex(productRepository, true, 2, 2, 100);
+
+    @BeforeEach
+    public void setup()
+    {
+        List<Product> products = List.of(
+                product(1, "b", "category1", 3, LocalDate.of(2020, 1, 2)),
+                product(2, "a", "category2", 3, LocalDate.of(2020, 1, 1)),
+                product(3, null, "category1", 1, null),
+                product(4, "c", "category2", 5, LocalDate.of(2020, 1, 3)));
+        doAnswer(a -> {
+            Consumer<Product> action = a.getArgument(2);
+            products.forEach(action);
+            return null;
+        }).when(productRepository).forEachProduct(isNull(), anyInt(), any());
+
+        enabledIndex.onApplicationReady();
+    }
+
+    @Test
+    public void getPage_ShouldOrderByEverySortKeyAndId()
+    {
+        Sort byQuantityAndModified = Sort.by(Sort.Order.desc("quantity"), Sort.Order.asc("lastModifiedDate"));
+        Sort byModified = Sort.by("lastModifiedDate");
+
+        assertEquals(List.of(4, 2, 1, 3), ids(enabledIndex.getPage(PageRequest.of(0, 10, byQuantityAndModified))));
+        assertEquals(List.of(1, 3), ids(enabledIndex.getPage(PageRequest.of(1, 2, byQuantityAndModified))));
+        assertEquals(List.of(2, 1, 4, 3), ids(enabledIndex.getPage(PageRequest.of(0, 10, byModified))));
+    }
+
+    @Test
+    public void getPage_ShouldPlaceNullsLikeTheDatabase()
+    {
+        Sort byModified = Sort.by("lastModifiedDate");
+
+        // Nulls are last when ascending and first when descending
+        assertEquals(List.of(2, 1, 4, 3), ids(enabledIndex.getPage(PageRequest.of(0, 10, byModified))));
+        assertEquals(List.of(3, 4, 1, 2), ids(enabledIndex.getPage(PageRequest.of(0, 10, byModified.descending()))));
+    }
+
+    @Test
+    public void productEvents_ShouldMoveTheProductInEveryIndex()
+    {
+        PageRequest byQuantity = PageRequest.of(0, 10, Sort.by(Sort.Order.asc("quantity")));
+        enabledIndex.getPage(byQuantity);
+
+        when(productRepository.findViewById(4)).thenReturn(Optional.of(new ProductView(product(4, "c", "category2", 0, null))));
+        when(productRepository.findViewById(2)).thenReturn(Optional.empty());
+        enabledIndex.onProductEvent(ProductEvent.updated(
+                new ProductView(product(4, "c", "category2", 5, null)), product(4, "c", "category2", 0, null)));
+        enabledIndex.onProductEvent(ProductEvent.deleted(new ProductView(product(2, "a", "category2", 3, null))));
+
+        assertEquals(List.of(4, 3, 1), ids(enabledIndex.getPage(byQuantity)));
+    }
+
+    @Test
+    public void productEventsInReverseCommitOrder_ShouldKeepTheLatestRow()
+    {
+        PageRequest byQuantity = PageRequest.of(0, 10, Sort.by(Sort.Order.asc("quantity")));
+        enabledIndex.getPage(byQuantity);
+        when(productRepository.findViewById(4)).thenReturn(Optional.of(new ProductView(product(4, "c", "category2", 0, null))));
+
+        // The order to 0 committed last, its event arrives first
+        enabledIndex.onProductEvent(ProductEvent.updated(
+                new ProductView(product(4, "c", "category2", 2, null)), product(4, "c", "category2", 0, null)));
+        enabledIndex.onProductEvent(ProductEvent.updated(
+                new ProductView(product(4, "c", "category2", 5, null)), product(4, "c", "category2", 2, null)));
+
+        assertEquals(List.of(4, 3, 1, 2), ids(enabledIndex.getPage(byQuantity)));
+    }
+
+    @Test
+    public void getPage_ShouldNotServePagesWithoutIndex()
+    {
+        assertTrue(enabledIndex.getPage(PageRequest.of(0, 10)).isEmpty());
+        assertTrue(enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("description"))).isEmpty());
+        // Strings are left to the collation of the database
+        assertTrue(enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("name"))).isEmpty());
+        assertTrue(enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("quantity", "category"))).isEmpty());
+
+        enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("dateCreated")));
+        enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("lastModifiedDate")));
+        // At most two sorts are indexed
+        assertTrue(enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("quantity"))).isEmpty());
+        assertTrue(sortedIndex.getPage(PageRequest.of(0, 10, Sort.by("quantity"))).isEmpty());
+    }
+
+    @Test
+    public void getPageOverMaxOffset_ShouldBeLeftToThePageCache()
+    {
+        assertTrue(enabledIndex.getPage(PageRequest.of(1, 2, Sort.by("quantity"))).isPresent());
+        assertTrue(enabledIndex.getPage(PageRequest.of(3, 1, Sort.by("quantity"))).isEmpty());
+    }
+
+    @Test
+    public void getPageAfter_WalkingAllPages_ShouldSeekToEveryCursor()
+    {
+        List<Sort.Order> byQuantityAndModified = ProductCursor.withTieBreaker(
+                List.of(Sort.Order.desc("quantity"), Sort.Order.asc("lastModifiedDate")));
+
+        ProductsByCursor first = enabledIndex.getPageAfter(byQuantityAndModified, null, 3).orElseThrow();
+        ProductsByCursor second = enabledIndex.getPageAfter(byQuantityAndModified,
+                ProductCursor.decode(first.getNextCursor()), 3).orElseThrow();
+
+        assertEquals(List.of(4, 2, 1), first.getProducts().stream().map(ProductView::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3), second.getProducts().stream().map(ProductView::getId).collect(Collectors.toList()));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    public void getBytesPerProduct_ShouldGrowWithTheIndexes()
+    {
+        long withoutIndexes = enabledIndex.getBytesPerProduct();
+        enabledIndex.getPage(PageRequest.of(0, 10, Sort.by("quantity")));
+
+        assertTrue(withoutIndexes > 0);
+        assertTrue(enabledIndex.getBytesPerProduct() > withoutIndexes);
+    }
+
+    private List<Integer> ids(Optional<List<ProductView>> page)
+    {
+        return page.orElseThrow().stream().map(ProductView::getId).collect(Collectors.toList());
+    }
+
+    private Product product(int id, String name, String category, int quantity, LocalDate lastModifiedDate)
+    {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setCategory(category);
+        product.setQuantity(quantity);
+        product.setLastModifiedDate(lastModifiedDate);
+        return product;
+    }
+}
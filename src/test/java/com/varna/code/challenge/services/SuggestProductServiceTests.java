@@ -0,0 +1,124 @@
+package com.varna.code.challenge.services;
+
+import com.varna.code.challenge.exceptions.ProductException;
+import com.varna.code.challenge.models.entities.Product;
+import com.varna.code.challenge.models.events.ProductEvent;
+import com.varna.code.challenge.models.view.ProductSuggestion;
+import com.varna.code.challenge.models.view.ProductView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class SuggestProductServiceTests extends AbstractProductServiceTests
+{
+    private final ProductNameTrie nameTrie = new ProductNameTrie(productRepository, 100, 3);
+
+    private final ProductSearchService productSearchService = new ProductSearchServiceImpl(productRepository,
+            new ProductSearchIndex(productRepository, 100), nameTrie);
+
+    @BeforeEach
+    public void setup()
+    {
+        List<Product> products = List.of(
+                product(1, "Chair", 5),
+                product(2, "chairs", 1),
+                product(3, "Chain", 7),
+                product(4, "Cheese", 2),
+                product(5, "Table", 9),
+                product(6, "cha", 3));
+        doAnswer(a -> {
+            Consumer<Product> action = a.getArgument(2);
+            products.forEach(action);
+            return null;
+        }).when(productRepository).forEachProduct(isNull(), anyInt(), any());
+
+        nameTrie.onApplicationReady();
+    }
+
+    @Test
+    public void suggestWithNonPositiveLimit_ShouldThrow()
+    {
+        final String expectedExceptionMessage = "Limit should be positive";
+
+        try {
+            productSearchService.suggestProducts("ch", 0, false);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
+    @Test
+    public void suggest_ShouldReturnNamesStartingWithThePrefixInOrder() throws Exception
+    {
+        assertEquals(List.of("cha", "Chain", "Chair"), names(productSearchService.suggestProducts("CH", 10, false)));
+        assertEquals(List.of("Chair", "chairs"), names(productSearchService.suggestProducts("chair", 10, false)));
+        assertEquals(List.of("Cheese"), names(productSearchService.suggestProducts("chee", 10, false)));
+        assertEquals(List.of(), names(productSearchService.suggestProducts("chx", 10, false)));
+        assertEquals(List.of(), names(productSearchService.suggestProducts("chairss", 10, false)));
+    }
+
+    @Test
+    public void suggestByQuantity_ShouldReturnTheMostQuantityFirst() throws Exception
+    {
+        assertEquals(List.of("Chain", "Chair"), names(productSearchService.suggestProducts("ch", 2, true)));
+        assertEquals(List.of("Table", "Chain", "Chair"), names(productSearchService.suggestProducts("", 10, true)));
+    }
+
+    @Test
+    public void productEvents_ShouldUpdateTheSuggestions() throws Exception
+    {
+        ProductView chain = new ProductView(product(3, "Chain", 7));
+        when(productRepository.findViewById(3)).thenReturn(Optional.of(new ProductView(product(3, "Chain", 0))));
+        when(productRepository.findViewById(7)).thenReturn(Optional.of(new ProductView(product(7, "Chalk", 4))));
+        nameTrie.onProductEvent(ProductEvent.updated(chain, product(3, "Chain", 0)));
+        nameTrie.onProductEvent(ProductEvent.deleted(new ProductView(product(6, "cha", 3))));
+        nameTrie.onProductEvent(ProductEvent.created(product(7, "Chalk", 4)));
+
+        assertEquals(List.of("Chair", "Chalk", "Cheese"), names(productSearchService.suggestProducts("ch", 3, true)));
+        assertEquals(List.of("Chain", "Chair", "chairs"), names(productSearchService.suggestProducts("cha", 10, false)));
+        assertEquals(List.of("Chalk"), names(productSearchService.suggestProducts("chal", 10, false)));
+    }
+
+    @Test
+    public void renamesInReverseCommitOrder_ShouldKeepOnlyTheLatestName() throws Exception
+    {
+        when(productRepository.findViewById(5)).thenReturn(Optional.of(new ProductView(product(5, "Desk", 9))));
+
+        // Renamed to Bench and then to Desk, the event of the second rename arrives first
+        nameTrie.onProductEvent(ProductEvent.updated(new ProductView(product(5, "Bench", 9)), product(5, "Desk", 9)));
+        nameTrie.onProductEvent(ProductEvent.updated(new ProductView(product(5, "Table", 9)), product(5, "Bench", 9)));
+
+        assertEquals(List.of("Desk"), names(productSearchService.suggestProducts("d", 10, false)));
+        assertEquals(List.of(), names(productSearchService.suggestProducts("b", 10, false)));
+        assertEquals(List.of(), names(productSearchService.suggestProducts("t", 10, false)));
+    }
+
+    private List<String> names(List<ProductSuggestion> suggestions)
+    {
+        return suggestions.stream().map(ProductSuggestion::getName).collect(Collectors.toList());
+    }
+
+    private Product product(int id, String name, int quantity)
+    {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setCategory("category");
+        product.setQuantity(quantity);
+        return product;
+    }
+}
@@ -4,7 +4,10 @@ import com.varna.code.challenge.exceptions.ProductException;
 import com.varna.code.challenge.models.binding.EditProductBinding;
 import com.varna.code.challenge.models.entities.Product;
 import com.varna.code.challenge.models.view.ProductView;
+import com.varna.code.challenge.models.view.UpdatedProduct;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 
 import java.time.LocalDate;
 import java.util.Optional;
@@ -13,6 +16,8 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 public class UpdateProductServiceTests extends AbstractProductServiceTests
@@ -24,7 +29,7 @@ public class UpdateProductServiceTests extends AbstractProductServiceTests
         final int invalidProductId = 122;
         final String expectedExceptionMessage = "There is no product with such id";
 
-        when(productRepository.findById(invalidProductId)).thenReturn(Optional.empty());
+        when(productRepository.updateNotNull(eq(invalidProductId), any())).thenReturn(Optional.empty());
 
         EditProductBinding model = new EditProductBinding();
         try {
@@ -41,7 +46,8 @@ public class UpdateProductServiceTests extends AbstractProductServiceTests
         final int productId = 1;
         final String expectedExceptionMessage = "You inserted too long values, name and category cannot exceed 16 symbols";
 
-        when(productRepository.findById(productId)).thenReturn(Optional.of(new Product()));
+        when(productRepository.updateNotNull(eq(productId), any()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
 
         EditProductBinding model = new EditProductBinding("".repeat(17), "".repeat(17), "");
         try {
@@ -52,6 +58,25 @@ public class UpdateProductServiceTests extends AbstractProductServiceTests
         }
     }
 
+    @Test
+    public void updateWithTakenName_ShouldThrow() throws Exception
+    {
+        final int productId = 1;
+        final String takenName = "product2";
+        final String expectedExceptionMessage = "There is already a product with such name";
+
+        when(productRepository.updateNotNull(eq(productId), any()))
+                .thenThrow(new DuplicateKeyException("unique index on name"));
+
+        EditProductBinding model = new EditProductBinding(takenName, null, null);
+        try {
+            productService.updateProduct(productId, model);
+        } catch (Exception e) {
+            assertThat(e, instanceOf(ProductException.class));
+            assertEquals(expectedExceptionMessage, e.getMessage());
+        }
+    }
+
     @Test
     public void addWithCorrectFields_ShouldUpdateProduct() throws Exception
     {
@@ -60,8 +85,7 @@ public class UpdateProductServiceTests extends AbstractProductServiceTests
         final String expectedCategory = "updated category";
         final String expectedDescription = "updated description";
 
-        when(productRepository.findById(productId)).thenReturn(Optional.of(new Product()));
-        when(productRepository.save(any(Product.class))).thenAnswer(a -> a.getArgument(0));
+        mockUpdate(new Product());
 
         EditProductBinding model = new EditProductBinding(expectedName, expectedCategory, expectedDescription);
 
@@ -80,8 +104,7 @@ public class UpdateProductServiceTests extends AbstractProductServiceTests
         Product productWithOldLastModified = new Product();
         productWithOldLastModified.setLastModifiedDate(LocalDate.of(2020, 10, 15));
 
-        when(productRepository.findById(productId)).thenReturn(Optional.of(productWithOldLastModified));
-        when(productRepository.save(any(Product.class))).thenAnswer(a -> a.getArgument(0));
+        mockUpdate(productWithOldLastModified);
 
         EditProductBinding model = new EditProductBinding("name", "category", "");
 
@@ -89,5 +112,24 @@ public class UpdateProductServiceTests extends AbstractProductServiceTests
 
         assertEquals(LocalDate.now(), actualProduct.getDateModified());
     }
-}
 
+    /**
+     * The update sets the not null fields and the last modified date of the stored product like the statement
+     */
+    private void mockUpdate(Product stored)
+    {
+        when(productRepository.updateNotNull(anyInt(), any())).thenAnswer(a -> {
+            EditProductBinding changes = a.getArgument(1);
+            ProductView before = new ProductView(stored);
+            Product after = new Product();
+            after.setId(a.getArgument(0));
+            after.setName(changes.getName() != null ? changes.getName() : stored.getName());
+            after.setCategory(changes.getCategory() != null ? changes.getCategory() : stored.getCategory());
+            after.setDescription(changes.getDescription() != null ? changes.getDescription() : stored.getDescription());
+            after.setQuantity(stored.getQuantity());
+            after.setDateCreated(stored.getDateCreated());
+            after.setLastModifiedDate(LocalDate.now());
+            return Optional.of(new UpdatedProduct(before, after));
+        });
+    }
+}
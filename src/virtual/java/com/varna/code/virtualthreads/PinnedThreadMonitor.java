@@ -0,0 +1,130 @@
+package com.varna.code.virtualthreads;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Detects virtual threads pinned to their carrier thread (blocked inside synchronized or native code),
+ * a pinned virtual thread blocks a carrier and with enough of them all requests wait
+ * Listens to the jdk.VirtualThreadPinned flight recorder event and
+ * - times the pinned threads by the code which pinned them - jdbc driver, hibernate, hikari or other
+ * (products.virtual-threads.pinned timer, tagged with source)
+ * - logs the stack trace of the first products.virtual-threads.max-reported-stacks distinct pinning places
+ */
+public class PinnedThreadMonitor implements SmartLifecycle, MeterBinder
+{
+    public static final String PINNED_TIMER = "products.virtual-threads.pinned";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    /**
+     * The frames which identify the pinning place, deeper frames are the same request handling
+     */
+    private static final int KEY_FRAMES = 8;
+
+    private final Duration threshold;
+
+    private final int maxReportedStacks;
+
+    private final Set<String> reportedStacks = ConcurrentHashMap.newKeySet();
+
+    private volatile MeterRegistry registry;
+
+    private volatile RecordingStream stream;
+
+    public PinnedThreadMonitor(Duration threshold, int maxReportedStacks)
+    {
+        this.threshold = threshold;
+        this.maxReportedStacks = maxReportedStacks;
+    }
+
+    @Override
+    public void start()
+    {
+        RecordingStream recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        stream = recording;
+    }
+
+    @Override
+    public void stop()
+    {
+        RecordingStream recording = stream;
+        stream = null;
+        if (recording != null)
+            recording.close();
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return stream != null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    private void onPinned(RecordedEvent event)
+    {
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            Timer.builder(PINNED_TIMER)
+                    .tag("source", source(frames))
+                    .register(meterRegistry)
+                    .record(event.getDuration());
+        }
+
+        String key = frames.stream().limit(KEY_FRAMES).map(PinnedThreadMonitor::format).collect(Collectors.joining());
+        if (reportedStacks.size() < maxReportedStacks && reportedStacks.add(key)) {
+            LOGGER.warn("Virtual thread pinned to its carrier for {} ms at{}",
+                    event.getDuration().toMillis(),
+                    frames.stream().map(PinnedThreadMonitor::format).collect(Collectors.joining()));
+        }
+    }
+
+    /**
+     * @return which code pinned the thread, the first known library from the top of the stack
+     */
+    private static String source(List<RecordedFrame> frames)
+    {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("org.postgresql.") || type.startsWith("org.h2."))
+                return "jdbc";
+            else if (type.startsWith("org.hibernate."))
+                return "hibernate";
+            else if (type.startsWith("com.zaxxer.hikari."))
+                return "hikari";
+        }
+
+        return "other";
+    }
+
+    private static String format(RecordedFrame frame)
+    {
+        return "\n\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName() +
+                ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,27 @@
+package com.varna.code.virtualthreads;
+
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The async requests (StreamingResponseBody of the export) are written on virtual threads,
+ * by default they get a new platform thread each
+ */
+public class VirtualThreadAsyncSupport implements WebMvcConfigurer
+{
+    private final ExecutorService executor;
+
+    public VirtualThreadAsyncSupport(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer)
+    {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+    }
+}
@@ -0,0 +1,26 @@
+package com.varna.code.virtualthreads;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Replaces the request thread pool of Tomcat with a virtual thread per request
+ * server.tomcat.threads.max does not apply anymore, the connections are still limited by server.tomcat.max-connections
+ */
+public class VirtualThreadTomcatCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler>
+{
+    private final ExecutorService executor;
+
+    public VirtualThreadTomcatCustomizer(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    @Override
+    public void customize(ProtocolHandler protocolHandler)
+    {
+        protocolHandler.setExecutor(executor);
+    }
+}
@@ -0,0 +1,47 @@
+package com.varna.code.virtualthreads;
+
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Profiles;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the requests on virtual threads when the virtual-threads profile is active
+ * Tomcat runs every request on a new virtual thread instead of its pool of 200 threads, so the service layer
+ * and the JDBC calls run on virtual threads as well. The async requests (streamed exports) use virtual threads too
+ * The blocked requests no longer hold a platform thread, the database calls are limited by the admission layer
+ * (AdmissionAspect) instead, and the pinned carrier threads are reported by {@link PinnedThreadMonitor}
+ *
+ * The beans are registered here and not in a configuration class, the classes are compiled for java 21
+ * and spring 5.2 can not read them when scanning
+ */
+public class VirtualThreadsInitializer implements ApplicationContextInitializer<GenericApplicationContext>
+{
+    public static final String VIRTUAL_THREADS_PROFILE = "virtual-threads";
+
+    @Override
+    public void initialize(GenericApplicationContext context)
+    {
+        ConfigurableEnvironment environment = context.getEnvironment();
+        if (!environment.acceptsProfiles(Profiles.of(VIRTUAL_THREADS_PROFILE)))
+            return;
+
+        ExecutorService requestExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("http-virtual-", 0).factory());
+        ExecutorService asyncExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("async-virtual-", 0).factory());
+
+        context.registerBean(VirtualThreadTomcatCustomizer.class,
+                () -> new VirtualThreadTomcatCustomizer(requestExecutor));
+        context.registerBean(VirtualThreadAsyncSupport.class,
+                () -> new VirtualThreadAsyncSupport(asyncExecutor));
+        context.registerBean(PinnedThreadMonitor.class, () -> new PinnedThreadMonitor(
+                environment.getProperty("products.virtual-threads.pinned-threshold", Duration.class,
+                        Duration.ofMillis(20)),
+                environment.getProperty("products.virtual-threads.max-reported-stacks", Integer.class, 20)));
+    }
+}